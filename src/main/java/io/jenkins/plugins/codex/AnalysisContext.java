@@ -6,10 +6,16 @@ import hudson.model.Result;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Context information for Codex analysis.
@@ -17,6 +23,18 @@ import java.util.Map;
  */
 public class AnalysisContext {
 
+    private static final String CHANGES_HEADER = "\n=== RECENT CHANGES ===\n";
+    private static final String DIFF_HEADER = "\n=== DIFF OF IMPLICATED FILES ===\n";
+    private static final String ENVIRONMENT_HEADER = "\n=== ENVIRONMENT VARIABLES ===\n";
+    private static final String LOGS_HEADER = "\n=== RECENT LOGS ===\n";
+    private static final String CONTENT_HEADER = "\n=== CONTENT TO ANALYZE ===\n";
+    private static final String CONTEXT_HEADER = "=== JENKINS PIPELINE ANALYSIS CONTEXT ===\n\n";
+    // Start of both the content section and the content section of a chunk
+    private static final String CONTENT_MARKER = "\n=== CONTENT TO ANALYZE";
+
+    // Room kept in a token budget for the context header written before the budgeted sections
+    private static final int RESERVED_CHARS = 1024;
+
     private final Run<?, ?> run;
     private final TaskListener listener;
     private final String stageName;
@@ -25,6 +43,11 @@ public class AnalysisContext {
     private final Map<String, String> environment;
     private final List<String> recentLogs;
     private final String workspacePath;
+    private boolean compactLogs;
+    private long tokenBudget;
+    private boolean includeChanges = true;
+    private String changeDiff;
+    private final RunContextSnapshot snapshot;
 
     public AnalysisContext(Run<?, ?> run, TaskListener listener, String stageName, String stepName,
                           String content, Map<String, String> environment, List<String> recentLogs,
@@ -37,100 +60,422 @@ public class AnalysisContext {
         this.environment = environment != null ? environment : new HashMap<>();
         this.recentLogs = recentLogs != null ? recentLogs : new ArrayList<>();
         this.workspacePath = workspacePath;
+        this.snapshot = run != null ? RunContextSnapshot.of(run) : null;
+    }
+
+    /**
+     * Compact recent logs and content with {@link LogCompactor} when writing the context
+     */
+    public void setCompactLogs(boolean compactLogs) {
+        this.compactLogs = compactLogs;
+    }
+
+    /**
+     * Limit the context to about this many tokens, cutting environment variables first, then older logs,
+     * then the middle of the content
+     *
+     * @param tokenBudget 0 for no limit
+     */
+    public void setTokenBudget(long tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * List the commits of the build and the paths they touched, on by default
+     */
+    public void setIncludeChanges(boolean includeChanges) {
+        this.includeChanges = includeChanges;
+    }
+
+    /**
+     * Diff of the changed files implicated by the failure, see {@link ChangeSetSummary#diffCallable}
+     */
+    public void setChangeDiff(String changeDiff) {
+        this.changeDiff = changeDiff;
     }
 
     /**
      * Build context string for Codex analysis
      */
     public String buildContextString() {
-        StringBuilder context = new StringBuilder();
+        StringBuilder context = new StringBuilder(estimateLength());
+        try {
+            writeContext(context);
+        } catch (IOException e) {
+            // Cannot happen when writing to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return context.toString();
+    }
+
+    /**
+     * Build a focused context for specific analysis types
+     */
+    public String buildFocusedContext(String analysisType) {
+        StringBuilder context = new StringBuilder(estimateLength());
+        try {
+            writeFocusedContext(analysisType, context);
+        } catch (IOException e) {
+            // Cannot happen when writing to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return context.toString();
+    }
+
+    /**
+     * The part of a rendered context that identifies the request: the analysis title, recent logs and content.
+     * Stage, build, job, status, workspace, changes and environment differ between runs analyzing the same
+     * content and are left out, so that those runs share cached results. Text without a context is returned as is.
+     */
+    public static String requestIdentity(String rendered) {
+        if (rendered == null) {
+            return null;
+        }
+        int context = rendered.indexOf(CONTEXT_HEADER);
+        if (context < 0) {
+            return rendered;
+        }
+        int content = rendered.indexOf(CONTENT_MARKER, context);
+        int end = content >= 0 ? content : rendered.length();
+        StringBuilder identity = new StringBuilder(rendered.length());
+        identity.append(rendered, 0, context);
+        // Logs are the last section before the content
+        int logs = rendered.indexOf(LOGS_HEADER, context);
+        if (logs >= 0 && logs < end) {
+            identity.append(rendered, logs, end);
+        }
+        return identity.append(rendered, end, rendered.length()).toString();
+    }
+
+    /**
+     * Write the focused context for an analysis type to a sink in a single pass,
+     * without building intermediate copies of the content
+     */
+    public void writeFocusedContext(String analysisType, Appendable out) throws IOException {
+        switch (analysisType.toLowerCase()) {
+            case "build_analysis":
+                out.append("=== BUILD ANALYSIS ===\n");
+                out.append("Analyzing build process and output for potential issues and improvements.\n\n");
+                break;
+            case "test_analysis":
+                out.append("=== TEST ANALYSIS ===\n");
+                out.append("Analyzing test results and coverage for quality assessment.\n\n");
+                break;
+            case "deployment_analysis":
+                out.append("=== DEPLOYMENT ANALYSIS ===\n");
+                out.append("Analyzing deployment process and configuration.\n\n");
+                break;
+            case "security_analysis":
+                out.append("=== SECURITY ANALYSIS ===\n");
+                out.append("Analyzing code and configuration for security vulnerabilities.\n\n");
+                break;
+            case "performance_analysis":
+                out.append("=== PERFORMANCE ANALYSIS ===\n");
+                out.append("Analyzing performance metrics and bottlenecks.\n\n");
+                break;
+            default:
+                out.append("=== GENERAL ANALYSIS ===\n");
+                out.append("Analyzing pipeline execution for insights and recommendations.\n\n");
+        }
 
+        writeContext(out);
+    }
+
+    /**
+     * Write the context to a sink in a single pass, without building intermediate copies of the content.
+     * With a token budget, logs and content are compacted first so the budget applies to what is sent.
+     */
+    public void writeContext(Appendable out) throws IOException {
         // Pipeline information
-        context.append("=== JENKINS PIPELINE ANALYSIS CONTEXT ===\n\n");
+        out.append(CONTEXT_HEADER);
 
         if (stageName != null) {
-            context.append("Stage: ").append(stageName).append("\n");
+            out.append("Stage: ").append(stageName).append("\n");
         }
 
         if (stepName != null) {
-            context.append("Step: ").append(stepName).append("\n");
+            out.append("Step: ").append(stepName).append("\n");
         }
 
         // Build information
         if (run != null) {
-            context.append("Build: #").append(run.getNumber()).append("\n");
-            context.append("Job: ").append(run.getParent().getFullName()).append("\n");
-            context.append("Status: ").append(run.getResult()).append("\n");
+            out.append("Build: #").append(String.valueOf(run.getNumber())).append("\n");
+            out.append("Job: ").append(snapshot.getJobFullName(run)).append("\n");
+            out.append("Status: ").append(String.valueOf(run.getResult())).append("\n");
         }
 
         // Workspace information
         if (workspacePath != null) {
-            context.append("Workspace: ").append(workspacePath).append("\n");
+            out.append("Workspace: ").append(workspacePath).append("\n");
         }
 
-        // Environment variables (filtered for security)
-        if (!environment.isEmpty()) {
-            context.append("\n=== ENVIRONMENT VARIABLES ===\n");
-            for (Map.Entry<String, String> entry : environment.entrySet()) {
-                String key = entry.getKey();
-                // Filter out sensitive environment variables
-                if (!isSensitiveVariable(key)) {
-                    context.append(key).append("=").append(entry.getValue()).append("\n");
+        // Logs and content share one compactor, so a stack trace in both is only sent once
+        LogCompactor compactor = compactLogs ? new LogCompactor() : null;
+        String changes = getChanges();
+        if (tokenBudget > 0) {
+            writeBudgetedSections(out, compactor, changes);
+        } else {
+            out.append(changes);
+            writeEnvironment(out, getVisibleEnvironment());
+
+            // Recent logs
+            if (!recentLogs.isEmpty()) {
+                out.append(LOGS_HEADER);
+                if (compactor != null) {
+                    compactor.compact(new StringReader(String.join("\n", recentLogs)), out);
+                } else {
+                    for (String log : recentLogs) {
+                        out.append(log).append("\n");
+                    }
+                }
+            }
+
+            // Content to analyze
+            if (content != null && !content.isBlank()) {
+                out.append(CONTENT_HEADER);
+                if (compactor != null) {
+                    compactor.compact(new StringReader(content), out);
+                } else {
+                    out.append(content).append("\n");
                 }
             }
         }
 
-        // Recent logs
-        if (!recentLogs.isEmpty()) {
-            context.append("\n=== RECENT LOGS ===\n");
+        if (compactor != null) {
+            compactor.report(listener);
+        }
+    }
+
+    /**
+     * Write changes, environment, logs and content within the token budget. The content gets the budget first,
+     * then the changes, then the most recent logs, then environment variables, shortest first so long values
+     * like PATH are dropped first. Uncompacted logs and content are measured in place and written from the
+     * original strings, only the parts that fit are copied to the sink.
+     */
+    private void writeBudgetedSections(Appendable out, LogCompactor compactor, String changes) throws IOException {
+        // Compacted logs and content are text of their own, uncompacted ones are written as they are
+        String compactedLogs = compactor != null && !recentLogs.isEmpty() ? compact(String.join("\n", recentLogs), compactor) : null;
+        long logsLength = compactedLogs != null ? compactedLogs.length() : 0;
+        if (compactedLogs == null) {
             for (String log : recentLogs) {
-                context.append(log).append("\n");
+                logsLength += log.length() + 1;
             }
         }
+        boolean hasContent = content != null && !content.isBlank();
+        // Uncompacted content ends with a newline of its own, the compactor ends every line with one
+        String text = !hasContent ? "" : compactor != null ? compact(content, compactor) : content;
+        String textEnd = hasContent && compactor == null ? "\n" : "";
+        long textLength = text.length() + textEnd.length();
+        List<Map.Entry<String, String>> variables = new ArrayList<>(getVisibleEnvironment());
+        variables.sort(Comparator.comparingInt(entry -> entry.getKey().length() + entry.getValue().length()));
+        long environmentChars = 0;
+        for (Map.Entry<String, String> entry : variables) {
+            environmentChars += entry.getKey().length() + entry.getValue().length() + 2;
+        }
 
-        // Content to analyze
-        if (content != null && !content.trim().isEmpty()) {
-            context.append("\n=== CONTENT TO ANALYZE ===\n");
-            context.append(content).append("\n");
+        // The header written before the sections and the section titles come out of the budget too
+        long[] allowed = ContextBudget.allocate(ContextBudget.toChars(tokenBudget) - RESERVED_CHARS,
+            textLength == 0 ? 0 : textLength + CONTENT_HEADER.length(),
+            changes.length(),
+            logsLength == 0 ? 0 : logsLength + LOGS_HEADER.length(),
+            variables.isEmpty() ? 0 : environmentChars + ENVIRONMENT_HEADER.length());
+        List<String> dropped = new ArrayList<>();
+
+        // Changes, keeping their beginning: the commit list comes before the diff
+        if (allowed[1] >= changes.length()) {
+            out.append(changes);
+        } else {
+            int end = changes.lastIndexOf('\n', (int) allowed[1] - 1) + 1;
+            out.append(changes, 0, end);
+            dropped.add((changes.length() - end) + " characters of changes");
         }
 
-        return context.toString();
+        // Environment variables, in their original order
+        long environmentBudget = allowed[3] - ENVIRONMENT_HEADER.length();
+        List<String> droppedVariables = new ArrayList<>();
+        Set<String> kept = new HashSet<>();
+        for (Map.Entry<String, String> entry : variables) {
+            long chars = entry.getKey().length() + entry.getValue().length() + 2;
+            if (chars <= environmentBudget) {
+                kept.add(entry.getKey());
+                environmentBudget -= chars;
+            } else {
+                droppedVariables.add(entry.getKey());
+            }
+        }
+        List<Map.Entry<String, String>> keptVariables = new ArrayList<>();
+        for (Map.Entry<String, String> entry : getVisibleEnvironment()) {
+            if (kept.contains(entry.getKey())) {
+                keptVariables.add(entry);
+            }
+        }
+        writeEnvironment(out, keptVariables);
+        if (!droppedVariables.isEmpty()) {
+            dropped.add(droppedVariables.size() + " environment variables (" + summarize(droppedVariables) + ")");
+        }
+
+        // Recent logs, keeping the most recent lines
+        if (logsLength > 0) {
+            long logBudget = allowed[2] - LOGS_HEADER.length();
+            if (compactedLogs != null) {
+                writeRecentLines(out, compactedLogs, logBudget, dropped);
+            } else {
+                writeRecentLogs(out, logsLength, logBudget, dropped);
+            }
+        }
+
+        // Content to analyze, keeping its beginning and its end
+        if (textLength > 0) {
+            long contentBudget = allowed[0] - CONTENT_HEADER.length();
+            out.append(CONTENT_HEADER);
+            if (contentBudget >= textLength) {
+                out.append(text).append(textEnd);
+            } else {
+                int head = (int) Math.max(0, contentBudget / 2);
+                int tail = (int) Math.max(0, contentBudget - head - textEnd.length());
+                int omitted = text.length() - head - tail;
+                out.append(text, 0, head)
+                    .append("\n[... ").append(String.valueOf(omitted)).append(" characters omitted to fit the context budget ...]\n")
+                    .append(text, text.length() - tail, text.length()).append(textEnd);
+                dropped.add(omitted + " characters from the middle of the content");
+            }
+        }
+
+        if (!dropped.isEmpty() && listener != null) {
+            listener.getLogger().println("Context budget of " + tokenBudget + " tokens exceeded, dropped "
+                + String.join(", ", dropped));
+        }
     }
 
     /**
-     * Build a focused context for specific analysis types
+     * The changes section with its diff, empty when the build has no changes
      */
-    public String buildFocusedContext(String analysisType) {
-        StringBuilder context = new StringBuilder();
+    private String getChanges() {
+        if (run == null || !includeChanges) {
+            return "";
+        }
+        ChangeSetSummary summary = ChangeSetSummary.of(run);
+        if (summary.isEmpty()) {
+            return "";
+        }
+        StringBuilder changes = new StringBuilder(CHANGES_HEADER).append(summary.describe());
+        if (changeDiff != null && !changeDiff.isBlank()) {
+            changes.append(DIFF_HEADER).append(changeDiff);
+            if (!changeDiff.endsWith("\n")) {
+                changes.append('\n');
+            }
+        }
+        return changes.toString();
+    }
 
-        switch (analysisType.toLowerCase()) {
-            case "build_analysis":
-                context.append("=== BUILD ANALYSIS ===\n");
-                context.append("Analyzing build process and output for potential issues and improvements.\n\n");
-                break;
-            case "test_analysis":
-                context.append("=== TEST ANALYSIS ===\n");
-                context.append("Analyzing test results and coverage for quality assessment.\n\n");
-                break;
-            case "deployment_analysis":
-                context.append("=== DEPLOYMENT ANALYSIS ===\n");
-                context.append("Analyzing deployment process and configuration.\n\n");
-                break;
-            case "security_analysis":
-                context.append("=== SECURITY ANALYSIS ===\n");
-                context.append("Analyzing code and configuration for security vulnerabilities.\n\n");
-                break;
-            case "performance_analysis":
-                context.append("=== PERFORMANCE ANALYSIS ===\n");
-                context.append("Analyzing performance metrics and bottlenecks.\n\n");
-                break;
-            default:
-                context.append("=== GENERAL ANALYSIS ===\n");
-                context.append("Analyzing pipeline execution for insights and recommendations.\n\n");
+    private void writeEnvironment(Appendable out, List<Map.Entry<String, String>> variables) throws IOException {
+        if (!variables.isEmpty()) {
+            out.append(ENVIRONMENT_HEADER);
+            for (Map.Entry<String, String> entry : variables) {
+                out.append(entry.getKey()).append("=").append(entry.getValue()).append("\n");
+            }
+        }
+    }
+
+    /**
+     * Environment variables without sensitive ones
+     */
+    private List<Map.Entry<String, String>> getVisibleEnvironment() {
+        if (snapshot != null) {
+            // Sensitivity of each name is decided once per build
+            return snapshot.getVisibleEnvironment(environment);
         }
+        List<Map.Entry<String, String>> variables = new ArrayList<>();
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            // Filter out sensitive environment variables
+            if (!isSensitiveVariable(entry.getKey())) {
+                variables.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), String.valueOf(entry.getValue())));
+            }
+        }
+        return variables;
+    }
 
-        context.append(buildContextString());
-        return context.toString();
+    /**
+     * The most recent lines of compacted logs that fit the budget
+     */
+    private static void writeRecentLines(Appendable out, String logs, long logBudget, List<String> dropped)
+            throws IOException {
+        if (logBudget >= logs.length()) {
+            out.append(LOGS_HEADER).append(logs);
+        } else if (logBudget > 0) {
+            int start = logs.indexOf('\n', (int) (logs.length() - logBudget));
+            start = start >= 0 ? start + 1 : logs.length();
+            out.append(LOGS_HEADER).append(logs, start, logs.length());
+            dropped.add(countLines(logs, 0, start) + " older log lines");
+        } else {
+            dropped.add("all " + countLines(logs, 0, logs.length()) + " log lines");
+        }
+    }
+
+    /**
+     * The most recent of the recent log lines that fit the budget, written without joining them
+     */
+    private void writeRecentLogs(Appendable out, long logsLength, long logBudget, List<String> dropped)
+            throws IOException {
+        int first = 0;
+        if (logBudget < logsLength) {
+            long kept = 0;
+            first = recentLogs.size();
+            while (first > 0 && kept + recentLogs.get(first - 1).length() + 1 <= logBudget) {
+                first--;
+                kept += recentLogs.get(first).length() + 1;
+            }
+        }
+        if (first < recentLogs.size()) {
+            out.append(LOGS_HEADER);
+            for (int i = first; i < recentLogs.size(); i++) {
+                out.append(recentLogs.get(i)).append("\n");
+            }
+        }
+        if (first == recentLogs.size()) {
+            dropped.add("all " + first + " log lines");
+        } else if (first > 0) {
+            dropped.add(first + " older log lines");
+        }
+    }
+
+    private static String compact(String log, LogCompactor compactor) throws IOException {
+        StringBuilder compacted = new StringBuilder();
+        compactor.compact(new StringReader(log), compacted);
+        return compacted.toString();
+    }
+
+    private static int countLines(String text, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String summarize(List<String> names) {
+        return names.size() <= 5 ? String.join(", ", names)
+            : String.join(", ", names.subList(0, 5)) + ", ...";
+    }
+
+    /**
+     * Upper estimate of the rendered length, so the builder is allocated once instead of growing by copies.
+     * With a token budget the rendered context is no longer than the budget and the notes on what was dropped.
+     */
+    private int estimateLength() {
+        if (tokenBudget > 0) {
+            return (int) Math.min(ContextBudget.toChars(tokenBudget) + 2048, Integer.MAX_VALUE - 16);
+        }
+        long length = 2048 + (content != null ? content.length() : 0) + (changeDiff != null ? changeDiff.length() : 0);
+        for (String log : recentLogs) {
+            length += log.length() + 1;
+        }
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            length += entry.getKey().length() + (entry.getValue() != null ? entry.getValue().length() : 0) + 2;
+        }
+        return (int) Math.min(length, Integer.MAX_VALUE - 16);
     }
 
     /**
@@ -172,7 +517,7 @@ public class AnalysisContext {
         return suggestions.toString();
     }
 
-    private boolean isSensitiveVariable(String key) {
+    static boolean isSensitiveVariable(String key) {
         String lowerKey = key.toLowerCase();
         return lowerKey.contains("password") ||
                lowerKey.contains("secret") ||
@@ -191,4 +536,8 @@ public class AnalysisContext {
     public Map<String, String> getEnvironment() { return environment; }
     public List<String> getRecentLogs() { return recentLogs; }
     public String getWorkspacePath() { return workspacePath; }
+    public boolean isCompactLogs() { return compactLogs; }
+    public long getTokenBudget() { return tokenBudget; }
+    public boolean isIncludeChanges() { return includeChanges; }
+    public String getChangeDiff() { return changeDiff; }
 }
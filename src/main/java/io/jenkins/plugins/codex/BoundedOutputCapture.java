@@ -0,0 +1,213 @@
+package io.jenkins.plugins.codex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output stream that captures CLI output line by line with a bounded memory footprint.
+ * Output is decoded as UTF-8. Once the in-memory limit is reached the remaining output is spilled
+ * to a file (if one is given) instead of growing the heap. Every completed line can optionally be
+ * forwarded to a build log as it arrives.
+ */
+public class BoundedOutputCapture extends OutputStream {
+
+    // Lines longer than this are flushed in pieces so a single huge line cannot grow the buffer
+    private static final int MAX_LINE_BYTES = 8192;
+
+    private final long maxCapturedBytes;
+    private final File spillFile;
+    private final PrintStream forwardTo;
+    private final String forwardPrefix;
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private final StringBuilder captured = new StringBuilder();
+    // Kept even when it did not fit, CLIs report why they failed last
+    private String lastLine = "";
+    private long capturedBytes;
+    private long overflowBytes;
+    private OutputStream spill;
+    private IOException spillFailure;
+
+    /**
+     * @param maxCapturedBytes maximum number of bytes kept in memory
+     * @param spillFile file receiving the output beyond the limit, or null to drop it
+     * @param forwardTo stream receiving each line as it arrives, or null
+     * @param forwardPrefix prefix for forwarded lines
+     */
+    public BoundedOutputCapture(long maxCapturedBytes, File spillFile, PrintStream forwardTo, String forwardPrefix) {
+        this.maxCapturedBytes = maxCapturedBytes;
+        this.spillFile = spillFile;
+        this.forwardTo = forwardTo;
+        this.forwardPrefix = forwardPrefix != null ? forwardPrefix : "";
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        line.write(b);
+        if (b == '\n' || line.size() >= MAX_LINE_BYTES) {
+            flushLine();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] == '\n' || line.size() + (i - start + 1) >= MAX_LINE_BYTES) {
+                line.write(b, start, i - start + 1);
+                flushLine();
+                start = i + 1;
+            }
+        }
+        if (start < end) {
+            line.write(b, start, end - start);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (line.size() > 0) {
+            flushBytes(line.toByteArray());
+            line.reset();
+        }
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    /**
+     * Captured text, followed by a note on how much output did not fit in memory
+     */
+    public synchronized String getText() {
+        if (overflowBytes == 0) {
+            return captured.toString();
+        }
+        StringBuilder text = new StringBuilder(captured);
+        if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+            text.append('\n');
+        }
+        text.append("[... ").append(overflowBytes).append(" more bytes of output not captured");
+        if (spillFile != null && spillFailure == null) {
+            text.append(", see ").append(spillFile.getAbsolutePath());
+        }
+        text.append(']');
+        return text.toString();
+    }
+
+    /**
+     * Last non-blank line of the output, whether or not it was kept in memory
+     */
+    public synchronized String getLastLine() {
+        return lastLine;
+    }
+
+    public synchronized long getCapturedBytes() {
+        return capturedBytes;
+    }
+
+    public synchronized long getOverflowBytes() {
+        return overflowBytes;
+    }
+
+    public synchronized boolean isTruncated() {
+        return overflowBytes > 0;
+    }
+
+    private void flushLine() throws IOException {
+        byte[] bytes = line.toByteArray();
+        line.reset();
+
+        // Never split a UTF-8 sequence: keep an incomplete trailing character for the next chunk
+        int cut = bytes.length;
+        if (bytes[cut - 1] != '\n') {
+            cut = utf8Boundary(bytes);
+        }
+        if (cut < bytes.length) {
+            line.write(bytes, cut, bytes.length - cut);
+            byte[] head = new byte[cut];
+            System.arraycopy(bytes, 0, head, 0, cut);
+            bytes = head;
+        }
+        if (bytes.length > 0) {
+            flushBytes(bytes);
+        }
+    }
+
+    private void flushBytes(byte[] bytes) throws IOException {
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (!text.trim().isEmpty()) {
+            lastLine = text.trim();
+        }
+        // Once output overflowed everything after it overflows too, so the captured text has no hole
+        if (overflowBytes == 0 && capturedBytes + bytes.length <= maxCapturedBytes) {
+            captured.append(text);
+            capturedBytes += bytes.length;
+        } else {
+            overflowBytes += bytes.length;
+            spill(bytes);
+        }
+        if (forwardTo != null) {
+            forwardTo.print(forwardPrefix);
+            forwardTo.print(text);
+            if (!text.endsWith("\n")) {
+                forwardTo.println();
+            }
+            forwardTo.flush();
+        }
+    }
+
+    private void spill(byte[] bytes) {
+        if (spillFile == null || spillFailure != null) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                File parent = spillFile.getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                spill = new FileOutputStream(spillFile, true);
+            }
+            spill.write(bytes);
+        } catch (IOException e) {
+            // Keep capturing; the missing spill file is reported in getText()
+            spillFailure = e;
+        }
+    }
+
+    /**
+     * Length of the longest prefix that does not end in the middle of a UTF-8 sequence
+     */
+    static int utf8Boundary(byte[] bytes) {
+        int i = bytes.length - 1;
+        int continuation = 0;
+        while (i >= 0 && (bytes[i] & 0xC0) == 0x80 && continuation < 3) {
+            i--;
+            continuation++;
+        }
+        if (i < 0) {
+            return bytes.length;
+        }
+        int lead = bytes[i] & 0xFF;
+        int expected;
+        if (lead < 0x80) {
+            expected = 0;
+        } else if (lead >= 0xF0) {
+            expected = 3;
+        } else if (lead >= 0xE0) {
+            expected = 2;
+        } else if (lead >= 0xC0) {
+            expected = 1;
+        } else {
+            return bytes.length;
+        }
+        return continuation < expected ? i : bytes.length;
+    }
+}
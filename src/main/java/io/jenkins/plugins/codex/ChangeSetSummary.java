@@ -0,0 +1,333 @@
+package io.jenkins.plugins.codex;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.User;
+import hudson.remoting.VirtualChannel;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.EditType;
+import jenkins.scm.RunWithSCM;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * The SCM changes of a build for the analysis context: the commits with their touched paths, and a size-capped
+ * diff of the changed files the failure points at. Failures are usually explained by what changed, and these
+ * few lines carry more signal than the rest of the log.
+ */
+public final class ChangeSetSummary {
+
+    static final int MAX_COMMITS = 20;
+    static final int MAX_PATHS_PER_COMMIT = 10;
+    static final int MAX_SUMMARY_CHARS = 8 * 1024;
+    public static final int DEFAULT_MAX_DIFF_BYTES = 16 * 1024;
+
+    // Commit ids are passed to git, anything else could be taken for an option
+    private static final Pattern COMMIT_ID = Pattern.compile("[0-9a-fA-F]{7,64}");
+
+    private final List<Commit> commits;
+
+    private ChangeSetSummary(List<Commit> commits) {
+        this.commits = commits;
+    }
+
+    /**
+     * Changes recorded for a run so far
+     *
+     * @return an empty summary for runs without SCM or without changes
+     */
+    public static ChangeSetSummary of(Run<?, ?> run) {
+        List<Commit> commits = new ArrayList<>();
+        if (run instanceof RunWithSCM) {
+            List<ChangeLogSet<? extends ChangeLogSet.Entry>> changeSets = ((RunWithSCM<?, ?>) run).getChangeSets();
+            if (changeSets != null) {
+                for (ChangeLogSet<? extends ChangeLogSet.Entry> changeSet : changeSets) {
+                    for (ChangeLogSet.Entry entry : changeSet) {
+                        commits.add(Commit.of(entry));
+                    }
+                }
+            }
+        }
+        return new ChangeSetSummary(commits);
+    }
+
+    static ChangeSetSummary of(List<Commit> commits) {
+        return new ChangeSetSummary(commits);
+    }
+
+    public boolean isEmpty() {
+        return commits.isEmpty();
+    }
+
+    /**
+     * One line per commit followed by its touched paths, cut at {@link #MAX_COMMITS} commits,
+     * {@link #MAX_PATHS_PER_COMMIT} paths each and {@link #MAX_SUMMARY_CHARS} characters
+     */
+    public String describe() {
+        StringBuilder summary = new StringBuilder();
+        // The most recent commits are the likeliest culprits
+        int first = Math.max(0, commits.size() - MAX_COMMITS);
+        if (first > 0) {
+            summary.append("[").append(first).append(" older commits omitted]\n");
+        }
+        for (int i = first; i < commits.size(); i++) {
+            Commit commit = commits.get(i);
+            StringBuilder line = new StringBuilder();
+            line.append(commit.id != null ? shortId(commit.id) : "-");
+            if (commit.author != null) {
+                line.append(' ').append(commit.author).append(':');
+            }
+            line.append(' ').append(commit.message).append('\n');
+            int shown = 0;
+            for (Map.Entry<String, String> path : commit.paths.entrySet()) {
+                if (shown++ == MAX_PATHS_PER_COMMIT) {
+                    line.append("    [").append(commit.paths.size() - MAX_PATHS_PER_COMMIT).append(" more paths]\n");
+                    break;
+                }
+                line.append("    ").append(path.getValue()).append(' ').append(path.getKey()).append('\n');
+            }
+            if (summary.length() + line.length() > MAX_SUMMARY_CHARS) {
+                summary.append("[").append(commits.size() - i).append(" more commits omitted]\n");
+                break;
+            }
+            summary.append(line);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Changed paths the text refers to, by path or by file name, such as files named in compiler errors or
+     * stack traces
+     */
+    public Set<String> implicatedPaths(String text) {
+        Set<String> implicated = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return implicated;
+        }
+        for (Commit commit : commits) {
+            for (String path : commit.paths.keySet()) {
+                String fileName = path.substring(path.lastIndexOf('/') + 1);
+                // Short names like "pom" or "a.c" would match by accident, full paths only count with a directory
+                boolean byPath = path.indexOf('/') > 0 && text.contains(path);
+                if (byPath || (fileName.length() >= 5 && fileName.indexOf('.') > 0 && text.contains(fileName))) {
+                    implicated.add(path);
+                }
+            }
+        }
+        return implicated;
+    }
+
+    /**
+     * Callable computing the diff of the implicated paths on the agent holding the checkout, so whole diffs
+     * never travel to the controller. Null when nothing is implicated or no commit has a usable id.
+     */
+    public DiffCallable diffCallable(Set<String> paths, int maxBytes) {
+        Map<String, List<String>> pathsByCommit = new LinkedHashMap<>();
+        for (Commit commit : commits) {
+            if (commit.id == null || !COMMIT_ID.matcher(commit.id).matches()) {
+                continue;
+            }
+            List<String> commitPaths = new ArrayList<>();
+            for (String path : commit.paths.keySet()) {
+                if (paths.contains(path)) {
+                    commitPaths.add(path);
+                }
+            }
+            if (!commitPaths.isEmpty()) {
+                pathsByCommit.put(commit.id, commitPaths);
+            }
+        }
+        return pathsByCommit.isEmpty() || maxBytes <= 0 ? null : new DiffCallable(pathsByCommit, maxBytes);
+    }
+
+    private static String shortId(String id) {
+        return id.length() > 12 ? id.substring(0, 12) : id;
+    }
+
+    /**
+     * A commit reduced to what the summary shows
+     */
+    static final class Commit {
+        final String id;
+        final String author;
+        final String message;
+        // Path to a one-letter edit type, in the order of the change set
+        final Map<String, String> paths;
+
+        Commit(String id, String author, String message, Map<String, String> paths) {
+            this.id = id;
+            this.author = author;
+            this.message = message;
+            this.paths = paths;
+        }
+
+        static Commit of(ChangeLogSet.Entry entry) {
+            Map<String, String> paths = new LinkedHashMap<>();
+            Collection<? extends ChangeLogSet.AffectedFile> files = null;
+            try {
+                files = entry.getAffectedFiles();
+            } catch (UnsupportedOperationException e) {
+                // Older SCM implementations only report paths
+            }
+            if (files != null) {
+                for (ChangeLogSet.AffectedFile file : files) {
+                    paths.put(file.getPath(), editType(file.getEditType()));
+                }
+            } else if (entry.getAffectedPaths() != null) {
+                for (String path : entry.getAffectedPaths()) {
+                    paths.put(path, "M");
+                }
+            }
+            User author = entry.getAuthor();
+            return new Commit(entry.getCommitId(), author != null ? author.getFullName() : null,
+                firstLine(entry.getMsg()), paths);
+        }
+
+        private static String editType(EditType type) {
+            String name = type != null ? type.getName() : null;
+            if ("add".equals(name)) {
+                return "A";
+            }
+            return "delete".equals(name) ? "D" : "M";
+        }
+
+        private static String firstLine(String message) {
+            if (message == null) {
+                return "";
+            }
+            message = message.trim();
+            int newline = message.indexOf('\n');
+            String line = newline >= 0 ? message.substring(0, newline).trim() : message;
+            return line.length() > 200 ? line.substring(0, 200) + "..." : line;
+        }
+    }
+
+    /**
+     * Runs git in the workspace for each commit and the implicated paths it touched, reading at most
+     * maxBytes of diff in total. Git is stopped once the limit is reached, or when it takes longer than
+     * {@link #TIMEOUT_SECONDS}.
+     */
+    public static class DiffCallable implements FilePath.FileCallable<String> {
+
+        private static final long serialVersionUID = 1L;
+        private static final long TIMEOUT_SECONDS = 30;
+
+        private final Map<String, List<String>> pathsByCommit;
+        private final int maxBytes;
+
+        DiffCallable(Map<String, List<String>> pathsByCommit, int maxBytes) {
+            this.pathsByCommit = pathsByCommit;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public String invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            ByteArrayOutputStream diff = new ByteArrayOutputStream();
+            boolean cut = false;
+            for (Map.Entry<String, List<String>> commit : pathsByCommit.entrySet()) {
+                List<String> command = new ArrayList<>(List.of("git", "show", "--no-color", "--no-ext-diff",
+                    "--format=commit %H", "-U3", commit.getKey(), "--"));
+                for (String path : commit.getValue()) {
+                    // Change sets report paths from the repository root, not the workspace
+                    command.add(":(top,literal)" + path);
+                }
+                cut = !show(command, workspace, diff);
+                if (cut) {
+                    break;
+                }
+            }
+            String text = diff.toString(StandardCharsets.UTF_8);
+            return cut ? text + "\n[diff cut at " + maxBytes + " bytes]\n" : text;
+        }
+
+        /**
+         * @return false when the byte limit was reached
+         */
+        private boolean show(List<String> command, File workspace, ByteArrayOutputStream diff)
+                throws IOException, InterruptedException {
+            Process process = new ProcessBuilder(command)
+                .directory(workspace)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            // Reading blocks while git runs, so a stuck git is stopped from another thread
+            AtomicBoolean timedOut = new AtomicBoolean();
+            Thread watchdog = new Thread(() -> {
+                try {
+                    if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                        timedOut.set(true);
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    // Reading finished first
+                }
+            }, "Codex diff watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            boolean complete = true;
+            boolean succeeded = false;
+            try (InputStream in = process.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    int room = maxBytes - diff.size() - output.size();
+                    if (read > room) {
+                        output.write(buffer, 0, Math.max(0, room));
+                        complete = false;
+                        break;
+                    }
+                    output.write(buffer, 0, read);
+                }
+                succeeded = complete && process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS) && process.exitValue() == 0;
+            } catch (IOException e) {
+                if (!timedOut.get()) {
+                    throw e;
+                }
+            } finally {
+                watchdog.interrupt();
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+            if (timedOut.get()) {
+                // Whatever git wrote before it hung may be incomplete: leave the commit out
+                return true;
+            }
+            if (complete && !succeeded) {
+                // Not a git checkout, or the commit is not in this clone: leave it out
+                return true;
+            }
+            if (!complete) {
+                // Do not end in the middle of a line
+                byte[] bytes = output.toByteArray();
+                int end = bytes.length;
+                while (end > 0 && bytes[end - 1] != '\n') {
+                    end--;
+                }
+                diff.write(bytes, 0, end);
+                return false;
+            }
+            output.writeTo(diff);
+            return true;
+        }
+
+        @Override
+        public void checkRoles(org.jenkinsci.remoting.RoleChecker checker) throws SecurityException {
+            // Accept default; no special roles required
+        }
+    }
+}
@@ -8,7 +8,6 @@ import hudson.model.TaskListener;
 import hudson.model.Action;
 import org.jenkinsci.plugins.workflow.actions.LabelAction;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
-import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -76,12 +75,14 @@ public class CodexAnalysisAction implements Action {
         try {
             // Gather stage context
             AnalysisContext context = gatherStageContext(run, stageName, listener, environment, workspace);
+            context.setCompactLogs(true);
+            context.setTokenBudget(ContextBudget.forModel(""));
 
             // Determine analysis type based on stage name
             String analysisType = determineAnalysisType(stageName);
 
             // Execute analysis
-            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace);
+            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, null, run);
             if (!executor.isCodexAvailable()) {
                 listener.error("Codex CLI not available for stage analysis");
                 return new CodexAnalysisAction(run, stageName, "Codex CLI not available", analysisType);
@@ -101,6 +102,9 @@ public class CodexAnalysisAction implements Action {
                 listener.getLogger().println("Analysis Type: " + analysisType);
                 listener.getLogger().println("Result: " + result.getOutput());
                 return new CodexAnalysisAction(run, stageName, result.getOutput(), analysisType);
+            } else if (result.isTimedOut()) {
+                listener.error("Stage analysis timed out: " + result.getError());
+                return new CodexAnalysisAction(run, stageName, "Analysis timed out: " + result.getError(), analysisType);
             } else {
                 listener.error("Stage analysis failed: " + result.getError());
                 return new CodexAnalysisAction(run, stageName, "Analysis failed: " + result.getError(), analysisType);
@@ -119,17 +123,15 @@ public class CodexAnalysisAction implements Action {
                                                     TaskListener listener, EnvVars environment,
                                                     FilePath workspace) throws IOException {
 
-        // Gather recent logs (last 50 lines)
+        // Gather the output of the stage, or the end of the build log if the stage cannot be found in the flow graph
         List<String> recentLogs = new ArrayList<>();
-        if (run instanceof WorkflowRun) {
-            WorkflowRun workflowRun = (WorkflowRun) run;
-            try {
-                // This is a simplified approach - in practice, you'd want to parse the actual logs
-                recentLogs.add("Stage '" + stageName + "' execution context");
-                recentLogs.add("Build #" + run.getNumber() + " - " + run.getResult());
-            } catch (Exception e) {
-                listener.getLogger().println("Warning: Could not gather detailed logs: " + e.getMessage());
-            }
+        try {
+            List<String> stageLog = StageLogExtractor.getStageLog(run, stageName,
+                LogTailReader.DEFAULT_MAX_LINES, LogTailReader.DEFAULT_MAX_BYTES);
+            recentLogs.addAll(stageLog != null ? stageLog
+                : LogTailReader.tail(run, LogTailReader.DEFAULT_MAX_LINES, LogTailReader.DEFAULT_MAX_BYTES));
+        } catch (IOException e) {
+            listener.getLogger().println("Warning: Could not gather detailed logs: " + e.getMessage());
         }
 
         // Build environment map
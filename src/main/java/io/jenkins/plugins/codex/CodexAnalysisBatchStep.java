@@ -0,0 +1,273 @@
+package io.jenkins.plugins.codex;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.Extension;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pipeline step analyzing many content items with as few Codex CLI invocations as possible.
+ * Items are packed into batches within a token budget and the step returns a map of item id to analysis.
+ * Items given as a list are identified by their index ("0", "1", ...), named items must not reuse these ids.
+ */
+public class CodexAnalysisBatchStep extends Step {
+
+    private List<String> items = new ArrayList<>();
+    private Map<String, String> namedItems = new LinkedHashMap<>();
+    private String analysisType = "general";
+    private String prompt;
+    private String model;
+    private int timeoutSeconds = 120;
+    private int maxTokensPerBatch = CodexBatchRequest.DEFAULT_MAX_TOKENS_PER_BATCH;
+    private int maxItemsPerBatch = CodexBatchRequest.DEFAULT_MAX_ITEMS_PER_BATCH;
+    private boolean cache = true;
+    private boolean compactLog;
+    private Map<String, String> additionalParams = new HashMap<>();
+
+    @DataBoundConstructor
+    public CodexAnalysisBatchStep() {}
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(this, context);
+    }
+
+    /**
+     * All items in order, list items first
+     *
+     * @throws AbortException when a named item has the id of a list item
+     */
+    Map<String, String> getAllItems() throws AbortException {
+        Map<String, String> all = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            all.put(String.valueOf(i), items.get(i));
+        }
+        for (Map.Entry<String, String> item : namedItems.entrySet()) {
+            if (all.containsKey(item.getKey())) {
+                throw new AbortException("Named item '" + item.getKey() + "' has the id of list item "
+                    + item.getKey() + ", rename it");
+            }
+            all.put(item.getKey(), item.getValue());
+        }
+        return all;
+    }
+
+    public static class Execution extends SynchronousNonBlockingStepExecution<Map<String, String>> {
+
+        private final CodexAnalysisBatchStep step;
+
+        public Execution(CodexAnalysisBatchStep step, StepContext context) {
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, String> run() throws Exception {
+            StepContext context = getContext();
+            Run<?, ?> run = context.get(Run.class);
+            TaskListener listener = context.get(TaskListener.class);
+            Launcher launcher = context.get(Launcher.class);
+            EnvVars environment = context.get(EnvVars.class);
+            FilePath workspace = context.get(FilePath.class);
+
+            if (listener == null) {
+                throw new IOException("TaskListener not available");
+            }
+
+            Map<String, String> results = new LinkedHashMap<>();
+            Map<String, String> allItems = step.getAllItems();
+            if (allItems.isEmpty()) {
+                listener.getLogger().println("No items to analyze");
+                return results;
+            }
+            if (step.compactLog) {
+                // Per item, so no item ends up referring to a stack trace of another one
+                allItems.replaceAll((id, item) -> LogCompactor.compact(item, null));
+            }
+
+            // Get job-level configuration if available
+            CodexAnalysisJobProperty jobConfig = null;
+            if (run.getParent() instanceof Job) {
+                jobConfig = ((Job<?, ?>) run.getParent()).getProperty(CodexAnalysisJobProperty.class);
+            }
+
+            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, jobConfig, run);
+            if (!executor.isCodexAvailable()) {
+                listener.error("Codex CLI is not available. Please ensure it's installed and configured.");
+                for (String id : allItems.keySet()) {
+                    results.put(id, "Codex CLI not available");
+                }
+                return results;
+            }
+
+            // Prepare additional parameters, same model and timeout precedence as codexAnalysis
+            Map<String, String> params = new HashMap<>(step.additionalParams);
+            String effectiveModel = step.model;
+            if (effectiveModel != null && !effectiveModel.trim().isEmpty()) {
+                params.put("model", effectiveModel);
+            }
+            int effectiveTimeout = step.timeoutSeconds;
+            if (effectiveTimeout <= 0 && jobConfig != null) {
+                effectiveTimeout = jobConfig.getEffectiveTimeoutSeconds();
+            }
+            if (effectiveTimeout > 0) {
+                params.put("timeout", String.valueOf(effectiveTimeout));
+            }
+            if (!step.cache) {
+                params.put("cache", "false");
+            }
+
+            try {
+                Map<String, CodexCliExecutor.CodexAnalysisResult> analyses = executor.executeAnalysisBatch(
+                    allItems, step.analysisType, step.prompt, params, step.maxTokensPerBatch, step.maxItemsPerBatch);
+
+                int failed = 0;
+                for (Map.Entry<String, CodexCliExecutor.CodexAnalysisResult> entry : analyses.entrySet()) {
+                    CodexCliExecutor.CodexAnalysisResult result = entry.getValue();
+                    if (result.isSuccess()) {
+                        results.put(entry.getKey(), result.getOutput());
+                    } else if (result.isTimedOut()) {
+                        failed++;
+                        results.put(entry.getKey(), "Analysis timed out: " + result.getError());
+                    } else {
+                        failed++;
+                        results.put(entry.getKey(), "Analysis failed: " + result.getError());
+                    }
+                }
+                listener.getLogger().println("Codex batch analysis finished: " + (analyses.size() - failed) + " of "
+                    + analyses.size() + " items analyzed");
+                if (failed > 0) {
+                    listener.error(failed + " items could not be analyzed");
+                }
+                return results;
+
+            } catch (IOException e) {
+                listener.error("Error during Codex batch analysis: " + e.getMessage());
+                for (String id : allItems.keySet()) {
+                    results.put(id, "Analysis error: " + e.getMessage());
+                }
+                return results;
+            }
+        }
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return (DescriptorImpl) super.getDescriptor();
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setItems(List<String> items) {
+        this.items = items != null ? new ArrayList<>(items) : new ArrayList<>();
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setNamedItems(Map<String, String> namedItems) {
+        this.namedItems = namedItems != null ? new LinkedHashMap<>(namedItems) : new LinkedHashMap<>();
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setAnalysisType(String analysisType) {
+        this.analysisType = analysisType;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxTokensPerBatch(int maxTokensPerBatch) {
+        this.maxTokensPerBatch = maxTokensPerBatch;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxItemsPerBatch(int maxItemsPerBatch) {
+        this.maxItemsPerBatch = maxItemsPerBatch;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setCompactLog(boolean compactLog) {
+        this.compactLog = compactLog;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setAdditionalParams(Map<String, String> additionalParams) {
+        this.additionalParams = additionalParams != null ? additionalParams : new HashMap<>();
+    }
+
+    // Getters
+    public List<String> getItems() { return items; }
+    public Map<String, String> getNamedItems() { return namedItems; }
+    public String getAnalysisType() { return analysisType; }
+    public String getPrompt() { return prompt; }
+    public String getModel() { return model; }
+    public int getTimeoutSeconds() { return timeoutSeconds; }
+    public int getMaxTokensPerBatch() { return maxTokensPerBatch; }
+    public int getMaxItemsPerBatch() { return maxItemsPerBatch; }
+    public boolean isCache() { return cache; }
+    public boolean isCompactLog() { return compactLog; }
+    public Map<String, String> getAdditionalParams() { return additionalParams; }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "codexAnalysisBatch";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Codex Batch Analysis";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return false;
+        }
+
+        @Override
+        public boolean isAdvanced() {
+            return false;
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, TaskListener.class, Launcher.class, EnvVars.class, FilePath.class);
+        }
+    }
+}
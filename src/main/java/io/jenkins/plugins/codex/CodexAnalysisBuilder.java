@@ -15,6 +15,7 @@ import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import java.io.IOException;
@@ -35,6 +36,9 @@ public class CodexAnalysisBuilder extends Builder {
     private final boolean includeBuildContext;
     private final boolean failOnError;
     private final String additionalParams;
+    // Null for builders saved before the option existed, which keeps caching enabled for them
+    private Boolean cache;
+    private boolean compactLog;
 
     @DataBoundConstructor
     public CodexAnalysisBuilder(String content, String analysisType, String prompt,
@@ -67,7 +71,7 @@ public class CodexAnalysisBuilder extends Builder {
 
             // Check if Codex CLI is available
             EnvVars environment = run.getEnvironment(listener);
-            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, jobConfig);
+            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, jobConfig, run);
 
             if (!executor.isCodexAvailable()) {
                 String error = "Codex CLI is not available. Please ensure it's installed and configured.";
@@ -82,6 +86,8 @@ public class CodexAnalysisBuilder extends Builder {
             String contentToAnalyze = content;
             if (contentToAnalyze == null || contentToAnalyze.trim().isEmpty()) {
                 contentToAnalyze = "No specific content provided for analysis.";
+            } else if (isCompactLog() && !includeBuildContext) {
+                contentToAnalyze = LogCompactor.compact(contentToAnalyze, listener);
             }
 
             // Include build context if requested
@@ -91,17 +97,17 @@ public class CodexAnalysisBuilder extends Builder {
                     contentToAnalyze, environment, null,
                     workspace != null ? workspace.getRemote() : null
                 );
+                analysisContext.setCompactLogs(isCompactLog());
+                analysisContext.setTokenBudget(ContextBudget.forAnalysis(model, jobConfig));
                 contentToAnalyze = analysisContext.buildFocusedContext(analysisType);
             }
 
             // Parse additional parameters
             Map<String, String> params = parseAdditionalParams(additionalParams);
 
-            // Use job-level model if specified, otherwise use step-level model, otherwise use job default
+            // Use the step-level model if specified; otherwise the executor routes the analysis
+            // (see CodexModelRouter) or falls back to the job default model
             String effectiveModel = model;
-            if ((effectiveModel == null || effectiveModel.trim().isEmpty()) && jobConfig != null) {
-                effectiveModel = jobConfig.getEffectiveDefaultModel();
-            }
             if (effectiveModel != null && !effectiveModel.trim().isEmpty()) {
                 params.put("model", effectiveModel);
             }
@@ -114,6 +120,9 @@ public class CodexAnalysisBuilder extends Builder {
             if (effectiveTimeout > 0) {
                 params.put("timeout", String.valueOf(effectiveTimeout));
             }
+            if (!isCache()) {
+                params.put("cache", "false");
+            }
 
             // Execute analysis
             CodexCliExecutor.CodexAnalysisResult result = executor.executeAnalysis(
@@ -135,7 +144,7 @@ public class CodexAnalysisBuilder extends Builder {
 
                 return true;
             } else {
-                String error = "Codex analysis failed: " + result.getError();
+                String error = (result.isTimedOut() ? "Codex analysis timed out: " : "Codex analysis failed: ") + result.getError();
                 listener.error(error);
                 if (failOnError) {
                     return false;
@@ -180,6 +189,16 @@ public class CodexAnalysisBuilder extends Builder {
         return params;
     }
 
+    @DataBoundSetter
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+
+    @DataBoundSetter
+    public void setCompactLog(boolean compactLog) {
+        this.compactLog = compactLog;
+    }
+
     // Getters
     public String getContent() { return content; }
     public String getAnalysisType() { return analysisType; }
@@ -189,6 +208,8 @@ public class CodexAnalysisBuilder extends Builder {
     public boolean isIncludeBuildContext() { return includeBuildContext; }
     public boolean isFailOnError() { return failOnError; }
     public String getAdditionalParams() { return additionalParams; }
+    public boolean isCache() { return cache == null || cache; }
+    public boolean isCompactLog() { return compactLog; }
 
     @Extension
     public static class DescriptorImpl extends BuildStepDescriptor<Builder> {
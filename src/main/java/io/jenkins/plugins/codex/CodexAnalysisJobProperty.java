@@ -15,6 +15,7 @@ import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
@@ -44,6 +45,8 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
     private String litellmApiKey;
     private List<String> selectedMcpServers;
     private boolean useJobConfig;
+    private String fallbackModel;
+    private int hedgeLatencyPercentile;
 
     @DataBoundConstructor
     public CodexAnalysisJobProperty(String codexCliPath, String codexCliDownloadUrl, String codexCliDownloadUsername, String codexCliDownloadPassword, String configPath,
@@ -136,6 +139,26 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
         return "";
     }
 
+    /**
+     * Get the effective fallback model for hedged analyses (job config only, empty disables hedging)
+     */
+    public String getEffectiveFallbackModel() {
+        if (useJobConfig && fallbackModel != null && !fallbackModel.trim().isEmpty()) {
+            return fallbackModel.trim();
+        }
+        return "";
+    }
+
+    /**
+     * Get the latency percentile after which an analysis is hedged (job config, 95 by default)
+     */
+    public int getEffectiveHedgeLatencyPercentile() {
+        if (useJobConfig && hedgeLatencyPercentile > 0 && hedgeLatencyPercentile <= 100) {
+            return hedgeLatencyPercentile;
+        }
+        return 95;
+    }
+
     /**
      * Get the effective timeout (job config or global fallback)
      */
@@ -331,6 +354,24 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
         this.useJobConfig = useJobConfig;
     }
 
+    public String getFallbackModel() {
+        return fallbackModel;
+    }
+
+    @DataBoundSetter
+    public void setFallbackModel(String fallbackModel) {
+        this.fallbackModel = fallbackModel;
+    }
+
+    public int getHedgeLatencyPercentile() {
+        return hedgeLatencyPercentile;
+    }
+
+    @DataBoundSetter
+    public void setHedgeLatencyPercentile(int hedgeLatencyPercentile) {
+        this.hedgeLatencyPercentile = hedgeLatencyPercentile;
+    }
+
     @Extension
     public static class DescriptorImpl extends JobPropertyDescriptor {
 
@@ -703,47 +744,54 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
         }
 
         /**
-         * Get available models from Codex CLI (job-level only)
+         * Fill the fallback model dropdown list, offering the same models as the default model
          */
-        public String[] getAvailableModels() {
+        public ListBoxModel doFillFallbackModelItems() {
+            return doFillDefaultModelItems();
+        }
+
+        /**
+         * Validate hedge latency percentile
+         */
+        public FormValidation doCheckHedgeLatencyPercentile(@QueryParameter String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return FormValidation.ok();
+            }
             try {
-                // Try to fetch models from Codex CLI directly
-                String effectiveCliPath = "~/.local/bin/codex".replaceFirst("^~", System.getProperty("user.home"));
-
-                // Execute codex CLI to get available models
-                ProcessBuilder pb = new ProcessBuilder(effectiveCliPath, "models", "list");
-                pb.redirectErrorStream(true);
-                Process process = pb.start();
-
-                // Read output
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(process.getInputStream()));
-                StringBuilder output = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
+                int percentile = Integer.parseInt(value.trim());
+                if (percentile < 0 || percentile > 100) {
+                    return FormValidation.error("Percentile must be between 1 and 100");
                 }
-
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    // Parse the output to extract model names
-                    List<String> models = parseModelList(output.toString());
-                    if (!models.isEmpty()) {
-                        return models.toArray(new String[0]);
-                    }
+                if (percentile > 0 && percentile < 50) {
+                    return FormValidation.warning("A low percentile hedges most analyses and doubles their cost");
                 }
+                return FormValidation.ok();
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Invalid percentile value");
+            }
+        }
+
+        /**
+         * Get available models from the Codex CLI configured globally on the controller.
+         * Served from {@link CodexModelRegistry}, so the CLI only runs when the cached list has expired.
+         */
+        public String[] getAvailableModels() {
+            try {
+                CodexAnalysisPlugin cfg = CodexAnalysisPlugin.get();
+                String globalPath = (cfg != null) ? Util.fixEmptyAndTrim(cfg.getCodexCliPath()) : null;
+                String path = (globalPath != null) ? globalPath : "~/.local/bin/codex";
+                List<String> models = CodexModelRegistry.get().getModels("", Jenkins.get().getRootPath(), path);
+                return models.toArray(new String[0]);
             } catch (Exception e) {
                 // If CLI execution fails, return empty array
+                return new String[0];
             }
-
-            // Return empty array if CLI execution fails
-            return new String[0];
         }
 
         /**
          * Parse model list from Codex CLI output
          */
-        private List<String> parseModelList(String output) {
+        static List<String> parseModelList(String output) {
             List<String> models = new ArrayList<>();
             String[] lines = output.split("\n");
 
@@ -855,6 +903,10 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
                                                                    effectiveCliDownloadPassword, path));
 
                 if (success) {
+                    // The binary changed, so cached probes and running workers on that node are stale
+                    CodexCliProbeCache.get().invalidateNode(target.getNodeName());
+                    CodexModelRegistry.get().invalidateNode(target.getNodeName());
+                    CodexWorkerPool.get().shutdownNode(target.getNodeName());
                     String where = (target == j) ? "controller" : target.getNodeName();
                     return FormValidation.ok("Codex CLI successfully updated from: " + effectiveCliDownloadUrl + " on " + where);
                 } else {
@@ -980,7 +1032,7 @@ public class CodexAnalysisJobProperty extends JobProperty<Job<?, ?>> {
         }
 
         // Callable executed on a remote node to get Codex CLI models list
-        private static class ModelsListCallable implements FilePath.FileCallable<String> {
+        static class ModelsListCallable implements FilePath.FileCallable<String> {
             private final String rawPath;
 
             ModelsListCallable(String rawPath) {
@@ -14,6 +14,7 @@ import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.verb.POST;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,7 +33,28 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
     private String codexCliDownloadPassword = "";
     private String configPath = "~/.codex/config.toml";
     private int timeoutSeconds = 120;
+    private int timeoutGraceSeconds = 30;
+    private int maxCapturedOutputKb = 1024;
     private String litellmApiKey = "";
+    private boolean enableWorkerPool = false;
+    private int workerPoolMaxSize = 4;
+    private int workerPoolIdleTimeoutSeconds = 300;
+    private int maxConcurrentInvocations = 16;
+    private int maxConcurrentInvocationsPerNode = 4;
+    private boolean enableResultCache = true;
+    private int resultCacheMaxSizeMb = 100;
+    private int resultCacheMaxAgeHours = 24;
+    private int rateLimitRequestsPerMinute = 0;
+    private int rateLimitTokensPerMinute = 0;
+    private String modelRateLimits = "";
+    private int maxRetries = 2;
+    private int retryBaseDelaySeconds = 2;
+    private int circuitBreakerFailureThreshold = 5;
+    private int circuitBreakerOpenSeconds = 60;
+    private String modelRoutingRules = "";
+    private String errorSignatures = "";
+    private int contextTokenBudget = ContextBudget.DEFAULT_CONTEXT_TOKEN_BUDGET;
+    private String modelContextTokenBudgets = "";
 
     // Cached model list from Codex CLI
     private List<String> cachedModels = new ArrayList<>();
@@ -112,6 +134,134 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
         this.timeoutSeconds = timeoutSeconds;
     }
 
+    public int getTimeoutGraceSeconds() {
+        return timeoutGraceSeconds;
+    }
+
+    public void setTimeoutGraceSeconds(int timeoutGraceSeconds) {
+        this.timeoutGraceSeconds = timeoutGraceSeconds;
+    }
+
+    public int getMaxCapturedOutputKb() {
+        return maxCapturedOutputKb;
+    }
+
+    public void setMaxCapturedOutputKb(int maxCapturedOutputKb) {
+        this.maxCapturedOutputKb = maxCapturedOutputKb;
+    }
+
+    public boolean isEnableResultCache() {
+        return enableResultCache;
+    }
+
+    public void setEnableResultCache(boolean enableResultCache) {
+        this.enableResultCache = enableResultCache;
+    }
+
+    public int getResultCacheMaxSizeMb() {
+        return resultCacheMaxSizeMb;
+    }
+
+    public void setResultCacheMaxSizeMb(int resultCacheMaxSizeMb) {
+        this.resultCacheMaxSizeMb = resultCacheMaxSizeMb;
+    }
+
+    public int getResultCacheMaxAgeHours() {
+        return resultCacheMaxAgeHours;
+    }
+
+    public void setResultCacheMaxAgeHours(int resultCacheMaxAgeHours) {
+        this.resultCacheMaxAgeHours = resultCacheMaxAgeHours;
+    }
+
+    public int getRateLimitRequestsPerMinute() {
+        return rateLimitRequestsPerMinute;
+    }
+
+    public void setRateLimitRequestsPerMinute(int rateLimitRequestsPerMinute) {
+        this.rateLimitRequestsPerMinute = rateLimitRequestsPerMinute;
+    }
+
+    public int getRateLimitTokensPerMinute() {
+        return rateLimitTokensPerMinute;
+    }
+
+    public void setRateLimitTokensPerMinute(int rateLimitTokensPerMinute) {
+        this.rateLimitTokensPerMinute = rateLimitTokensPerMinute;
+    }
+
+    public String getModelRateLimits() {
+        return modelRateLimits;
+    }
+
+    public void setModelRateLimits(String modelRateLimits) {
+        this.modelRateLimits = modelRateLimits;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public int getRetryBaseDelaySeconds() {
+        return retryBaseDelaySeconds;
+    }
+
+    public void setRetryBaseDelaySeconds(int retryBaseDelaySeconds) {
+        this.retryBaseDelaySeconds = retryBaseDelaySeconds;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public int getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+        this.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds;
+    }
+
+    public String getModelRoutingRules() {
+        return modelRoutingRules;
+    }
+
+    public void setModelRoutingRules(String modelRoutingRules) {
+        this.modelRoutingRules = modelRoutingRules;
+    }
+
+    public String getErrorSignatures() {
+        return errorSignatures;
+    }
+
+    public void setErrorSignatures(String errorSignatures) {
+        this.errorSignatures = errorSignatures;
+    }
+
+    public int getContextTokenBudget() {
+        return contextTokenBudget;
+    }
+
+    public void setContextTokenBudget(int contextTokenBudget) {
+        this.contextTokenBudget = contextTokenBudget;
+    }
+
+    public String getModelContextTokenBudgets() {
+        return modelContextTokenBudgets;
+    }
+
+    public void setModelContextTokenBudgets(String modelContextTokenBudgets) {
+        this.modelContextTokenBudgets = modelContextTokenBudgets;
+    }
+
 
     public String getLitellmApiKey() {
         return litellmApiKey;
@@ -121,6 +271,46 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
         this.litellmApiKey = litellmApiKey;
     }
 
+    public boolean isEnableWorkerPool() {
+        return enableWorkerPool;
+    }
+
+    public void setEnableWorkerPool(boolean enableWorkerPool) {
+        this.enableWorkerPool = enableWorkerPool;
+    }
+
+    public int getWorkerPoolMaxSize() {
+        return workerPoolMaxSize;
+    }
+
+    public void setWorkerPoolMaxSize(int workerPoolMaxSize) {
+        this.workerPoolMaxSize = workerPoolMaxSize;
+    }
+
+    public int getWorkerPoolIdleTimeoutSeconds() {
+        return workerPoolIdleTimeoutSeconds;
+    }
+
+    public void setWorkerPoolIdleTimeoutSeconds(int workerPoolIdleTimeoutSeconds) {
+        this.workerPoolIdleTimeoutSeconds = workerPoolIdleTimeoutSeconds;
+    }
+
+    public int getMaxConcurrentInvocations() {
+        return maxConcurrentInvocations;
+    }
+
+    public void setMaxConcurrentInvocations(int maxConcurrentInvocations) {
+        this.maxConcurrentInvocations = maxConcurrentInvocations;
+    }
+
+    public int getMaxConcurrentInvocationsPerNode() {
+        return maxConcurrentInvocationsPerNode;
+    }
+
+    public void setMaxConcurrentInvocationsPerNode(int maxConcurrentInvocationsPerNode) {
+        this.maxConcurrentInvocationsPerNode = maxConcurrentInvocationsPerNode;
+    }
+
 
 
     /**
@@ -263,12 +453,27 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
         }
     }
 
+    /**
+     * Validate timeout grace period
+     */
+    public FormValidation doCheckTimeoutGraceSeconds(@QueryParameter String value) {
+        try {
+            int grace = Integer.parseInt(value);
+            if (grace < 0) {
+                return FormValidation.error("Grace period must not be negative");
+            }
+            return FormValidation.ok();
+        } catch (NumberFormatException e) {
+            return FormValidation.error("Invalid grace period");
+        }
+    }
+
     /**
      * Validate default model
      */
     public FormValidation doCheckDefaultModel(@QueryParameter String value) {
         if (value == null || value.trim().isEmpty()) {
-            return FormValidation.warning("Default model is empty, will use 'kimi-k2'");
+            return FormValidation.warning("Default model is empty, will use '" + CodexModelRegistry.FALLBACK_MODEL + "'");
         }
 
         // Check if the selected model is in the available models list
@@ -280,6 +485,90 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
         return FormValidation.ok();
     }
 
+    /**
+     * Validate worker pool size
+     */
+    public FormValidation doCheckWorkerPoolMaxSize(@QueryParameter String value) {
+        try {
+            int size = Integer.parseInt(value);
+            if (size <= 0) {
+                return FormValidation.error("Pool size must be positive");
+            }
+            return FormValidation.ok();
+        } catch (NumberFormatException e) {
+            return FormValidation.error("Invalid pool size");
+        }
+    }
+
+    /**
+     * Validate per-model rate limit overrides
+     */
+    public FormValidation doCheckModelRateLimits(@QueryParameter String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return FormValidation.ok();
+        }
+        for (String line : value.split("[\\r\\n;]+")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.matches("[^=\\s]+\\s*=\\s*\\d+(\\s*/\\s*\\d+)?")) {
+                return FormValidation.error("Invalid entry '" + line + "', expected model=requests/tokens");
+            }
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Validate per-model context token budgets
+     */
+    public FormValidation doCheckModelContextTokenBudgets(@QueryParameter String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return FormValidation.ok();
+        }
+        for (String line : value.split("[\\r\\n;]+")) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.matches("[^=\\s]+\\s*=\\s*\\d+")) {
+                return FormValidation.error("Invalid entry '" + line + "', expected model=tokens");
+            }
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Validate model routing rules
+     */
+    public FormValidation doCheckModelRoutingRules(@QueryParameter String value) {
+        List<String> errors = new ArrayList<>();
+        CodexModelRouter.parseRules(value, errors);
+        if (!errors.isEmpty()) {
+            return FormValidation.error(String.join("; ", errors));
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Validate extra error signatures
+     */
+    public FormValidation doCheckErrorSignatures(@QueryParameter String value) {
+        List<String> errors = new ArrayList<>();
+        ErrorExcerptExtractor.parseSignatures(value, errors);
+        if (!errors.isEmpty()) {
+            return FormValidation.error(String.join("; ", errors));
+        }
+        return FormValidation.ok();
+    }
+
+    /**
+     * Report result cache statistics and delete all cached results
+     */
+    @POST
+    public FormValidation doClearResultCache() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        CodexResultCache cache = CodexResultCache.get();
+        String stats = cache.getEntryCount() + " entries, " + cache.getTotalBytes() / 1024 + " KB, "
+            + cache.getHitCount() + " hits, " + cache.getMissCount() + " misses";
+        cache.clear();
+        return FormValidation.ok("Cleared result cache (" + stats + ")");
+    }
+
     /**
      * Validate LiteLLM API key
      */
@@ -369,7 +658,7 @@ public class CodexAnalysisPlugin extends GlobalConfiguration {
      */
     private List<String> getDefaultModelOptions() {
         List<String> models = new ArrayList<>();
-        models.add("kimi-k2");
+        models.add(CodexModelRegistry.FALLBACK_MODEL);
         models.add("gpt-4");
         models.add("gpt-4-turbo");
         models.add("gpt-3.5-turbo");
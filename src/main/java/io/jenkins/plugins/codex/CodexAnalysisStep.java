@@ -17,6 +17,7 @@ import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -33,6 +34,19 @@ public class CodexAnalysisStep extends Step {
     private String model;
     private int timeoutSeconds = 120;
     private boolean includeContext = true;
+    private boolean cache = true;
+    private boolean chunked = false;
+    private boolean compactLog;
+    private boolean excerptErrors = false;
+    private int excerptContextLines = ErrorExcerptExtractor.DEFAULT_CONTEXT_LINES;
+    private int maxContextTokens = 0;
+    private String testReports;
+    private boolean includeChanges = true;
+    private boolean changeDiff = false;
+    private int maxDiffBytes = ChangeSetSummary.DEFAULT_MAX_DIFF_BYTES;
+    private boolean newErrorsOnly = false;
+    private int maxChunkTokens = CodexMapReduce.DEFAULT_MAX_CHUNK_TOKENS;
+    private int maxParallelChunks = CodexMapReduce.DEFAULT_MAX_PARALLEL_CHUNKS;
     private Map<String, String> additionalParams = new HashMap<>();
 
     @DataBoundConstructor
@@ -72,7 +86,7 @@ public class CodexAnalysisStep extends Step {
             }
 
             // Check if Codex CLI is available
-            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, jobConfig);
+            CodexCliExecutor executor = new CodexCliExecutor(launcher, listener, environment, workspace, jobConfig, run);
             if (!executor.isCodexAvailable()) {
                 listener.error("Codex CLI is not available. Please ensure it's installed and configured.");
                 return "Codex CLI not available";
@@ -82,26 +96,73 @@ public class CodexAnalysisStep extends Step {
             String contentToAnalyze = step.content;
             if (contentToAnalyze == null || contentToAnalyze.trim().isEmpty()) {
                 contentToAnalyze = "No specific content provided for analysis.";
+            } else {
+                FailureFingerprints.Comparison newErrors = step.newErrorsOnly
+                    ? keepNewErrors(run, contentToAnalyze, listener) : null;
+                if (newErrors != null && newErrors.isReduced()) {
+                    contentToAnalyze = newErrors.getText();
+                } else if (step.excerptErrors) {
+                    CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+                    contentToAnalyze = new ErrorExcerptExtractor(
+                        globalConfig != null ? globalConfig.getErrorSignatures() : null, step.excerptContextLines
+                    ).extract(contentToAnalyze, listener);
+                }
+                if (step.compactLog && (step.chunked || !step.includeContext)) {
+                    // The full context compacts its own content below
+                    contentToAnalyze = LogCompactor.compact(contentToAnalyze, listener);
+                }
+            }
+
+            // Test reports are summarized on the agent, only failures come back
+            if (step.testReports != null && !step.testReports.trim().isEmpty()) {
+                if (workspace == null) {
+                    listener.getLogger().println("No workspace available, test reports are not summarized");
+                } else {
+                    String summary = workspace.act(new TestReportSummarizer(step.testReports.trim()));
+                    listener.getLogger().println("Summarized test reports matching " + step.testReports.trim()
+                        + " (" + summary.length() + " characters)");
+                    contentToAnalyze = step.content == null || step.content.trim().isEmpty()
+                        ? summary : contentToAnalyze + "\n\n" + summary;
+                }
+            }
+
+            String diff = step.includeContext && step.includeChanges && step.changeDiff
+                ? computeChangeDiff(run, workspace, listener) : null;
+
+            // Chunked mode prepends the context to every chunk instead of building one large string
+            String contextHeader = null;
+            if (step.chunked && step.includeContext) {
+                AnalysisContext headerContext = new AnalysisContext(
+                    run, listener, null, "codexAnalysis",
+                    null, environment, null,
+                    workspace != null ? workspace.getRemote() : null
+                );
+                headerContext.setIncludeChanges(step.includeChanges);
+                headerContext.setChangeDiff(diff);
+                contextHeader = headerContext.buildFocusedContext(step.analysisType);
             }
 
             // Build analysis context if requested
-            if (step.includeContext) {
+            if (step.includeContext && !step.chunked) {
                 AnalysisContext analysisContext = new AnalysisContext(
                     run, listener, null, "codexAnalysis",
                     contentToAnalyze, environment, null,
                     workspace != null ? workspace.getRemote() : null
                 );
+                analysisContext.setCompactLogs(step.compactLog);
+                analysisContext.setIncludeChanges(step.includeChanges);
+                analysisContext.setChangeDiff(diff);
+                analysisContext.setTokenBudget(step.maxContextTokens > 0 ? step.maxContextTokens
+                    : ContextBudget.forAnalysis(step.model, jobConfig));
                 contentToAnalyze = analysisContext.buildFocusedContext(step.analysisType);
             }
 
             // Prepare additional parameters
             Map<String, String> params = new HashMap<>(step.additionalParams);
 
-            // Use job-level model if specified, otherwise use step-level model, otherwise use job default
+            // Use the step-level model if specified; otherwise the executor routes the analysis
+            // (see CodexModelRouter) or falls back to the job default model
             String effectiveModel = step.model;
-            if ((effectiveModel == null || effectiveModel.trim().isEmpty()) && jobConfig != null) {
-                effectiveModel = jobConfig.getEffectiveDefaultModel();
-            }
             if (effectiveModel != null && !effectiveModel.trim().isEmpty()) {
                 params.put("model", effectiveModel);
             }
@@ -114,21 +175,40 @@ public class CodexAnalysisStep extends Step {
             if (effectiveTimeout > 0) {
                 params.put("timeout", String.valueOf(effectiveTimeout));
             }
+            if (!step.cache) {
+                params.put("cache", "false");
+            }
 
             // Execute analysis
             try {
-                CodexCliExecutor.CodexAnalysisResult result = executor.executeAnalysis(
-                    contentToAnalyze,
-                    step.analysisType,
-                    step.prompt,
-                    params
-                );
+                CodexCliExecutor.CodexAnalysisResult result;
+                if (step.chunked) {
+                    result = executor.executeChunkedAnalysis(
+                        new StringReader(contentToAnalyze),
+                        contextHeader,
+                        step.analysisType,
+                        step.prompt,
+                        params,
+                        step.maxChunkTokens,
+                        step.maxParallelChunks
+                    );
+                } else {
+                    result = executor.executeAnalysis(
+                        contentToAnalyze,
+                        step.analysisType,
+                        step.prompt,
+                        params
+                    );
+                }
 
                 if (result.isSuccess()) {
                     listener.getLogger().println("=== CODEX ANALYSIS RESULT ===");
                     listener.getLogger().println(result.getOutput());
                     listener.getLogger().println("=== END ANALYSIS ===");
                     return result.getOutput();
+                } else if (result.isTimedOut()) {
+                    listener.error("Codex analysis timed out: " + result.getError());
+                    return "Analysis timed out: " + result.getError();
                 } else {
                     listener.error("Codex analysis failed: " + result.getError());
                     return "Analysis failed: " + result.getError();
@@ -139,6 +219,51 @@ public class CodexAnalysisStep extends Step {
                 return "Analysis error: " + e.getMessage();
             }
         }
+
+        /**
+         * Error signatures of the content that the last successful build did not have
+         *
+         * @return null when there is no successful build to compare with
+         */
+        private FailureFingerprints.Comparison keepNewErrors(Run<?, ?> run, String content, TaskListener listener)
+                throws IOException {
+            Run<?, ?> baseline = run.getParent().getLastSuccessfulBuild();
+            if (baseline == null || baseline == run) {
+                listener.getLogger().println("No successful build to compare error signatures with");
+                return null;
+            }
+            ErrorExcerptExtractor signatures = FailureFingerprints.configuredSignatures();
+            return FailureFingerprints.of(baseline, signatures)
+                .newSignatures(content, signatures, baseline.getFullDisplayName(), listener);
+        }
+
+        /**
+         * Diff of the changed files the error lines of the content refer to, computed on the agent
+         */
+        private String computeChangeDiff(Run<?, ?> run, FilePath workspace, TaskListener listener)
+                throws IOException, InterruptedException {
+            if (workspace == null || step.content == null || step.content.isBlank()) {
+                return null;
+            }
+            ChangeSetSummary changes = ChangeSetSummary.of(run);
+            if (changes.isEmpty()) {
+                return null;
+            }
+            // Files named on error lines, or anywhere in content without error lines
+            CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+            String errors = new ErrorExcerptExtractor(
+                globalConfig != null ? globalConfig.getErrorSignatures() : null, 0
+            ).extract(step.content, null);
+            Set<String> paths = changes.implicatedPaths(errors);
+            ChangeSetSummary.DiffCallable callable = changes.diffCallable(paths, step.maxDiffBytes);
+            if (callable == null) {
+                return null;
+            }
+            String diff = workspace.act(callable);
+            listener.getLogger().println("Added diff of " + paths.size() + " changed files implicated by the failure ("
+                + diff.length() + " characters)");
+            return diff;
+        }
     }
 
     @Override
@@ -176,6 +301,71 @@ public class CodexAnalysisStep extends Step {
         this.includeContext = includeContext;
     }
 
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setChunked(boolean chunked) {
+        this.chunked = chunked;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setCompactLog(boolean compactLog) {
+        this.compactLog = compactLog;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setExcerptErrors(boolean excerptErrors) {
+        this.excerptErrors = excerptErrors;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setExcerptContextLines(int excerptContextLines) {
+        this.excerptContextLines = excerptContextLines;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setTestReports(String testReports) {
+        this.testReports = testReports;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setIncludeChanges(boolean includeChanges) {
+        this.includeChanges = includeChanges;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setChangeDiff(boolean changeDiff) {
+        this.changeDiff = changeDiff;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxDiffBytes(int maxDiffBytes) {
+        this.maxDiffBytes = maxDiffBytes;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setNewErrorsOnly(boolean newErrorsOnly) {
+        this.newErrorsOnly = newErrorsOnly;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxContextTokens(int maxContextTokens) {
+        this.maxContextTokens = maxContextTokens;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxChunkTokens(int maxChunkTokens) {
+        this.maxChunkTokens = maxChunkTokens;
+    }
+
+    @org.kohsuke.stapler.DataBoundSetter
+    public void setMaxParallelChunks(int maxParallelChunks) {
+        this.maxParallelChunks = maxParallelChunks;
+    }
+
     @org.kohsuke.stapler.DataBoundSetter
     public void setAdditionalParams(Map<String, String> additionalParams) {
         this.additionalParams = additionalParams != null ? additionalParams : new HashMap<>();
@@ -188,6 +378,19 @@ public class CodexAnalysisStep extends Step {
     public String getModel() { return model; }
     public int getTimeoutSeconds() { return timeoutSeconds; }
     public boolean isIncludeContext() { return includeContext; }
+    public boolean isCache() { return cache; }
+    public boolean isChunked() { return chunked; }
+    public boolean isCompactLog() { return compactLog; }
+    public boolean isExcerptErrors() { return excerptErrors; }
+    public int getExcerptContextLines() { return excerptContextLines; }
+    public int getMaxContextTokens() { return maxContextTokens; }
+    public String getTestReports() { return testReports; }
+    public boolean isIncludeChanges() { return includeChanges; }
+    public boolean isChangeDiff() { return changeDiff; }
+    public int getMaxDiffBytes() { return maxDiffBytes; }
+    public boolean isNewErrorsOnly() { return newErrorsOnly; }
+    public int getMaxChunkTokens() { return maxChunkTokens; }
+    public int getMaxParallelChunks() { return maxParallelChunks; }
     public Map<String, String> getAdditionalParams() { return additionalParams; }
 
     @Extension
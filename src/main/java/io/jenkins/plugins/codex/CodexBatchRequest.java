@@ -0,0 +1,132 @@
+package io.jenkins.plugins.codex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Packs several analysis items into one Codex request and splits the answer back into per-item results.
+ * Items are numbered within their batch and delimited in the content; the model is asked to start the
+ * analysis of every item with a result marker carrying the same number.
+ */
+public final class CodexBatchRequest {
+
+    // Default estimated token budget of the content of one batch
+    public static final int DEFAULT_MAX_TOKENS_PER_BATCH = 16000;
+
+    // Default number of items per batch, longer answers get harder for the model to keep apart
+    public static final int DEFAULT_MAX_ITEMS_PER_BATCH = 20;
+
+    private static final Pattern RESULT_MARKER = Pattern.compile("^\\s*=+\\s*RESULT\\s+(\\d+)\\s*=+\\s*$",
+        Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+
+    private CodexBatchRequest() {
+    }
+
+    /**
+     * Split items into batches in their original order, so that each batch stays within the token budget and
+     * item limit. An item exceeding the budget on its own gets a batch of its own.
+     */
+    public static List<List<String>> pack(Map<String, String> items, long maxTokensPerBatch, int maxItemsPerBatch) {
+        long tokenBudget = maxTokensPerBatch > 0 ? maxTokensPerBatch : DEFAULT_MAX_TOKENS_PER_BATCH;
+        int itemLimit = maxItemsPerBatch > 0 ? maxItemsPerBatch : DEFAULT_MAX_ITEMS_PER_BATCH;
+
+        List<List<String>> batches = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        long currentTokens = 0;
+        for (Map.Entry<String, String> item : items.entrySet()) {
+            long tokens = estimateTokens(item.getValue());
+            if (!current.isEmpty() && (currentTokens + tokens > tokenBudget || current.size() >= itemLimit)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(item.getKey());
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Content of a batch: every item wrapped in numbered delimiters
+     */
+    public static String renderContent(List<String> batch, Map<String, String> items) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            int number = i + 1;
+            content.append("=== ITEM ").append(number).append(" ===\n");
+            String text = items.get(batch.get(i));
+            content.append(text != null ? text : "");
+            if (content.charAt(content.length() - 1) != '\n') {
+                content.append('\n');
+            }
+            content.append("=== END ITEM ").append(number).append(" ===\n\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Prompt of a batch: the caller's prompt followed by the instructions on how to answer
+     */
+    public static String renderPrompt(String customPrompt, int itemCount) {
+        StringBuilder prompt = new StringBuilder();
+        if (customPrompt != null && !customPrompt.trim().isEmpty()) {
+            prompt.append(customPrompt.trim()).append("\n\n");
+        }
+        prompt.append("The content contains ").append(itemCount).append(" independent items, each between ")
+            .append("'=== ITEM n ===' and '=== END ITEM n ==='. Analyze every item separately. ")
+            .append("Start the analysis of item n with a line containing only '=== RESULT n ===' ")
+            .append("and do not refer to other items.");
+        return prompt.toString();
+    }
+
+    /**
+     * Split the answer of a batch into the analyses of its items
+     *
+     * @return item id to analysis; items the answer has no section for are missing
+     */
+    public static Map<String, String> parseOutput(String output, List<String> batch) {
+        Map<String, String> results = new HashMap<>();
+        if (output == null) {
+            return results;
+        }
+        Matcher matcher = RESULT_MARKER.matcher(output);
+        int sectionNumber = -1;
+        int sectionStart = -1;
+        while (matcher.find()) {
+            addSection(results, batch, sectionNumber, output.substring(Math.max(0, sectionStart), matcher.start()));
+            sectionNumber = parseNumber(matcher.group(1));
+            sectionStart = matcher.end();
+        }
+        addSection(results, batch, sectionNumber, sectionStart >= 0 ? output.substring(sectionStart) : "");
+        return results;
+    }
+
+    private static void addSection(Map<String, String> results, List<String> batch, int number, String text) {
+        if (number < 1 || number > batch.size()) {
+            return;
+        }
+        String id = batch.get(number - 1);
+        // Keep the first section if the model repeats a marker
+        results.putIfAbsent(id, text.trim());
+    }
+
+    private static int parseNumber(String digits) {
+        try {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long estimateTokens(String text) {
+        // Delimiters add a few tokens per item
+        return CodexRateLimiter.estimateTokens(text != null ? text.length() : 0) + 16;
+    }
+}
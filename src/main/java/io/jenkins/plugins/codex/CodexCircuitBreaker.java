@@ -0,0 +1,167 @@
+package io.jenkins.plugins.codex;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breakers per model and per node for Codex calls.
+ * After a number of consecutive transient failures a circuit opens and calls fail fast instead of
+ * launching the CLI. Once the open period has passed a single trial call is let through: its success
+ * closes the circuit again, its failure reopens it.
+ */
+public class CodexCircuitBreaker {
+
+    private static final CodexCircuitBreaker INSTANCE = new CodexCircuitBreaker(
+        CodexCircuitBreaker::getConfiguredThreshold, CodexCircuitBreaker::getConfiguredOpenMillis, System::currentTimeMillis);
+
+    private final IntSupplier failureThreshold;
+    private final LongSupplier openMillis;
+    private final LongSupplier clock;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    CodexCircuitBreaker(IntSupplier failureThreshold, LongSupplier openMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    public static CodexCircuitBreaker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fail fast if the circuit of the model or the node is open
+     */
+    public void checkAllowed(String model, String nodeName) throws CircuitOpenException {
+        if (failureThreshold.getAsInt() <= 0) {
+            return;
+        }
+        Circuit modelCircuit = circuit(modelKey(model));
+        Circuit nodeCircuit = circuit(nodeKey(nodeName));
+        long now = clock.getAsLong();
+        long modelRetryAt = modelCircuit.tryPass(now);
+        if (modelRetryAt > 0) {
+            throw new CircuitOpenException("model '" + model + "'", modelRetryAt - now);
+        }
+        long nodeRetryAt = nodeCircuit.tryPass(now);
+        if (nodeRetryAt > 0) {
+            modelCircuit.abandonTrial();
+            throw new CircuitOpenException(nodeName == null || nodeName.isEmpty() ? "the controller" : "node '" + nodeName + "'",
+                nodeRetryAt - now);
+        }
+    }
+
+    /**
+     * Record a call that reached the provider. Permanent failures (bad arguments, authentication) count as
+     * success here, since they say nothing about the provider being down.
+     */
+    public void recordSuccess(String model, String nodeName) {
+        circuit(modelKey(model)).onSuccess();
+        circuit(nodeKey(nodeName)).onSuccess();
+    }
+
+    /**
+     * Record a transient failure or timeout
+     */
+    public void recordFailure(String model, String nodeName) {
+        long now = clock.getAsLong();
+        int threshold = failureThreshold.getAsInt();
+        long open = openMillis.getAsLong();
+        circuit(modelKey(model)).onFailure(now, threshold, open);
+        circuit(nodeKey(nodeName)).onFailure(now, threshold, open);
+    }
+
+    /**
+     * Release a trial call that ended without an outcome, e.g. because the build was aborted
+     */
+    public void recordAbandoned(String model, String nodeName) {
+        circuit(modelKey(model)).abandonTrial();
+        circuit(nodeKey(nodeName)).abandonTrial();
+    }
+
+    public boolean isOpen(String model, String nodeName) {
+        long now = clock.getAsLong();
+        return circuit(modelKey(model)).isOpen(now) || circuit(nodeKey(nodeName)).isOpen(now);
+    }
+
+    private Circuit circuit(String key) {
+        return circuits.computeIfAbsent(key, k -> new Circuit());
+    }
+
+    private static String modelKey(String model) {
+        return "model:" + (model != null ? model : "");
+    }
+
+    private static String nodeKey(String nodeName) {
+        return "node:" + (nodeName != null ? nodeName : "");
+    }
+
+    private static int getConfiguredThreshold() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return globalConfig != null ? globalConfig.getCircuitBreakerFailureThreshold() : 0;
+    }
+
+    private static long getConfiguredOpenMillis() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return TimeUnit.SECONDS.toMillis(globalConfig != null ? globalConfig.getCircuitBreakerOpenSeconds() : 60);
+    }
+
+    /**
+     * State of one circuit
+     */
+    private static class Circuit {
+        private int consecutiveFailures;
+        private long openUntil;
+        private boolean trialInFlight;
+
+        /**
+         * @return 0 if the call may pass, otherwise the time at which the circuit may be tried again
+         */
+        synchronized long tryPass(long now) {
+            if (openUntil == 0) {
+                return 0;
+            }
+            if (now < openUntil || trialInFlight) {
+                return Math.max(openUntil, now + 1);
+            }
+            trialInFlight = true;
+            return 0;
+        }
+
+        synchronized void abandonTrial() {
+            trialInFlight = false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure(long now, int threshold, long openMillis) {
+            consecutiveFailures++;
+            if (threshold > 0 && (trialInFlight || consecutiveFailures >= threshold)) {
+                openUntil = now + openMillis;
+            }
+            trialInFlight = false;
+        }
+
+        synchronized boolean isOpen(long now) {
+            return openUntil != 0 && now < openUntil;
+        }
+    }
+
+    /**
+     * Thrown instead of launching the CLI while a circuit is open
+     */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException(String target, long retryInMillis) {
+            super("Codex calls for " + target + " are failing, skipping the call for another "
+                + Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryInMillis + 999)) + " seconds");
+        }
+    }
+}
@@ -3,14 +3,42 @@ package io.jenkins.plugins.codex;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.Computer;
+import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
 import hudson.util.ArgumentListBuilder;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility class for executing Codex CLI commands.
@@ -18,29 +46,423 @@ import java.util.Map;
  */
 public class CodexCliExecutor {
 
+    // Additional parameters consumed by the executor itself and never forwarded to the CLI
+    private static final Set<String> EXECUTOR_PARAMS = Set.of("timeoutGraceSeconds", "cache");
+
+    // Upper bound for "--version" probes
+    private static final long PROBE_TIMEOUT_SECONDS = 30;
+
+    // Distinguishes spill files of several invocations within the same build
+    private static final AtomicInteger SPILL_COUNTER = new AtomicInteger();
+
     private final Launcher launcher;
     private final TaskListener listener;
     private final EnvVars environment;
     private final FilePath workspace;
     private final CodexAnalysisJobProperty jobConfig;
+    private final Run<?, ?> run;
 
     public CodexCliExecutor(Launcher launcher, TaskListener listener, EnvVars environment, FilePath workspace) {
         this(launcher, listener, environment, workspace, null);
     }
 
     public CodexCliExecutor(Launcher launcher, TaskListener listener, EnvVars environment, FilePath workspace, CodexAnalysisJobProperty jobConfig) {
+        this(launcher, listener, environment, workspace, jobConfig, null);
+    }
+
+    /**
+     * @param run build whose directory receives CLI output beyond the capture limit, may be null
+     */
+    public CodexCliExecutor(Launcher launcher, TaskListener listener, EnvVars environment, FilePath workspace,
+                            CodexAnalysisJobProperty jobConfig, Run<?, ?> run) {
         this.launcher = launcher;
         this.listener = listener;
         this.environment = environment;
         this.workspace = workspace;
         this.jobConfig = jobConfig;
+        this.run = run;
     }
 
     /**
-     * Execute a Codex analysis command
+     * Execute a Codex analysis command.
+     * Identical earlier analyses are answered from {@link CodexResultCache} unless the "cache" parameter is "false",
+     * and an identical analysis already in flight is joined instead of started again, see {@link CodexSingleFlight}.
+     * Otherwise each CLI attempt waits for a free invocation slot on the node, see {@link CodexInvocationScheduler};
+     * rate limits and retry backoff are waited out without holding a slot.
+     * Analyses that do not ask for a model are routed by {@link CodexModelRouter}, and slow analyses are
+     * hedged with the job's fallback model, see {@link #startHedgedAnalysis}.
      */
     public CodexAnalysisResult executeAnalysis(String content, String analysisType, String customPrompt,
                                              Map<String, String> additionalParams) throws IOException, InterruptedException {
+        return CodexInvocationScheduler.join(startHedgedAnalysis(content, analysisType, customPrompt, additionalParams));
+    }
+
+    /**
+     * Execute a Codex analysis command asynchronously.
+     * Each CLI attempt is queued until the node and controller have a free invocation slot;
+     * cancelling the returned future dequeues it or kills the running CLI once no other caller shares it.
+     */
+    public CompletableFuture<CodexAnalysisResult> executeAnalysisAsync(String content, String analysisType, String customPrompt,
+                                                                       Map<String, String> additionalParams) {
+        try {
+            return startHedgedAnalysis(content, analysisType, customPrompt, additionalParams);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CompletableFuture<CodexAnalysisResult> interrupted = new CompletableFuture<>();
+            interrupted.completeExceptionally(e);
+            return interrupted;
+        }
+    }
+
+    /**
+     * Analyze many items with few CLI invocations.
+     * Items are packed in their order into batches within the token budget, see {@link CodexBatchRequest};
+     * each batch is one analysis, run concurrently as far as the invocation slots allow. A batch of a single
+     * item is sent as a plain analysis, so it shares cache entries with {@link #executeAnalysis}.
+     *
+     * @param items item id to content, in the order to analyze them
+     * @return item id to result, in the order of {@code items}; items missing from the answer of their batch fail
+     */
+    public Map<String, CodexAnalysisResult> executeAnalysisBatch(Map<String, String> items, String analysisType, String customPrompt,
+                                                                 Map<String, String> additionalParams, long maxTokensPerBatch,
+                                                                 int maxItemsPerBatch) throws IOException, InterruptedException {
+        List<List<String>> batches = CodexBatchRequest.pack(items, maxTokensPerBatch, maxItemsPerBatch);
+        listener.getLogger().println("Analyzing " + items.size() + " items with Codex in " + batches.size()
+            + (batches.size() == 1 ? " request" : " requests"));
+
+        List<CompletableFuture<CodexAnalysisResult>> futures = new ArrayList<>();
+        try {
+            for (List<String> batch : batches) {
+                if (batch.size() == 1) {
+                    futures.add(startHedgedAnalysis(items.get(batch.get(0)), analysisType, customPrompt, additionalParams));
+                } else {
+                    futures.add(startHedgedAnalysis(CodexBatchRequest.renderContent(batch, items), analysisType,
+                        CodexBatchRequest.renderPrompt(customPrompt, batch.size()), additionalParams));
+                }
+            }
+
+            Map<String, CodexAnalysisResult> results = new LinkedHashMap<>();
+            for (String id : items.keySet()) {
+                results.put(id, null);
+            }
+            for (int i = 0; i < batches.size(); i++) {
+                List<String> batch = batches.get(i);
+                CodexAnalysisResult batchResult = joinQuietly(futures.get(i));
+                if (batch.size() == 1 || !batchResult.isSuccess()) {
+                    for (String id : batch) {
+                        results.put(id, batchResult);
+                    }
+                    continue;
+                }
+                Map<String, String> sections = CodexBatchRequest.parseOutput(batchResult.getOutput(), batch);
+                for (String id : batch) {
+                    String section = sections.get(id);
+                    results.put(id, section != null
+                        ? new CodexAnalysisResult(section, batchResult.getError(), true)
+                        : new CodexAnalysisResult("", "The Codex answer contained no result for item '" + id + "'", false));
+                }
+            }
+            return results;
+        } finally {
+            // Interrupted or failed part way: do not leave the remaining batches running
+            for (CompletableFuture<CodexAnalysisResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Analyze content too large for one request by map-reduce: the content is split at line boundaries into
+     * chunks within the token budget, the chunks are analyzed in parallel with at most {@code maxParallelChunks}
+     * in flight, and a reduce analysis merges their findings. Content that fits one chunk is analyzed as usual.
+     *
+     * @param content read lazily, so only the chunks in flight are held in memory
+     * @param contextHeader build context prepended to every chunk, may be null
+     */
+    public CodexAnalysisResult executeChunkedAnalysis(Reader content, String contextHeader, String analysisType, String customPrompt,
+                                                      Map<String, String> additionalParams, int maxChunkTokens,
+                                                      int maxParallelChunks) throws IOException, InterruptedException {
+        int chunkChars = CodexMapReduce.chunkChars(maxChunkTokens, contextHeader);
+        int parallelism = maxParallelChunks > 0 ? maxParallelChunks : CodexMapReduce.DEFAULT_MAX_PARALLEL_CHUNKS;
+        CodexMapReduce.ChunkReader chunks = new CodexMapReduce.ChunkReader(content, chunkChars);
+
+        CodexMapReduce.Chunk chunk = chunks.next();
+        CodexMapReduce.Chunk nextChunk = chunk != null ? chunks.next() : null;
+        if (nextChunk == null) {
+            String text = chunk != null ? chunk.getText() : "";
+            String single = contextHeader != null ? contextHeader + "\n=== CONTENT TO ANALYZE ===\n" + text : text;
+            return executeAnalysis(single, analysisType, customPrompt, additionalParams);
+        }
+        listener.getLogger().println("Content is too large for one Codex analysis, analyzing it in parts of about "
+            + (chunkChars / 4) + " tokens, " + parallelism + " at a time");
+
+        // Map: analyze the chunks, keeping at most "parallelism" of them in flight and their findings in order
+        List<String> findings = new ArrayList<>();
+        ArrayDeque<Map.Entry<CodexMapReduce.Chunk, CompletableFuture<CodexAnalysisResult>>> inFlight = new ArrayDeque<>();
+        int parts = 0;
+        int failedParts = 0;
+        String lastError = null;
+        try {
+            while (chunk != null || !inFlight.isEmpty()) {
+                if (chunk != null && inFlight.size() < parallelism) {
+                    inFlight.add(new AbstractMap.SimpleEntry<>(chunk, startHedgedAnalysis(
+                        CodexMapReduce.renderChunk(contextHeader, chunk), analysisType,
+                        CodexMapReduce.mapPrompt(customPrompt, chunk), additionalParams)));
+                    parts++;
+                    chunk = nextChunk != null ? nextChunk : chunks.next();
+                    nextChunk = null;
+                    continue;
+                }
+                Map.Entry<CodexMapReduce.Chunk, CompletableFuture<CodexAnalysisResult>> oldest = inFlight.poll();
+                CodexAnalysisResult result = joinQuietly(oldest.getValue());
+                if (result.isSuccess()) {
+                    findings.add(CodexMapReduce.renderFindings(oldest.getKey().getLabel(), result.getOutput()));
+                } else {
+                    failedParts++;
+                    lastError = result.getError();
+                    listener.error("Codex analysis of part " + oldest.getKey().getIndex() + " failed: " + result.getError());
+                    findings.add(CodexMapReduce.renderFindings(oldest.getKey().getLabel(),
+                        "This part could not be analyzed: " + result.getError()));
+                }
+            }
+        } finally {
+            for (Map.Entry<CodexMapReduce.Chunk, CompletableFuture<CodexAnalysisResult>> pending : inFlight) {
+                pending.getValue().cancel(true);
+            }
+        }
+        if (failedParts == parts) {
+            return new CodexAnalysisResult("", "All " + parts + " parts of the content failed to analyze: " + lastError, false);
+        }
+        listener.getLogger().println("Analyzed " + parts + " parts" + (failedParts > 0 ? " (" + failedParts + " failed)" : "")
+            + ", merging their findings");
+
+        // Reduce: merge findings in groups until they fit one request
+        long reduceTokens = maxChunkTokens > 0 ? maxChunkTokens : CodexMapReduce.DEFAULT_MAX_CHUNK_TOKENS;
+        while (true) {
+            Map<String, String> level = new LinkedHashMap<>();
+            for (int i = 0; i < findings.size(); i++) {
+                level.put(String.valueOf(i), findings.get(i));
+            }
+            List<List<String>> groups = CodexBatchRequest.pack(level, reduceTokens, Integer.MAX_VALUE);
+            if (groups.size() == 1 || groups.size() == findings.size()) {
+                // Findings too large to merge in groups are cut rather than sent in one unbounded request
+                return executeAnalysis(fitFindingsForMerge(findings, reduceTokens), analysisType,
+                    CodexMapReduce.reducePrompt(customPrompt, findings.size(), true), additionalParams);
+            }
+
+            List<CompletableFuture<CodexAnalysisResult>> merges = new ArrayList<>();
+            try {
+                for (List<String> group : groups) {
+                    StringBuilder groupContent = new StringBuilder();
+                    for (String id : group) {
+                        groupContent.append(level.get(id));
+                    }
+                    merges.add(startHedgedAnalysis(groupContent.toString(), analysisType,
+                        CodexMapReduce.reducePrompt(customPrompt, group.size(), false), additionalParams));
+                }
+                List<String> merged = new ArrayList<>();
+                for (int i = 0; i < merges.size(); i++) {
+                    CodexAnalysisResult result = joinQuietly(merges.get(i));
+                    List<String> group = groups.get(i);
+                    if (result.isSuccess()) {
+                        merged.add(CodexMapReduce.renderFindings("GROUP " + (i + 1), result.getOutput()));
+                    } else {
+                        // Keep the unmerged findings rather than losing them
+                        for (String id : group) {
+                            merged.add(level.get(id));
+                        }
+                    }
+                }
+                if (merged.size() >= findings.size()) {
+                    return executeAnalysis(fitFindingsForMerge(merged, reduceTokens), analysisType,
+                        CodexMapReduce.reducePrompt(customPrompt, merged.size(), true), additionalParams);
+                }
+                findings = merged;
+            } finally {
+                for (CompletableFuture<CodexAnalysisResult> merge : merges) {
+                    merge.cancel(true);
+                }
+            }
+        }
+    }
+
+    private String fitFindingsForMerge(List<String> findings, long reduceTokens) {
+        String content = CodexMapReduce.fitFindings(findings, reduceTokens);
+        if (content.length() < findings.stream().mapToLong(String::length).sum()) {
+            listener.getLogger().println("Findings of " + findings.size() + " parts do not fit one merge of about "
+                + reduceTokens + " tokens, cutting them");
+        }
+        return content;
+    }
+
+    /**
+     * Wait for an analysis, turning a failure into a failed result
+     */
+    private static CodexAnalysisResult joinQuietly(CompletableFuture<CodexAnalysisResult> future) throws InterruptedException {
+        try {
+            return CodexInvocationScheduler.join(future);
+        } catch (IOException e) {
+            return new CodexAnalysisResult("", e.getMessage(), false);
+        }
+    }
+
+    /**
+     * Start an analysis and, if the job configures a fallback model, hedge it: once the analysis has taken longer
+     * than the configured latency percentile of its model, the same analysis is started with the fallback model
+     * and whichever succeeds first is used. The other one is cancelled.
+     */
+    private CompletableFuture<CodexAnalysisResult> startHedgedAnalysis(String content, String analysisType, String customPrompt,
+                                                                       Map<String, String> requestedParams) throws InterruptedException {
+        Map<String, String> additionalParams = routeModel(content, analysisType, requestedParams);
+        CompletableFuture<CodexAnalysisResult> primary = startAnalysis(content, analysisType, customPrompt, additionalParams);
+        String fallbackModel = jobConfig != null ? jobConfig.getEffectiveFallbackModel() : "";
+        if (primary.isDone() || StringUtils.isBlank(fallbackModel)) {
+            return primary;
+        }
+        String model = resolveModel(additionalParams != null ? additionalParams.get("model") : null,
+            jobConfig.getEffectiveCodexCliPath());
+        if (fallbackModel.equals(model)) {
+            return primary;
+        }
+        int percentile = jobConfig.getEffectiveHedgeLatencyPercentile();
+        long hedgeDelay = CodexLatencyTracker.get().getPercentile(model, percentile);
+        if (hedgeDelay <= 0) {
+            // Not enough completed analyses with this model yet to know what slow means
+            return primary;
+        }
+
+        Map<String, String> fallbackParams = additionalParams != null ? new HashMap<>(additionalParams) : new HashMap<>();
+        fallbackParams.put("model", fallbackModel);
+        return CodexHedgedRequest.start(primary, () -> {
+            listener.getLogger().println(String.format("Codex analysis with model '%s' is slower than its p%d latency (%.1fs), "
+                + "starting a hedged analysis with fallback model '%s'", model, percentile, hedgeDelay / 1000.0, fallbackModel));
+            try {
+                return startAnalysis(content, analysisType, customPrompt, fallbackParams);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }, hedgeDelay, result -> result.isSuccess() && !result.isTimedOut(), Timer.get());
+    }
+
+    /**
+     * Let {@link CodexModelRouter} pick the model of an analysis that does not ask for a specific one
+     *
+     * @return the parameters with the routed model, or the given ones if no rule applies
+     */
+    private Map<String, String> routeModel(String content, String analysisType, Map<String, String> additionalParams) {
+        if (hasExplicitModel(additionalParams, jobConfig)) {
+            return additionalParams;
+        }
+        long tokens = CodexRateLimiter.estimateTokens(content != null ? content.length() : 0);
+        CodexModelRouter.Decision decision = CodexModelRouter.get().route(analysisType, tokens, getJobName(), getNodeName());
+        if (decision == null) {
+            return additionalParams;
+        }
+        listener.getLogger().println("Routing Codex analysis of about " + tokens + " tokens to model '" + decision.getModel()
+            + "' (rule: " + decision.getRule() + ")");
+        Map<String, String> routed = additionalParams != null ? new HashMap<>(additionalParams) : new HashMap<>();
+        routed.put("model", decision.getModel());
+        return routed;
+    }
+
+    /**
+     * Whether the step or the job chose the model, in which case routing rules do not apply
+     */
+    static boolean hasExplicitModel(Map<String, String> additionalParams, CodexAnalysisJobProperty jobConfig) {
+        if (additionalParams != null && StringUtils.isNotBlank(additionalParams.get("model"))) {
+            return true;
+        }
+        return jobConfig != null && StringUtils.isNotBlank(jobConfig.getEffectiveDefaultModel());
+    }
+
+    private CompletableFuture<CodexAnalysisResult> startAnalysis(String content, String analysisType, String customPrompt,
+                                                                 Map<String, String> additionalParams) throws InterruptedException {
+        String requestKey = getRequestKey(content, analysisType, customPrompt, additionalParams);
+        String cacheKey = isResultCacheEnabled(additionalParams) ? requestKey : null;
+        if (cacheKey != null) {
+            CodexAnalysisResult cached = CodexResultCache.get().get(cacheKey);
+            if (cached != null) {
+                listener.getLogger().println("Using cached Codex analysis result (identical request already analyzed)");
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        CodexInvocationScheduler scheduler = CodexInvocationScheduler.get();
+        CodexSingleFlight.Call<CodexAnalysisResult> call = CodexSingleFlight.get().join(requestKey, () -> {
+            // Only the CLI attempts take a slot, see runAnalysis
+            return scheduler.submitUnscheduled(() -> {
+                CodexAnalysisResult result = runAnalysis(content, analysisType, customPrompt, additionalParams);
+                // Cache before completing, so no later caller can miss both the cache and the flight
+                if (cacheKey != null) {
+                    CodexResultCache.get().put(cacheKey, result);
+                }
+                return result;
+            });
+        });
+        if (call.isShared()) {
+            listener.getLogger().println("An identical Codex analysis is already running, waiting for its result");
+        } else {
+            // End-to-end latency, including queueing and retries, is what hedging has to beat;
+            // latencies and failures also steer the model router
+            CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+            String cliPath = jobConfig != null ? jobConfig.getEffectiveCodexCliPath()
+                : (globalConfig != null ? globalConfig.getCodexCliPath() : null);
+            String model = resolveModel(additionalParams != null ? additionalParams.get("model") : null, cliPath);
+            CodexLatencyTracker.get().track(model, call.getFuture(),
+                result -> result.isSuccess() && !result.isTimedOut());
+        }
+        return call.getFuture();
+    }
+
+    private static boolean isResultCacheEnabled(Map<String, String> additionalParams) {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        if (globalConfig == null || !globalConfig.isEnableResultCache()) {
+            return false;
+        }
+        return additionalParams == null || !"false".equalsIgnoreCase(additionalParams.get("cache"));
+    }
+
+    /**
+     * Hash identifying an analysis request, shared by {@link CodexResultCache} and {@link CodexSingleFlight}
+     */
+    private String getRequestKey(String content, String analysisType, String customPrompt,
+                                 Map<String, String> additionalParams) throws InterruptedException {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        String cliPath = jobConfig != null ? jobConfig.getEffectiveCodexCliPath()
+            : (globalConfig != null ? globalConfig.getCodexCliPath() : null);
+        String model = resolveModel(additionalParams != null ? additionalParams.get("model") : null, cliPath);
+
+        String mcpConfig = "";
+        if (jobConfig != null && jobConfig.getEffectiveEnableMcpServers()) {
+            mcpConfig = jobConfig.getEffectiveConfigPath() + "|" + jobConfig.getEffectiveMcpServers();
+        }
+        return requestKey(content, analysisType, customPrompt, model, mcpConfig, additionalParams);
+    }
+
+    /**
+     * Hash of the inputs of an analysis: the content without the build-specific parts of its context,
+     * analysis type, prompt, model, MCP configuration and CLI options
+     */
+    static String requestKey(String content, String analysisType, String customPrompt, String model,
+                             String mcpConfig, Map<String, String> additionalParams) {
+        // Other parameters forwarded to the CLI may change the answer as well
+        StringBuilder cliOptions = new StringBuilder();
+        if (additionalParams != null) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(additionalParams).entrySet()) {
+                String key = entry.getKey();
+                if (!key.equals("model") && !key.equals("timeout") && !EXECUTOR_PARAMS.contains(key)) {
+                    cliOptions.append(key).append('=').append(entry.getValue()).append('\n');
+                }
+            }
+        }
+        String identity = AnalysisContext.requestIdentity(content);
+        return CodexResultCache.key(identity != null ? identity : "", analysisType, customPrompt, model, mcpConfig,
+            cliOptions.toString());
+    }
+
+    private CodexAnalysisResult runAnalysis(String content, String analysisType, String customPrompt,
+                                            Map<String, String> additionalParams) throws IOException, InterruptedException {
         CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
         if (globalConfig == null) {
             throw new IOException("Codex Analysis Plugin configuration not found");
@@ -53,8 +475,18 @@ public class CodexCliExecutor {
         args.add(cliPath);
         args.add("analyze");
 
-        // Add content
-        args.add("--content", content);
+        // Pass content through a file on the agent (or stdin without a workspace) instead of argv,
+        // so large contexts do not hit ARG_MAX and do not show up in the process table
+        String contentText = content != null ? content : "";
+        FilePath contentFile = null;
+        byte[] contentStdin = null;
+        if (workspace != null) {
+            contentFile = writeContentFile(contentText);
+            args.add("--content-file", contentFile.getRemote());
+        } else {
+            contentStdin = contentText.getBytes(StandardCharsets.UTF_8);
+            args.add("--content-file", "-");
+        }
 
         // Add analysis type
         if (StringUtils.isNotBlank(analysisType)) {
@@ -66,22 +498,8 @@ public class CodexCliExecutor {
             args.add("--prompt", customPrompt);
         }
 
-        // Add model - use additional params first, then job config, then global
-        String model = additionalParams != null ? additionalParams.get("model") : null;
-        if (StringUtils.isBlank(model)) {
-            model = jobConfig != null ? jobConfig.getEffectiveDefaultModel() : "";
-        }
-        // If still blank, we need to fetch from CLI or use first available model
-        if (StringUtils.isBlank(model)) {
-            // Try to get first available model from CLI
-            String[] availableModels = jobConfig != null ?
-                ((CodexAnalysisJobProperty.DescriptorImpl) jobConfig.getDescriptor()).getAvailableModels() : new String[0];
-            if (availableModels.length > 0) {
-                model = availableModels[0];
-            } else {
-                throw new RuntimeException("No model specified and no models available from Codex CLI. Please configure a default model or ensure Codex CLI is properly installed.");
-            }
-        }
+        // Add model - use additional params first, then job config, then the first model offered by the CLI
+        String model = resolveModel(additionalParams != null ? additionalParams.get("model") : null, cliPath);
         args.add("--model", model);
 
         // Add timeout - use additional params first, then job config, then global
@@ -101,40 +519,90 @@ public class CodexCliExecutor {
         // Add additional parameters
         if (additionalParams != null) {
             for (Map.Entry<String, String> entry : additionalParams.entrySet()) {
-                args.add("--" + entry.getKey(), entry.getValue());
+                if (!EXECUTOR_PARAMS.contains(entry.getKey())) {
+                    args.add("--" + entry.getKey(), entry.getValue());
+                }
             }
         }
+        long hardTimeout = getHardTimeoutSeconds(timeout, additionalParams);
+        long inputChars = contentText.length() + (customPrompt != null ? customPrompt.length() : 0);
 
-        // Execute command
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
-        PrintStream printStream = new PrintStream(outputStream);
-        PrintStream errorPrintStream = new PrintStream(errorStream);
-
+        // Transient failures are retried with backoff; open circuits fail fast without launching the CLI.
+        // Rate limits and backoff are waited out before taking a slot, so one throttled model cannot hold
+        // every slot of the node while others could run.
+        String nodeName = getNodeName();
+        CodexInvocationScheduler scheduler = CodexInvocationScheduler.get();
+        CodexCircuitBreaker circuitBreaker = CodexCircuitBreaker.get();
+        int maxRetries = CodexRetryPolicy.getMaxRetries();
         try {
-            Launcher.ProcStarter procStarter = launcher.launch()
-                    .cmds(args)
-                    .envs(environment)
-                    .stdout(printStream)
-                    .stderr(errorPrintStream)
-                    .pwd(workspace);
-
-            int exitCode = procStarter.start().join();
+            for (int attempt = 0; ; attempt++) {
+                circuitBreaker.checkAllowed(model, nodeName);
+                boolean outcomeRecorded = false;
+                long retryDelay;
 
-            String output = outputStream.toString();
-            String error = errorStream.toString();
+                // Execute command, capturing a bounded amount of output and streaming CLI progress (stderr) to the build log
+                int spillId = SPILL_COUNTER.incrementAndGet();
+                BoundedOutputCapture outputCapture = new BoundedOutputCapture(getMaxCapturedBytes(),
+                    getSpillFile(spillId, "stdout"), null, null);
+                BoundedOutputCapture errorCapture = new BoundedOutputCapture(getMaxCapturedBytes(),
+                    getSpillFile(spillId, "stderr"), listener.getLogger(), "[codex] ");
+                try {
+                    acquireRateLimit(model, inputChars);
+                    int exitCode;
+                    try {
+                        InputStream stdin = contentStdin != null ? new ByteArrayInputStream(contentStdin) : null;
+                        exitCode = scheduler.await(nodeName,
+                            () -> runCli(cliPath, args, stdin, outputCapture, errorCapture, hardTimeout), listener);
+                    } catch (CodexTimeoutException e) {
+                        circuitBreaker.recordFailure(model, nodeName);
+                        outcomeRecorded = true;
+                        listener.error(e.getMessage());
+                        outputCapture.close();
+                        return CodexAnalysisResult.timedOut(outputCapture.getText(), e.getMessage());
+                    }
+                    outputCapture.close();
+                    errorCapture.close();
 
-            if (exitCode != 0) {
-                listener.error("Codex CLI execution failed with exit code " + exitCode);
-                listener.error("Error output: " + error);
-                throw new IOException("Codex CLI execution failed: " + error);
-            }
+                    String output = outputCapture.getText();
+                    String error = errorCapture.getText();
+                    if (outputCapture.isTruncated()) {
+                        listener.getLogger().println("Codex output exceeded " + outputCapture.getCapturedBytes()
+                            + " bytes; " + outputCapture.getOverflowBytes() + " bytes were not kept in memory");
+                    }
 
-            return new CodexAnalysisResult(output, error, exitCode == 0);
+                    if (exitCode == 0) {
+                        circuitBreaker.recordSuccess(model, nodeName);
+                        outcomeRecorded = true;
+                        return new CodexAnalysisResult(output, error, true);
+                    }
 
+                    // The captured text may end in an overflow note, the last line is what the CLI failed with
+                    boolean retryable = CodexRetryPolicy.isTransient(exitCode, errorCapture.getLastLine());
+                    if (retryable) {
+                        circuitBreaker.recordFailure(model, nodeName);
+                    } else {
+                        circuitBreaker.recordSuccess(model, nodeName);
+                    }
+                    outcomeRecorded = true;
+                    if (!retryable || attempt >= maxRetries) {
+                        listener.error("Codex CLI execution failed with exit code " + exitCode);
+                        listener.error("Error output: " + error);
+                        throw new IOException("Codex CLI execution failed: " + error);
+                    }
+                    retryDelay = CodexRetryPolicy.backoffMillis(attempt, CodexRetryPolicy.getBaseDelayMillis());
+                    listener.getLogger().println(String.format("Codex CLI failed with a transient error (exit code %d), "
+                        + "retrying in %.1fs (retry %d of %d)", exitCode, retryDelay / 1000.0, attempt + 1, maxRetries));
+                } finally {
+                    outputCapture.close();
+                    errorCapture.close();
+                    if (!outcomeRecorded) {
+                        circuitBreaker.recordAbandoned(model, nodeName);
+                    }
+                }
+                Thread.sleep(retryDelay);
+            }
         } finally {
-            printStream.close();
-            errorPrintStream.close();
+            deleteContentFile(contentFile);
         }
     }
 
@@ -142,6 +610,10 @@ public class CodexCliExecutor {
      * Execute a simple Codex query
      */
     public String executeQuery(String query, String context) throws IOException, InterruptedException {
+        return runQuery(query, context);
+    }
+
+    private String runQuery(String query, String context) throws IOException, InterruptedException {
         CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
         if (globalConfig == null) {
             throw new IOException("Codex Analysis Plugin configuration not found");
@@ -160,33 +632,21 @@ public class CodexCliExecutor {
         }
 
         // Use job-level model and timeout if available, otherwise use first available model
-        String model = jobConfig != null ? jobConfig.getEffectiveDefaultModel() : "";
-        if (StringUtils.isBlank(model)) {
-            // Try to get first available model from CLI
-            String[] availableModels = jobConfig != null ?
-                ((CodexAnalysisJobProperty.DescriptorImpl) jobConfig.getDescriptor()).getAvailableModels() : new String[0];
-            if (availableModels.length > 0) {
-                model = availableModels[0];
-            } else {
-                throw new RuntimeException("No model specified and no models available from Codex CLI. Please configure a default model or ensure Codex CLI is properly installed.");
-            }
-        }
+        String model = resolveModel(null, cliPath);
         int timeout = jobConfig != null ? jobConfig.getEffectiveTimeoutSeconds() : globalConfig.getTimeoutSeconds();
         args.add("--model", model);
         args.add("--timeout", String.valueOf(timeout));
+        acquireRateLimit(model, (query != null ? query.length() : 0) + (context != null ? context.length() : 0));
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        PrintStream printStream = new PrintStream(outputStream);
+        BoundedOutputCapture outputCapture = new BoundedOutputCapture(getMaxCapturedBytes(),
+            getSpillFile(SPILL_COUNTER.incrementAndGet(), "query"), null, null);
 
         try {
-            Launcher.ProcStarter procStarter = launcher.launch()
-                    .cmds(args)
-                    .envs(environment)
-                    .stdout(printStream)
-                    .pwd(workspace);
-
-            int exitCode = procStarter.start().join();
-            String output = outputStream.toString();
+            long hardTimeout = getHardTimeoutSeconds(String.valueOf(timeout), null);
+            int exitCode = CodexInvocationScheduler.get().await(getNodeName(),
+                () -> runCli(cliPath, args, null, outputCapture, null, hardTimeout), listener);
+            outputCapture.close();
+            String output = outputCapture.getText();
 
             if (exitCode != 0) {
                 throw new IOException("Codex query failed with exit code " + exitCode);
@@ -195,7 +655,7 @@ public class CodexCliExecutor {
             return output;
 
         } finally {
-            printStream.close();
+            outputCapture.close();
         }
     }
 
@@ -204,6 +664,10 @@ public class CodexCliExecutor {
      * Streams the chat conversation to the console log in real-time
      */
     public void executeInteractiveChat(String initialMessage, String context, Map<String, String> additionalParams) throws IOException, InterruptedException {
+        runInteractiveChat(initialMessage, context, additionalParams);
+    }
+
+    private void runInteractiveChat(String initialMessage, String context, Map<String, String> additionalParams) throws IOException, InterruptedException {
         CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
         if (globalConfig == null) {
             throw new IOException("Codex Analysis Plugin configuration not found");
@@ -226,22 +690,8 @@ public class CodexCliExecutor {
             args.add("--context", context);
         }
 
-        // Add model - use additional params first, then job config, then global
-        String model = additionalParams != null ? additionalParams.get("model") : null;
-        if (StringUtils.isBlank(model)) {
-            model = jobConfig != null ? jobConfig.getEffectiveDefaultModel() : "";
-        }
-        // If still blank, we need to fetch from CLI or use first available model
-        if (StringUtils.isBlank(model)) {
-            // Try to get first available model from CLI
-            String[] availableModels = jobConfig != null ?
-                ((CodexAnalysisJobProperty.DescriptorImpl) jobConfig.getDescriptor()).getAvailableModels() : new String[0];
-            if (availableModels.length > 0) {
-                model = availableModels[0];
-            } else {
-                throw new RuntimeException("No model specified and no models available from Codex CLI. Please configure a default model or ensure Codex CLI is properly installed.");
-            }
-        }
+        // Add model - use additional params first, then job config, then the first model offered by the CLI
+        String model = resolveModel(additionalParams != null ? additionalParams.get("model") : null, cliPath);
         args.add("--model", model);
 
         // Add timeout - use additional params first, then job config, then global
@@ -263,12 +713,14 @@ public class CodexCliExecutor {
             for (Map.Entry<String, String> entry : additionalParams.entrySet()) {
                 String key = entry.getKey();
                 // Skip model and timeout as they're already handled
-                if (!key.equals("model") && !key.equals("timeout")) {
+                if (!key.equals("model") && !key.equals("timeout") && !EXECUTOR_PARAMS.contains(key)) {
                     args.add("--" + key, entry.getValue());
                 }
             }
         }
 
+        acquireRateLimit(model, (initialMessage != null ? initialMessage.length() : 0) + (context != null ? context.length() : 0));
+
         // Execute command with real-time output streaming
         listener.getLogger().println("=== STARTING CODEX INTERACTIVE CHAT ===");
         listener.getLogger().println("Model: " + model);
@@ -287,7 +739,9 @@ public class CodexCliExecutor {
                     .stderr(listener.getLogger())
                     .pwd(workspace);
 
-            int exitCode = procStarter.start().join();
+            long hardTimeout = getHardTimeoutSeconds(timeout, additionalParams);
+            int exitCode = CodexInvocationScheduler.get().await(getNodeName(),
+                () -> joinWithTimeout(procStarter.start(), hardTimeout), listener);
 
             listener.getLogger().println("");
             listener.getLogger().println("---");
@@ -297,6 +751,9 @@ public class CodexCliExecutor {
                 listener.getLogger().println("=== CODEX CHAT SESSION COMPLETED ===");
             }
 
+        } catch (CodexTimeoutException e) {
+            listener.error("Codex chat session " + e.getMessage());
+            throw e;
         } catch (Exception e) {
             listener.error("Error during Codex chat session: " + e.getMessage());
             throw new IOException("Codex chat session failed: " + e.getMessage(), e);
@@ -304,12 +761,26 @@ public class CodexCliExecutor {
     }
 
     /**
-     * Check if Codex CLI is available and properly configured
+     * Check if Codex CLI is available and properly configured.
+     * Probe results are cached per node and CLI path, see {@link CodexCliProbeCache}.
      */
     public boolean isCodexAvailable() throws IOException, InterruptedException {
+        CodexCliProbeCache.Probe probe = probeCodex();
+        return probe != null && probe.isAvailable();
+    }
+
+    /**
+     * Get the Codex CLI version reported by "--version", or null if the CLI is not available
+     */
+    public String getCodexVersion() throws IOException, InterruptedException {
+        CodexCliProbeCache.Probe probe = probeCodex();
+        return probe != null && probe.isAvailable() ? probe.getVersion() : null;
+    }
+
+    private CodexCliProbeCache.Probe probeCodex() throws IOException, InterruptedException {
         CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
         if (globalConfig == null) {
-            return false;
+            return null;
         }
 
         ArgumentListBuilder args = new ArgumentListBuilder();
@@ -319,6 +790,13 @@ public class CodexCliExecutor {
         args.add(cliPath);
         args.add("--version");
 
+        String nodeName = getNodeName();
+        CodexCliProbeCache cache = CodexCliProbeCache.get();
+        CodexCliProbeCache.Probe cached = cache.getIfFresh(nodeName, cliPath);
+        if (cached != null) {
+            return cached;
+        }
+
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         PrintStream printStream = new PrintStream(outputStream);
 
@@ -329,17 +807,195 @@ public class CodexCliExecutor {
                     .stdout(printStream)
                     .pwd(workspace);
 
-            int exitCode = procStarter.start().join();
-            return exitCode == 0;
+            int exitCode = joinWithTimeout(procStarter.start(), PROBE_TIMEOUT_SECONDS);
+            printStream.flush();
+            return cache.put(nodeName, cliPath, exitCode == 0, outputStream.toString(StandardCharsets.UTF_8).trim());
 
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
             listener.getLogger().println("Codex CLI not available: " + e.getMessage());
-            return false;
+            return cache.put(nodeName, cliPath, false, null);
         } finally {
             printStream.close();
         }
     }
 
+    /**
+     * Run the CLI once, through a pooled worker when one is available, otherwise by launching a new process.
+     * A null stderr stream merges error output into stdout. Invocations fed through stdin always launch a process.
+     * The process (or worker) is killed and a {@link CodexTimeoutException} thrown once the hard timeout expires.
+     */
+    private int runCli(String cliPath, ArgumentListBuilder args, InputStream stdin, OutputStream stdout, OutputStream stderr,
+                       long hardTimeoutSeconds) throws IOException, InterruptedException {
+        CodexWorkerPool pool = CodexWorkerPool.get();
+        CodexWorkerPool.Worker worker = stdin == null ? pool.lease(getNodeName(), cliPath, workspace) : null;
+        if (worker != null) {
+            boolean reusable = false;
+            AtomicBoolean timedOut = new AtomicBoolean();
+            ScheduledFuture<?> watchdog = Timer.get().schedule(() -> {
+                timedOut.set(true);
+                worker.kill();
+            }, hardTimeoutSeconds, TimeUnit.SECONDS);
+            try {
+                List<String> argv = args.toList();
+                CodexWorkerPool.WorkerResponse response = worker.execute(
+                    argv.subList(1, argv.size()), workspace != null ? workspace.getRemote() : null, environment);
+                stdout.write(response.getStdout().getBytes(StandardCharsets.UTF_8));
+                OutputStream errorTarget = stderr != null ? stderr : stdout;
+                errorTarget.write(response.getStderr().getBytes(StandardCharsets.UTF_8));
+                reusable = true;
+                return response.getExitCode();
+            } catch (IOException e) {
+                if (timedOut.get()) {
+                    throw new CodexTimeoutException(hardTimeoutSeconds);
+                }
+                listener.getLogger().println("Codex worker failed, launching CLI directly: " + e.getMessage());
+            } finally {
+                watchdog.cancel(false);
+                pool.release(worker, reusable && !timedOut.get());
+            }
+        }
+
+        Launcher.ProcStarter procStarter = launcher.launch()
+                .cmds(args)
+                .envs(environment)
+                .stdout(stdout)
+                .pwd(workspace);
+        if (stderr != null) {
+            procStarter.stderr(stderr);
+        }
+        if (stdin != null) {
+            procStarter.stdin(stdin);
+        }
+        return joinWithTimeout(procStarter.start(), hardTimeoutSeconds);
+    }
+
+    /**
+     * Wait for a launched process, killing its whole process tree once the hard timeout expires
+     */
+    private int joinWithTimeout(Proc proc, long hardTimeoutSeconds) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        int exitCode = proc.joinWithTimeout(hardTimeoutSeconds, TimeUnit.SECONDS, listener);
+        if (System.nanoTime() - started >= TimeUnit.SECONDS.toNanos(hardTimeoutSeconds)) {
+            throw new CodexTimeoutException(hardTimeoutSeconds);
+        }
+        return exitCode;
+    }
+
+    /**
+     * Hard process timeout: the timeout forwarded to the CLI plus a grace period for it to shut down by itself.
+     * The grace period comes from the "timeoutGraceSeconds" additional parameter or the global configuration.
+     */
+    private long getHardTimeoutSeconds(String cliTimeout, Map<String, String> additionalParams) {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        long timeoutSeconds = parseSeconds(cliTimeout, globalConfig != null ? globalConfig.getTimeoutSeconds() : 120);
+        long graceSeconds = parseSeconds(additionalParams != null ? additionalParams.get("timeoutGraceSeconds") : null,
+            globalConfig != null ? globalConfig.getTimeoutGraceSeconds() : 30);
+        return Math.max(1, timeoutSeconds) + Math.max(0, graceSeconds);
+    }
+
+    private static long parseSeconds(String value, long defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Resolve the model to use: the requested one, else the job default, else the first model the CLI offers,
+     * or {@link CodexModelRegistry#FALLBACK_MODEL} while it offers none.
+     * The CLI's model list comes from {@link CodexModelRegistry}, so this does not spawn a process per call.
+     */
+    private String resolveModel(String requestedModel, String cliPath) throws InterruptedException {
+        String model = requestedModel;
+        if (StringUtils.isBlank(model)) {
+            model = jobConfig != null ? jobConfig.getEffectiveDefaultModel() : "";
+        }
+        if (StringUtils.isBlank(model)) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            FilePath root = workspace != null ? workspace : (jenkins != null ? jenkins.getRootPath() : null);
+            model = CodexModelRegistry.get().getDefaultModel(getNodeName(), root, cliPath);
+        }
+        return model;
+    }
+
+    /**
+     * Wait for the model's rate limit, see {@link CodexRateLimiter}. Jobs take turns when several are waiting.
+     */
+    private void acquireRateLimit(String model, long inputChars) throws InterruptedException {
+        CodexRateLimiter.get().acquire(model, getJobName(), CodexRateLimiter.estimateTokens(inputChars), listener);
+    }
+
+    private String getJobName() {
+        return run != null ? run.getParent().getFullName() : (environment != null ? environment.get("JOB_NAME") : null);
+    }
+
+    private static long getMaxCapturedBytes() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        int kilobytes = globalConfig != null ? globalConfig.getMaxCapturedOutputKb() : 1024;
+        return Math.max(1, kilobytes) * 1024L;
+    }
+
+    /**
+     * File in the build directory receiving output beyond the capture limit, or null without a build
+     */
+    private File getSpillFile(int spillId, String streamName) {
+        if (run == null) {
+            return null;
+        }
+        return new File(new File(run.getRootDir(), "codex"), "output-" + spillId + "." + streamName + ".log");
+    }
+
+    /**
+     * Write analysis content to a private temp file next to the workspace on the agent
+     */
+    private FilePath writeContentFile(String content) throws IOException, InterruptedException {
+        FilePath tempDir = WorkspaceList.tempDir(workspace);
+        if (tempDir == null) {
+            tempDir = workspace;
+        }
+        tempDir.mkdirs();
+        FilePath file = tempDir.createTempFile("codex-content", ".txt");
+        // Encode while streaming, FilePath.write(String, String) would first copy the whole content into a byte array
+        try (Writer writer = new OutputStreamWriter(file.write(), StandardCharsets.UTF_8)) {
+            new StringReader(content).transferTo(writer);
+        }
+        return file;
+    }
+
+    private void deleteContentFile(FilePath contentFile) {
+        if (contentFile == null) {
+            return;
+        }
+        try {
+            contentFile.delete();
+        } catch (Exception e) {
+            listener.getLogger().println("Warning: Could not delete Codex content file " + contentFile.getRemote() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Name of the node the workspace lives on, empty for the controller
+     */
+    private String getNodeName() {
+        Computer computer = workspace != null ? workspace.toComputer() : null;
+        return computer != null ? computer.getName() : "";
+    }
+
+    /**
+     * Thrown when a CLI invocation exceeds its hard timeout and was killed
+     */
+    public static class CodexTimeoutException extends IOException {
+        public CodexTimeoutException(long timeoutSeconds) {
+            super("Codex CLI timed out after " + timeoutSeconds + " seconds and was killed");
+        }
+    }
+
     /**
      * Result of Codex analysis
      */
@@ -347,11 +1003,24 @@ public class CodexCliExecutor {
         private final String output;
         private final String error;
         private final boolean success;
+        private final boolean timedOut;
 
         public CodexAnalysisResult(String output, String error, boolean success) {
+            this(output, error, success, false);
+        }
+
+        public CodexAnalysisResult(String output, String error, boolean success, boolean timedOut) {
             this.output = output;
             this.error = error;
             this.success = success;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * Result of an invocation that was killed after exceeding its hard timeout
+         */
+        public static CodexAnalysisResult timedOut(String partialOutput, String error) {
+            return new CodexAnalysisResult(partialOutput, error, false, true);
         }
 
         public String getOutput() {
@@ -365,5 +1034,9 @@ public class CodexCliExecutor {
         public boolean isSuccess() {
             return success;
         }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
     }
 }
@@ -0,0 +1,127 @@
+package io.jenkins.plugins.codex;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-side cache of Codex CLI availability and version probes, keyed by node name and CLI path.
+ * Avoids spawning "codex --version" before every analysis. Entries expire after a TTL and are
+ * dropped when the CLI is updated on a node or the node reconnects.
+ */
+public class CodexCliProbeCache {
+
+    private static final long AVAILABLE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Failed probes are kept briefly so a freshly installed CLI is picked up quickly
+    private static final long UNAVAILABLE_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final CodexCliProbeCache INSTANCE = new CodexCliProbeCache(AVAILABLE_TTL_MILLIS, UNAVAILABLE_TTL_MILLIS);
+
+    private final long availableTtlMillis;
+    private final long unavailableTtlMillis;
+    private final Map<String, Probe> probes = new ConcurrentHashMap<>();
+
+    CodexCliProbeCache(long availableTtlMillis, long unavailableTtlMillis) {
+        this.availableTtlMillis = availableTtlMillis;
+        this.unavailableTtlMillis = unavailableTtlMillis;
+    }
+
+    public static CodexCliProbeCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a cached probe if it has not expired yet, otherwise null
+     */
+    public Probe getIfFresh(String nodeName, String cliPath) {
+        String key = key(nodeName, cliPath);
+        Probe probe = probes.get(key);
+        if (probe == null) {
+            return null;
+        }
+        long ttl = probe.isAvailable() ? availableTtlMillis : unavailableTtlMillis;
+        if (System.currentTimeMillis() - probe.getTimestamp() > ttl) {
+            probes.remove(key, probe);
+            return null;
+        }
+        return probe;
+    }
+
+    /**
+     * Record the outcome of a probe
+     */
+    public Probe put(String nodeName, String cliPath, boolean available, String version) {
+        Probe probe = new Probe(available, version, System.currentTimeMillis());
+        probes.put(key(nodeName, cliPath), probe);
+        return probe;
+    }
+
+    /**
+     * Drop every cached probe of a node, e.g. after the CLI was replaced or the node reconnected
+     */
+    public void invalidateNode(String nodeName) {
+        String prefix = (nodeName != null ? nodeName : "") + "|";
+        probes.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public void invalidateAll() {
+        probes.clear();
+    }
+
+    private static String key(String nodeName, String cliPath) {
+        return (nodeName != null ? nodeName : "") + "|" + cliPath;
+    }
+
+    /**
+     * Outcome of a single "codex --version" probe
+     */
+    public static class Probe {
+        private final boolean available;
+        private final String version;
+        private final long timestamp;
+
+        Probe(boolean available, String version, long timestamp) {
+            this.available = available;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Invalidates cached state of a node whenever it connects or disconnects
+     */
+    @Extension
+    public static class NodeListener extends ComputerListener {
+
+        @Override
+        public void onOnline(Computer c, TaskListener listener) {
+            CodexCliProbeCache.get().invalidateNode(c.getName());
+            CodexModelRegistry.get().invalidateNode(c.getName());
+        }
+
+        @Override
+        public void onOffline(Computer c, OfflineCause cause) {
+            CodexCliProbeCache.get().invalidateNode(c.getName());
+            CodexModelRegistry.get().invalidateNode(c.getName());
+            CodexWorkerPool.get().shutdownNode(c.getName());
+        }
+    }
+}
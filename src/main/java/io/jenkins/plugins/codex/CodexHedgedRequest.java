@@ -0,0 +1,146 @@
+package io.jenkins.plugins.codex;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Hedges a slow call with a second one: if the primary call has not finished after a delay, a fallback call
+ * is started and whichever produces a usable result first wins, the other one is cancelled.
+ * If neither produces a usable result, the outcome of the primary call is reported.
+ */
+final class CodexHedgedRequest<T> {
+
+    private final CompletableFuture<T> primary;
+    private final Predicate<T> usable;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    private CompletableFuture<T> fallback;
+    private ScheduledFuture<?> hedgeTimer;
+    private boolean decided;
+    private boolean primaryDone;
+    private boolean fallbackDone;
+    private T primaryValue;
+    private Throwable primaryError;
+
+    private CodexHedgedRequest(CompletableFuture<T> primary, Predicate<T> usable) {
+        this.primary = primary;
+        this.usable = usable;
+    }
+
+    /**
+     * @param primary the call already started
+     * @param fallbackStarter starts the fallback call, may return null to skip hedging after all
+     * @param delayMillis time to give the primary call before hedging; no hedging if not positive
+     * @param usable whether a completed result is good enough to win, e.g. not timed out
+     * @param scheduler runs the hedge timer
+     * @return a future completing with the winning result; cancelling it cancels both calls
+     */
+    static <T> CompletableFuture<T> start(CompletableFuture<T> primary, Supplier<CompletableFuture<T>> fallbackStarter,
+                                          long delayMillis, Predicate<T> usable, ScheduledExecutorService scheduler) {
+        if (delayMillis <= 0 || primary.isDone()) {
+            return primary;
+        }
+        CodexHedgedRequest<T> hedged = new CodexHedgedRequest<>(primary, usable);
+        synchronized (hedged) {
+            hedged.hedgeTimer = scheduler.schedule(() -> hedged.startFallback(fallbackStarter), delayMillis, TimeUnit.MILLISECONDS);
+        }
+        primary.whenComplete((value, error) -> hedged.onComplete(true, value, error));
+        hedged.result.whenComplete((value, error) -> {
+            if (hedged.result.isCancelled()) {
+                hedged.cancelAll();
+            }
+        });
+        return hedged.result;
+    }
+
+    private void startFallback(Supplier<CompletableFuture<T>> fallbackStarter) {
+        synchronized (this) {
+            if (decided || primaryDone) {
+                return;
+            }
+        }
+        CompletableFuture<T> started;
+        try {
+            started = fallbackStarter.get();
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (started == null) {
+            return;
+        }
+        synchronized (this) {
+            if (decided) {
+                started.cancel(true);
+                return;
+            }
+            fallback = started;
+        }
+        started.whenComplete((value, error) -> onComplete(false, value, error));
+    }
+
+    private void onComplete(boolean fromPrimary, T value, Throwable error) {
+        CompletableFuture<T> loser = null;
+        ScheduledFuture<?> timer;
+        T outcome;
+        Throwable outcomeError;
+        synchronized (this) {
+            if (decided) {
+                return;
+            }
+            if (error == null && usable.test(value)) {
+                loser = fromPrimary ? fallback : primary;
+                outcome = value;
+                outcomeError = null;
+            } else {
+                if (fromPrimary) {
+                    primaryDone = true;
+                    primaryValue = value;
+                    primaryError = error;
+                } else {
+                    fallbackDone = true;
+                }
+                // Report the primary outcome once nothing else can produce a usable result
+                if (!primaryDone || (fallback != null && !fallbackDone)) {
+                    return;
+                }
+                outcome = primaryValue;
+                outcomeError = primaryError;
+            }
+            decided = true;
+            timer = hedgeTimer;
+        }
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        // Cancel the loser before publishing the result, so callers never see it still running
+        if (loser != null) {
+            loser.cancel(true);
+        }
+        if (outcomeError != null) {
+            result.completeExceptionally(outcomeError);
+        } else {
+            result.complete(outcome);
+        }
+    }
+
+    private void cancelAll() {
+        CompletableFuture<T> started;
+        ScheduledFuture<?> timer;
+        synchronized (this) {
+            decided = true;
+            started = fallback;
+            timer = hedgeTimer;
+        }
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        primary.cancel(true);
+        if (started != null) {
+            started.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package io.jenkins.plugins.codex;
+
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+/**
+ * Schedules Codex CLI invocations with bounded concurrency per node and per controller.
+ * Invocations beyond the limits are queued in submission order and started as running ones finish,
+ * so large parallel pipelines do not launch an unbounded number of CLI processes on one agent.
+ */
+public class CodexInvocationScheduler {
+
+    private static final CodexInvocationScheduler INSTANCE = new CodexInvocationScheduler(
+        Executors.newCachedThreadPool(new NamingThreadFactory(new DaemonThreadFactory(), "CodexInvocationScheduler")),
+        CodexInvocationScheduler::getControllerLimit, CodexInvocationScheduler::getNodeLimit);
+
+    private final ExecutorService executorService;
+    private final IntSupplier controllerLimit;
+    private final IntSupplier nodeLimit;
+    private final Deque<Invocation<?>> queue = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerNode = new HashMap<>();
+    private int running;
+
+    CodexInvocationScheduler(ExecutorService executorService, IntSupplier controllerLimit, IntSupplier nodeLimit) {
+        this.executorService = executorService;
+        this.controllerLimit = controllerLimit;
+        this.nodeLimit = nodeLimit;
+    }
+
+    public static CodexInvocationScheduler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Submit a task for the given node. The returned future can be cancelled to dequeue the task
+     * or to interrupt it while it runs.
+     */
+    public <T> CompletableFuture<T> submit(String nodeName, Callable<T> task) {
+        Invocation<T> invocation = new Invocation<>(nodeName != null ? nodeName : "", task);
+        invocation.result.whenComplete((value, error) -> {
+            if (invocation.result.isCancelled()) {
+                cancel(invocation);
+            }
+        });
+        synchronized (this) {
+            queue.addLast(invocation);
+        }
+        dispatch();
+        return invocation.result;
+    }
+
+    /**
+     * Run a task on the scheduler threads without taking a slot, for work that waits between the invocations it
+     * schedules itself, such as rate limits and retry backoff, so the waiting does not keep other invocations
+     * from running. Cancelling the returned future interrupts the task.
+     */
+    public <T> CompletableFuture<T> submitUnscheduled(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> future = executorService.submit(() -> {
+            try {
+                if (!result.isDone()) {
+                    result.complete(task.call());
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run a task for the given node and wait for it, logging to the listener if it has to queue.
+     * Interrupting the calling thread cancels the task.
+     */
+    public <T> T await(String nodeName, Callable<T> task, TaskListener listener) throws IOException, InterruptedException {
+        CompletableFuture<T> future = submit(nodeName, task);
+        reportQueued(future, nodeName, listener);
+        return join(future);
+    }
+
+    /**
+     * Log to the listener if the submitted future still waits for a slot
+     */
+    public void reportQueued(CompletableFuture<?> future, String nodeName, TaskListener listener) {
+        if (isQueued(future)) {
+            listener.getLogger().println("Waiting for a free Codex slot on " + describe(nodeName)
+                + " (" + getQueueLength() + " queued, " + getRunningCount() + " running)");
+        }
+    }
+
+    /**
+     * Wait for a future, cancelling it if the calling thread is interrupted and unwrapping its failure
+     */
+    public static <T> T join(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    public synchronized int getQueueLength() {
+        return queue.size();
+    }
+
+    synchronized boolean isQueued(CompletableFuture<?> future) {
+        for (Invocation<?> invocation : queue) {
+            if (invocation.result == future) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Start queued invocations, oldest first, as long as their node and the controller have capacity
+     */
+    private void dispatch() {
+        synchronized (this) {
+            int maxRunning = controllerLimit.getAsInt();
+            int maxRunningPerNode = nodeLimit.getAsInt();
+            for (Iterator<Invocation<?>> it = queue.iterator(); it.hasNext(); ) {
+                if (maxRunning > 0 && running >= maxRunning) {
+                    break;
+                }
+                Invocation<?> invocation = it.next();
+                int nodeRunning = runningPerNode.getOrDefault(invocation.nodeName, 0);
+                if (maxRunningPerNode > 0 && nodeRunning >= maxRunningPerNode) {
+                    continue;
+                }
+                it.remove();
+                running++;
+                runningPerNode.put(invocation.nodeName, nodeRunning + 1);
+                invocation.started = true;
+                invocation.future = executorService.submit(() -> runInvocation(invocation));
+            }
+        }
+    }
+
+    private <T> void runInvocation(Invocation<T> invocation) {
+        T value = null;
+        Throwable failure = null;
+        try {
+            if (!invocation.result.isDone()) {
+                value = invocation.task.call();
+            }
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        // Free the slot before completing, so callers observing the result also observe the capacity
+        synchronized (this) {
+            running--;
+            int nodeRunning = runningPerNode.getOrDefault(invocation.nodeName, 1) - 1;
+            if (nodeRunning <= 0) {
+                runningPerNode.remove(invocation.nodeName);
+            } else {
+                runningPerNode.put(invocation.nodeName, nodeRunning);
+            }
+        }
+        dispatch();
+
+        if (failure != null) {
+            invocation.result.completeExceptionally(failure);
+        } else {
+            invocation.result.complete(value);
+        }
+    }
+
+    private void cancel(Invocation<?> invocation) {
+        Future<?> future;
+        synchronized (this) {
+            if (!invocation.started) {
+                queue.remove(invocation);
+                return;
+            }
+            future = invocation.future;
+        }
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    private static int getControllerLimit() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return globalConfig != null ? globalConfig.getMaxConcurrentInvocations() : 0;
+    }
+
+    private static int getNodeLimit() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return globalConfig != null ? globalConfig.getMaxConcurrentInvocationsPerNode() : 0;
+    }
+
+    private static String describe(String nodeName) {
+        return nodeName == null || nodeName.isEmpty() ? "controller" : "node '" + nodeName + "'";
+    }
+
+    /**
+     * A queued or running task
+     */
+    private static class Invocation<T> {
+        private final String nodeName;
+        private final Callable<T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private boolean started;
+        private Future<?> future;
+
+        Invocation(String nodeName, Callable<T> task) {
+            this.nodeName = nodeName;
+            this.task = task;
+        }
+    }
+}
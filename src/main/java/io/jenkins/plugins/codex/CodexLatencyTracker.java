@@ -0,0 +1,145 @@
+package io.jenkins.plugins.codex;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Recent latencies of successful Codex CLI calls and recent error rates per model, used to decide when a call
+ * is slow enough to hedge and which model to route a call to.
+ * Only the last {@link #WINDOW_SIZE} samples of each model are kept, so the statistics follow provider changes.
+ */
+public class CodexLatencyTracker {
+
+    // Samples kept per model
+    static final int WINDOW_SIZE = 200;
+
+    // Percentiles are not reported before this many samples, a handful of calls says little about the tail
+    static final int MIN_SAMPLES = 20;
+
+    private static final CodexLatencyTracker INSTANCE = new CodexLatencyTracker();
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final Map<String, Window> outcomes = new ConcurrentHashMap<>();
+
+    public static CodexLatencyTracker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record a successful call
+     */
+    public void record(String model, long latencyMillis) {
+        if (model == null || latencyMillis < 0) {
+            return;
+        }
+        windows.computeIfAbsent(model, m -> new Window()).add(latencyMillis);
+        outcomes.computeIfAbsent(model, m -> new Window()).add(0);
+    }
+
+    /**
+     * Record a call cancelled after running for the given time, e.g. a primary call that lost to its hedge.
+     * Its latency was at least that long; leaving it out would drop exactly the slow calls and pull the
+     * percentiles down. It counts neither as a success nor as a failure.
+     */
+    public void recordCancelled(String model, long elapsedMillis) {
+        if (model == null || elapsedMillis < 0) {
+            return;
+        }
+        windows.computeIfAbsent(model, m -> new Window()).add(elapsedMillis);
+    }
+
+    /**
+     * Record the outcome of a call once it completes, succeeds, fails or is cancelled, timed from now
+     */
+    public <T> void track(String model, CompletableFuture<T> call, Predicate<T> succeeded) {
+        long started = System.currentTimeMillis();
+        call.whenComplete((result, error) -> {
+            long elapsed = System.currentTimeMillis() - started;
+            if (call.isCancelled()) {
+                recordCancelled(model, elapsed);
+            } else if (error == null && succeeded.test(result)) {
+                record(model, elapsed);
+            } else {
+                recordFailure(model);
+            }
+        });
+    }
+
+    /**
+     * Record a failed or timed out call
+     */
+    public void recordFailure(String model) {
+        if (model == null) {
+            return;
+        }
+        outcomes.computeIfAbsent(model, m -> new Window()).add(1);
+    }
+
+    /**
+     * @return the share of recent calls of the model that failed, between 0 and 1,
+     *         or -1 if there are not enough calls for the model yet
+     */
+    public double getErrorRate(String model) {
+        Window window = model != null ? outcomes.get(model) : null;
+        if (window == null) {
+            return -1;
+        }
+        long[] samples = window.snapshot();
+        if (samples.length < MIN_SAMPLES) {
+            return -1;
+        }
+        long failures = 0;
+        for (long sample : samples) {
+            failures += sample;
+        }
+        return (double) failures / samples.length;
+    }
+
+    /**
+     * @param percentile between 1 and 100
+     * @return the latency in milliseconds below which the given percentage of recent calls finished,
+     *         or -1 if there are not enough samples for the model yet
+     */
+    public long getPercentile(String model, int percentile) {
+        Window window = model != null ? windows.get(model) : null;
+        if (window == null) {
+            return -1;
+        }
+        long[] samples = window.snapshot();
+        if (samples.length < MIN_SAMPLES) {
+            return -1;
+        }
+        Arrays.sort(samples);
+        int p = Math.max(1, Math.min(100, percentile));
+        // Nearest-rank percentile
+        int rank = (int) Math.ceil(p / 100.0 * samples.length);
+        return samples[Math.max(0, rank - 1)];
+    }
+
+    public int getSampleCount(String model) {
+        Window window = model != null ? windows.get(model) : null;
+        return window != null ? window.snapshot().length : 0;
+    }
+
+    /**
+     * Ring buffer of the most recent samples
+     */
+    private static class Window {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int next;
+        private int size;
+
+        synchronized void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, size);
+        }
+    }
+}
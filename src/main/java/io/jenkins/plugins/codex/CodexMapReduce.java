@@ -0,0 +1,218 @@
+package io.jenkins.plugins.codex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Building blocks of the chunked (map-reduce) analysis of content too large for one request:
+ * the content is read lazily into chunks cut at line boundaries, every chunk is analyzed on its own,
+ * and the findings of all chunks are merged by a final reduce analysis.
+ */
+public final class CodexMapReduce {
+
+    // Default estimated token budget of one chunk, including the context header
+    public static final int DEFAULT_MAX_CHUNK_TOKENS = 24000;
+
+    // Default number of chunks analyzed at the same time
+    public static final int DEFAULT_MAX_PARALLEL_CHUNKS = 4;
+
+    // Chunks never get smaller than this, however large the header is
+    private static final int MIN_CHUNK_CHARS = 4000;
+
+    // Findings cut to fit a merge request keep at least this much each, further ones are left out
+    private static final int MIN_FINDING_CHARS = 1000;
+
+    private CodexMapReduce() {
+    }
+
+    /**
+     * Characters of content per chunk, so that chunk and header together stay within the token budget
+     */
+    public static int chunkChars(int maxChunkTokens, String header) {
+        long tokens = maxChunkTokens > 0 ? maxChunkTokens : DEFAULT_MAX_CHUNK_TOKENS;
+        long headerTokens = CodexRateLimiter.estimateTokens(header != null ? header.length() : 0);
+        return (int) Math.min(Integer.MAX_VALUE / 2, Math.max(MIN_CHUNK_CHARS, (tokens - headerTokens) * 4));
+    }
+
+    /**
+     * Content of a map analysis: the header followed by the chunk
+     */
+    public static String renderChunk(String header, Chunk chunk) {
+        StringBuilder content = new StringBuilder();
+        if (header != null && !header.isEmpty()) {
+            content.append(header);
+            if (!header.endsWith("\n")) {
+                content.append('\n');
+            }
+            content.append('\n');
+        }
+        content.append("=== CONTENT TO ANALYZE (PART ").append(chunk.getIndex())
+            .append(", LINES ").append(chunk.getFirstLine()).append('-').append(chunk.getLastLine()).append(") ===\n");
+        content.append(chunk.getText());
+        return content.toString();
+    }
+
+    public static String mapPrompt(String customPrompt, Chunk chunk) {
+        StringBuilder prompt = new StringBuilder();
+        if (customPrompt != null && !customPrompt.trim().isEmpty()) {
+            prompt.append(customPrompt.trim()).append("\n\n");
+        }
+        prompt.append("The content is part ").append(chunk.getIndex()).append(" (lines ").append(chunk.getFirstLine())
+            .append('-').append(chunk.getLastLine()).append(") of a larger log that is analyzed in parts. ")
+            .append("Report only the findings in this part: errors, warnings and their likely causes, with line numbers. ")
+            .append("Be concise. If this part contains nothing relevant, answer 'No findings'.");
+        return prompt.toString();
+    }
+
+    public static String reducePrompt(String customPrompt, int parts, boolean finalPass) {
+        StringBuilder prompt = new StringBuilder();
+        if (customPrompt != null && !customPrompt.trim().isEmpty()) {
+            prompt.append(customPrompt.trim()).append("\n\n");
+        }
+        prompt.append("The content contains the findings of ").append(parts)
+            .append(" separate analyses of consecutive parts of one log. ");
+        if (finalPass) {
+            prompt.append("Merge them into a single analysis of the whole log: remove duplicates, ")
+                .append("relate follow-up errors to their root cause, and order the findings by importance.");
+        } else {
+            prompt.append("Merge them into one concise list of findings, removing duplicates and keeping line numbers.");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Findings of one map or intermediate reduce analysis, as input of the next reduce analysis
+     */
+    public static String renderFindings(String label, String findings) {
+        return "=== FINDINGS FROM " + label + " ===\n" + (findings != null ? findings.trim() : "") + "\n\n";
+    }
+
+    /**
+     * Findings joined into the content of one merge request of at most maxTokens estimated tokens.
+     * When they do not fit, each finding is cut to an equal share of the budget, keeping its beginning, and
+     * findings beyond what fits at {@link #MIN_FINDING_CHARS} each are left out.
+     */
+    public static String fitFindings(List<String> findings, long maxTokens) {
+        long maxChars = Math.max(1, maxTokens) * 4;
+        long totalChars = 0;
+        for (String finding : findings) {
+            totalChars += finding.length();
+        }
+        if (totalChars <= maxChars) {
+            return String.join("", findings);
+        }
+        int kept = (int) Math.max(1, Math.min(findings.size(), maxChars / MIN_FINDING_CHARS));
+        int share = (int) Math.min(Integer.MAX_VALUE, maxChars / kept);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < kept; i++) {
+            String finding = findings.get(i);
+            if (finding.length() <= share) {
+                content.append(finding);
+            } else {
+                content.append(finding, 0, share).append("\n[... findings of this part cut to fit the merge]\n\n");
+            }
+        }
+        if (kept < findings.size()) {
+            content.append("[").append(findings.size() - kept).append(" more parts left out to fit the merge]\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Reads content into chunks of at most a number of characters, cut after the last complete line that fits.
+     * A line longer than a chunk is split. Only one chunk and a read buffer are held in memory.
+     */
+    public static class ChunkReader {
+        private final Reader reader;
+        private final int chunkChars;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder pending = new StringBuilder();
+        private boolean eof;
+        private int index;
+        private long nextLine = 1;
+
+        public ChunkReader(Reader reader, int chunkChars) {
+            this.reader = reader;
+            this.chunkChars = Math.max(1, chunkChars);
+        }
+
+        /**
+         * @return the next chunk, or null at the end of the content
+         */
+        public Chunk next() throws IOException {
+            while (!eof && pending.length() <= chunkChars) {
+                int read = reader.read(buffer);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    pending.append(buffer, 0, read);
+                }
+            }
+            if (pending.length() == 0) {
+                return null;
+            }
+
+            int end;
+            if (pending.length() <= chunkChars) {
+                end = pending.length();
+            } else {
+                int lastNewline = pending.lastIndexOf("\n", chunkChars - 1);
+                if (lastNewline >= 0) {
+                    end = lastNewline + 1;
+                } else {
+                    end = chunkChars;
+                    // Do not split a surrogate pair
+                    if (end > 1 && Character.isHighSurrogate(pending.charAt(end - 1))) {
+                        end--;
+                    }
+                }
+            }
+            String text = pending.substring(0, end);
+            pending.delete(0, end);
+
+            long newlines = text.chars().filter(c -> c == '\n').count();
+            long firstLine = nextLine;
+            long lastLine = Math.max(firstLine, firstLine + newlines - (text.endsWith("\n") ? 1 : 0));
+            nextLine = firstLine + newlines;
+            return new Chunk(++index, firstLine, lastLine, text);
+        }
+    }
+
+    /**
+     * A part of the content with its position
+     */
+    public static class Chunk {
+        private final int index;
+        private final long firstLine;
+        private final long lastLine;
+        private final String text;
+
+        Chunk(int index, long firstLine, long lastLine, String text) {
+            this.index = index;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.text = text;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getFirstLine() {
+            return firstLine;
+        }
+
+        public long getLastLine() {
+            return lastLine;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        String getLabel() {
+            return "PART " + index + " (LINES " + firstLine + "-" + lastLine + ")";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.jenkins.plugins.codex;
+
+import hudson.FilePath;
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller-side cache of "codex models list" output, keyed by node name and CLI path.
+ * Model resolution on the analysis hot path becomes a map lookup: the list is fetched from the node once,
+ * and stale entries keep being served while a background refresh replaces them.
+ */
+public class CodexModelRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(CodexModelRegistry.class.getName());
+
+    // Used while a node offers no models, e.g. when the listing failed or timed out
+    public static final String FALLBACK_MODEL = "kimi-k2";
+
+    private static final long MODELS_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // Empty or failed listings are retried sooner so a freshly installed CLI is picked up quickly
+    private static final long EMPTY_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final CodexModelRegistry INSTANCE = new CodexModelRegistry(MODELS_TTL_MILLIS, EMPTY_TTL_MILLIS,
+        (root, cliPath) -> CodexAnalysisJobProperty.DescriptorImpl.parseModelList(
+            root.act(new CodexAnalysisJobProperty.DescriptorImpl.ModelsListCallable(cliPath))),
+        command -> Timer.get().submit(command));
+
+    private final long modelsTtlMillis;
+    private final long emptyTtlMillis;
+    private final ModelLoader loader;
+    private final Executor refreshExecutor;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    CodexModelRegistry(long modelsTtlMillis, long emptyTtlMillis, ModelLoader loader, Executor refreshExecutor) {
+        this.modelsTtlMillis = modelsTtlMillis;
+        this.emptyTtlMillis = emptyTtlMillis;
+        this.loader = loader;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public static CodexModelRegistry get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Models offered by the CLI on a node. Only the first lookup per node and CLI path runs the CLI;
+     * afterwards the cached list is returned and refreshed in the background once it expires.
+     * An expired empty list is not served while refreshing, the lookup waits for the listing instead.
+     *
+     * @param root any path on the node, used to run the CLI there
+     */
+    public List<String> getModels(String nodeName, FilePath root, String cliPath) throws InterruptedException {
+        String key = key(nodeName, cliPath);
+        Entry entry = entries.get(key);
+        if (entry == null || (entry.models.isEmpty() && isExpired(entry))) {
+            return load(key, root, cliPath).models;
+        }
+        if (isExpired(entry) && entry.startRefresh()) {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, root, cliPath);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    entry.refreshing = false;
+                }
+            });
+        }
+        return entry.models;
+    }
+
+    /**
+     * First model offered by the CLI on a node, or {@link #FALLBACK_MODEL} while it offers none,
+     * so analyses do not fail because the listing failed once
+     */
+    public String getDefaultModel(String nodeName, FilePath root, String cliPath) throws InterruptedException {
+        List<String> models = getModels(nodeName, root, cliPath);
+        return models.isEmpty() ? FALLBACK_MODEL : models.get(0);
+    }
+
+    /**
+     * Drop every cached model list of a node, e.g. after the CLI was replaced or the node reconnected
+     */
+    public void invalidateNode(String nodeName) {
+        String prefix = (nodeName != null ? nodeName : "") + "|";
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private Entry load(String key, FilePath root, String cliPath) throws InterruptedException {
+        List<String> models;
+        try {
+            models = root != null ? loader.load(root, cliPath) : Collections.emptyList();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to list Codex models for " + key, e);
+            models = Collections.emptyList();
+        }
+        Entry entry = new Entry(Collections.unmodifiableList(models), System.currentTimeMillis());
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private boolean isExpired(Entry entry) {
+        long ttl = entry.models.isEmpty() ? emptyTtlMillis : modelsTtlMillis;
+        return System.currentTimeMillis() - entry.timestamp > ttl;
+    }
+
+    private static String key(String nodeName, String cliPath) {
+        return (nodeName != null ? nodeName : "") + "|" + cliPath;
+    }
+
+    /**
+     * Fetches the model list from the CLI on a node
+     */
+    interface ModelLoader {
+        List<String> load(FilePath root, String cliPath) throws IOException, InterruptedException;
+    }
+
+    private static class Entry {
+        private final List<String> models;
+        private final long timestamp;
+        private volatile boolean refreshing;
+
+        Entry(List<String> models, long timestamp) {
+            this.models = models;
+            this.timestamp = timestamp;
+        }
+
+        synchronized boolean startRefresh() {
+            if (refreshing) {
+                return false;
+            }
+            refreshing = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package io.jenkins.plugins.codex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the model of an analysis that does not ask for one, from the routing rules of the global configuration.
+ * One rule per line, the first matching rule wins:
+ * <pre>
+ * type=build_analysis maxTokens=4000 -&gt; gpt-4o-mini
+ * type=security_analysis -&gt; gpt-4.1, o3
+ * job=team-a/* -&gt; gpt-4o
+ * </pre>
+ * Conditions are {@code type=} (analysis types separated by {@code |}), {@code minTokens=}, {@code maxTokens=}
+ * (estimated content tokens) and {@code job=} (glob on the full job name, so it also matches folders);
+ * {@code *} alone matches everything. When a rule lists several models, models with an open circuit or a high
+ * error rate are avoided, models without enough statistics are tried first so they get some, and otherwise
+ * the model with the lowest median latency, weighted by its error rate, is used.
+ */
+public class CodexModelRouter {
+
+    // Models failing more often than this are only used if all candidates do
+    private static final double MAX_ERROR_RATE = 0.5;
+
+    private static final CodexModelRouter INSTANCE = new CodexModelRouter(CodexModelRouter::getConfiguredRules,
+        CodexLatencyTracker.get(), CodexCircuitBreaker.get());
+
+    private final Supplier<String> rulesText;
+    private final CodexLatencyTracker stats;
+    private final CodexCircuitBreaker circuitBreaker;
+
+    private String parsedText;
+    private List<Rule> parsedRules = Collections.emptyList();
+
+    CodexModelRouter(Supplier<String> rulesText, CodexLatencyTracker stats, CodexCircuitBreaker circuitBreaker) {
+        this.rulesText = rulesText;
+        this.stats = stats;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public static CodexModelRouter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the routed model, or null if no rule matches
+     */
+    public Decision route(String analysisType, long contentTokens, String jobName, String nodeName) {
+        for (Rule rule : getRules()) {
+            if (rule.matches(analysisType, contentTokens, jobName)) {
+                return new Decision(pickModel(rule.models, nodeName), rule);
+            }
+        }
+        return null;
+    }
+
+    private String pickModel(List<String> candidates, String nodeName) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        String best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (String model : candidates) {
+            if (circuitBreaker.isOpen(model, nodeName)) {
+                continue;
+            }
+            double errorRate = stats.getErrorRate(model);
+            long medianLatency = stats.getPercentile(model, 50);
+            if (errorRate < 0 || medianLatency < 0) {
+                // Too few calls to judge, try it so it gets statistics
+                return model;
+            }
+            if (errorRate > MAX_ERROR_RATE) {
+                continue;
+            }
+            double score = medianLatency * (1 + 4 * errorRate);
+            if (score < bestScore) {
+                bestScore = score;
+                best = model;
+            }
+        }
+        // All candidates unhealthy: fall back to the preferred one
+        return best != null ? best : candidates.get(0);
+    }
+
+    private synchronized List<Rule> getRules() {
+        String text = rulesText.get();
+        if (text == null) {
+            text = "";
+        }
+        if (!text.equals(parsedText)) {
+            parsedRules = parseRules(text, new ArrayList<>());
+            parsedText = text;
+        }
+        return parsedRules;
+    }
+
+    /**
+     * Parse routing rules, skipping blank lines, comments starting with '#', and invalid lines
+     *
+     * @param errors receives a message for each invalid line
+     */
+    public static List<Rule> parseRules(String text, List<String> errors) {
+        List<Rule> rules = new ArrayList<>();
+        if (text == null) {
+            return rules;
+        }
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(Rule.parse(line));
+            } catch (IllegalArgumentException e) {
+                errors.add("Line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+
+    private static String getConfiguredRules() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return globalConfig != null ? globalConfig.getModelRoutingRules() : "";
+    }
+
+    /**
+     * A routing rule: conditions and candidate models
+     */
+    public static class Rule {
+        private final String text;
+        private final List<String> types = new ArrayList<>();
+        private long minTokens = -1;
+        private long maxTokens = -1;
+        private Pattern job;
+        private final List<String> models = new ArrayList<>();
+
+        private Rule(String text) {
+            this.text = text;
+        }
+
+        static Rule parse(String line) {
+            int arrow = line.indexOf("->");
+            if (arrow < 0) {
+                throw new IllegalArgumentException("expected 'conditions -> models'");
+            }
+            Rule rule = new Rule(line);
+            for (String model : line.substring(arrow + 2).split(",")) {
+                if (!model.trim().isEmpty()) {
+                    rule.models.add(model.trim());
+                }
+            }
+            if (rule.models.isEmpty()) {
+                throw new IllegalArgumentException("no model after '->'");
+            }
+            for (String condition : line.substring(0, arrow).trim().split("\\s+")) {
+                if (condition.isEmpty() || condition.equals("*")) {
+                    continue;
+                }
+                int eq = condition.indexOf('=');
+                if (eq <= 0 || eq == condition.length() - 1) {
+                    throw new IllegalArgumentException("invalid condition '" + condition + "'");
+                }
+                String key = condition.substring(0, eq).toLowerCase(Locale.ROOT);
+                String value = condition.substring(eq + 1);
+                switch (key) {
+                    case "type":
+                        for (String type : value.split("\\|")) {
+                            rule.types.add(type.trim().toLowerCase(Locale.ROOT));
+                        }
+                        break;
+                    case "mintokens":
+                        rule.minTokens = parseTokens(condition, value);
+                        break;
+                    case "maxtokens":
+                        rule.maxTokens = parseTokens(condition, value);
+                        break;
+                    case "job":
+                        rule.job = globToPattern(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown condition '" + key
+                            + "', expected type, minTokens, maxTokens or job");
+                }
+            }
+            return rule;
+        }
+
+        boolean matches(String analysisType, long contentTokens, String jobName) {
+            if (!types.isEmpty() && (analysisType == null || !types.contains(analysisType.toLowerCase(Locale.ROOT)))) {
+                return false;
+            }
+            if (minTokens >= 0 && contentTokens < minTokens) {
+                return false;
+            }
+            if (maxTokens >= 0 && contentTokens > maxTokens) {
+                return false;
+            }
+            return job == null || (jobName != null && job.matcher(jobName).matches());
+        }
+
+        public List<String> getModels() {
+            return Collections.unmodifiableList(models);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+        private static long parseTokens(String condition, String value) {
+            try {
+                long tokens = Long.parseLong(value.trim());
+                if (tokens < 0) {
+                    throw new IllegalArgumentException("negative token count in '" + condition + "'");
+                }
+                return tokens;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid token count in '" + condition + "'");
+            }
+        }
+
+        private static Pattern globToPattern(String glob) {
+            String[] parts = glob.split("\\*", -1);
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(parts[i]));
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+
+    /**
+     * The routed model and the rule that chose it
+     */
+    public static class Decision {
+        private final String model;
+        private final Rule rule;
+
+        Decision(String model, Rule rule) {
+            this.model = model;
+            this.rule = rule;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public Rule getRule() {
+            return rule;
+        }
+    }
+}
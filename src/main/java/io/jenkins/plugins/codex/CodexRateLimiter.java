@@ -0,0 +1,253 @@
+package io.jenkins.plugins.codex;
+
+import hudson.model.TaskListener;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Controller-wide admission control for Codex calls, with a requests per minute and a tokens per minute
+ * token bucket per model. Callers over the limit wait instead of failing with provider 429s. Waiting callers
+ * are served round-robin between jobs, so one job queueing many calls cannot starve the others.
+ */
+public class CodexRateLimiter {
+
+    // Upper bound for a single wait, so limit changes in the configuration are picked up
+    private static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final CodexRateLimiter INSTANCE = new CodexRateLimiter(CodexRateLimiter::getConfiguredLimits);
+
+    private final Function<String, Limits> limitsForModel;
+    private final Map<String, ModelLimiter> limiters = new HashMap<>();
+
+    CodexRateLimiter(Function<String, Limits> limitsForModel) {
+        this.limitsForModel = limitsForModel;
+    }
+
+    public static CodexRateLimiter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Rough token estimate for text sent to a model, about four characters per token
+     */
+    public static long estimateTokens(long chars) {
+        return (Math.max(0, chars) + 3) / 4;
+    }
+
+    /**
+     * Wait until the model's buckets admit one request of the given size.
+     * The wait is reported to the listener.
+     *
+     * @param jobName job on whose behalf the call is made, used for fair queueing
+     * @return milliseconds spent waiting
+     */
+    public long acquire(String model, String jobName, long tokens, TaskListener listener) throws InterruptedException {
+        String key = model != null ? model : "";
+        Limits limits = limitsForModel.apply(key);
+        if (limits == null || limits.isUnlimited()) {
+            return 0;
+        }
+        ModelLimiter limiter;
+        synchronized (limiters) {
+            limiter = limiters.computeIfAbsent(key, k -> new ModelLimiter());
+        }
+        long waited = limiter.acquire(key, jobName != null ? jobName : "", Math.max(1, tokens), listener);
+        if (waited > 0 && listener != null) {
+            listener.getLogger().println("Waited " + formatSeconds(waited) + " for the Codex rate limit of model '" + key + "'");
+        }
+        return waited;
+    }
+
+    /**
+     * Number of callers currently waiting for a model
+     */
+    public int getQueueLength(String model) {
+        ModelLimiter limiter;
+        synchronized (limiters) {
+            limiter = limiters.get(model != null ? model : "");
+        }
+        return limiter != null ? limiter.getQueueLength() : 0;
+    }
+
+    private static String formatSeconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0);
+    }
+
+    /**
+     * Per-model limits; 0 means unlimited
+     */
+    public static class Limits {
+        private final int requestsPerMinute;
+        private final long tokensPerMinute;
+
+        public Limits(int requestsPerMinute, long tokensPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+            this.tokensPerMinute = tokensPerMinute;
+        }
+
+        public int getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public long getTokensPerMinute() {
+            return tokensPerMinute;
+        }
+
+        public boolean isUnlimited() {
+            return requestsPerMinute <= 0 && tokensPerMinute <= 0;
+        }
+    }
+
+    /**
+     * Resolve the limits of a model from per-model overrides, one "model=requests/tokens" entry per line
+     * (tokens may be omitted), falling back to the defaults.
+     */
+    static Limits parseLimits(String overrides, String model, int defaultRequests, long defaultTokens) {
+        if (overrides != null) {
+            for (String line : overrides.split("[\\r\\n;]+")) {
+                line = line.trim();
+                int equalsIndex = line.indexOf('=');
+                if (equalsIndex <= 0 || !line.substring(0, equalsIndex).trim().equals(model)) {
+                    continue;
+                }
+                String[] values = line.substring(equalsIndex + 1).trim().split("/");
+                try {
+                    int requests = Integer.parseInt(values[0].trim());
+                    long tokens = values.length > 1 ? Long.parseLong(values[1].trim()) : defaultTokens;
+                    return new Limits(requests, tokens);
+                } catch (NumberFormatException e) {
+                    // Malformed override, use the defaults
+                }
+            }
+        }
+        return new Limits(defaultRequests, defaultTokens);
+    }
+
+    private static Limits getConfiguredLimits(String model) {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        if (globalConfig == null) {
+            return null;
+        }
+        return parseLimits(globalConfig.getModelRateLimits(), model,
+            globalConfig.getRateLimitRequestsPerMinute(), globalConfig.getRateLimitTokensPerMinute());
+    }
+
+    /**
+     * Token buckets and the fair waiting queue of one model
+     */
+    private class ModelLimiter {
+        private double availableRequests = -1;
+        private double availableTokens = -1;
+        private long lastRefill = System.nanoTime();
+        // Waiting callers per job, and the round-robin order of jobs with waiters
+        private final Map<String, Deque<Object>> waitingByJob = new HashMap<>();
+        private final Deque<String> jobOrder = new ArrayDeque<>();
+
+        synchronized long acquire(String model, String jobName, long tokens, TaskListener listener) throws InterruptedException {
+            long started = System.nanoTime();
+            Object waiter = new Object();
+            waitingByJob.computeIfAbsent(jobName, k -> {
+                jobOrder.addLast(k);
+                return new ArrayDeque<>();
+            }).addLast(waiter);
+            boolean waited = false;
+            boolean served = false;
+            try {
+                while (true) {
+                    Limits limits = limitsForModel.apply(model);
+                    long waitMillis = 0;
+                    if (limits != null && !limits.isUnlimited()) {
+                        refill(limits);
+                        waitMillis = isNext(jobName, waiter) ? millisUntilAdmitted(limits, tokens) : MAX_WAIT_MILLIS;
+                    }
+                    if (waitMillis == 0) {
+                        if (limits != null) {
+                            consume(limits, tokens);
+                        }
+                        served = true;
+                        return waited ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) : 0;
+                    }
+                    if (!waited && listener != null) {
+                        listener.getLogger().println("Codex rate limit reached for model '" + model + "', waiting ("
+                            + getQueueLength() + " calls queued)");
+                    }
+                    waited = true;
+                    wait(Math.min(waitMillis, MAX_WAIT_MILLIS));
+                }
+            } finally {
+                dequeue(jobName, waiter, served);
+                notifyAll();
+            }
+        }
+
+        synchronized int getQueueLength() {
+            int length = 0;
+            for (Deque<Object> waiters : waitingByJob.values()) {
+                length += waiters.size();
+            }
+            return length;
+        }
+
+        private boolean isNext(String jobName, Object waiter) {
+            return jobName.equals(jobOrder.peekFirst()) && waitingByJob.get(jobName).peekFirst() == waiter;
+        }
+
+        private void dequeue(String jobName, Object waiter, boolean served) {
+            Deque<Object> waiters = waitingByJob.get(jobName);
+            waiters.remove(waiter);
+            if (waiters.isEmpty()) {
+                waitingByJob.remove(jobName);
+                jobOrder.remove(jobName);
+            } else if (served) {
+                // The job had its turn and goes to the back of the rotation
+                jobOrder.remove(jobName);
+                jobOrder.addLast(jobName);
+            }
+        }
+
+        private void refill(Limits limits) {
+            long now = System.nanoTime();
+            double elapsedMinutes = (now - lastRefill) / (double) TimeUnit.MINUTES.toNanos(1);
+            lastRefill = now;
+            if (limits.getRequestsPerMinute() > 0) {
+                double capacity = limits.getRequestsPerMinute();
+                availableRequests = availableRequests < 0 ? capacity
+                    : Math.min(capacity, availableRequests + elapsedMinutes * capacity);
+            }
+            if (limits.getTokensPerMinute() > 0) {
+                double capacity = limits.getTokensPerMinute();
+                availableTokens = availableTokens < 0 ? capacity
+                    : Math.min(capacity, availableTokens + elapsedMinutes * capacity);
+            }
+        }
+
+        private long millisUntilAdmitted(Limits limits, long tokens) {
+            double waitMinutes = 0;
+            if (limits.getRequestsPerMinute() > 0 && availableRequests < 1) {
+                waitMinutes = Math.max(waitMinutes, (1 - availableRequests) / limits.getRequestsPerMinute());
+            }
+            if (limits.getTokensPerMinute() > 0) {
+                // A request larger than the whole bucket is admitted once the bucket is full
+                double needed = Math.min(tokens, limits.getTokensPerMinute());
+                if (availableTokens < needed) {
+                    waitMinutes = Math.max(waitMinutes, (needed - availableTokens) / limits.getTokensPerMinute());
+                }
+            }
+            return waitMinutes <= 0 ? 0 : Math.max(1, (long) Math.ceil(waitMinutes * TimeUnit.MINUTES.toMillis(1)));
+        }
+
+        private void consume(Limits limits, long tokens) {
+            if (limits.getRequestsPerMinute() > 0) {
+                availableRequests -= 1;
+            }
+            if (limits.getTokensPerMinute() > 0) {
+                availableTokens -= Math.min(tokens, limits.getTokensPerMinute());
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package io.jenkins.plugins.codex;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * On-disk cache of successful analysis results under JENKINS_HOME/codex-cache.
+ * Entries are keyed by a SHA-256 hash of everything that determines the answer (content, analysis type,
+ * prompt, model, MCP configuration), so retried and rebuilt jobs sending identical contexts skip the CLI.
+ * Least recently used entries are evicted once the cache exceeds its size limit; entries older than
+ * the maximum age are never served.
+ */
+public class CodexResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(CodexResultCache.class.getName());
+
+    private static final String ENTRY_SUFFIX = ".json";
+
+    private static final CodexResultCache INSTANCE = new CodexResultCache(
+        () -> new File(Jenkins.get().getRootDir(), "codex-cache"),
+        CodexResultCache::getConfiguredMaxBytes, CodexResultCache::getConfiguredMaxAgeMillis);
+
+    private final Supplier<File> directory;
+    private final LongSupplier maxBytes;
+    private final LongSupplier maxAgeMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Entry sizes in least-recently-used order, loaded from disk on first use
+    private LinkedHashMap<String, Long> index;
+    private long totalBytes;
+
+    CodexResultCache(Supplier<File> directory, LongSupplier maxBytes, LongSupplier maxAgeMillis) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public static CodexResultCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Cache key for an analysis request, including any extra options forwarded to the CLI.
+     * Each part is length-prefixed so different splits never collide.
+     */
+    public static String key(String content, String analysisType, String prompt, String model, String mcpConfig,
+                             String cliOptions) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : Arrays.asList(content, analysisType, prompt, model, mcpConfig, cliOptions)) {
+                byte[] bytes = (part != null ? part : "").getBytes(StandardCharsets.UTF_8);
+                digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+                digest.update(bytes);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Cached result for a key, or null on a miss
+     */
+    public synchronized CodexCliExecutor.CodexAnalysisResult get(String key) {
+        loadIndex();
+        if (!index.containsKey(key)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        File file = entryFile(key);
+        try {
+            JSONObject json = JSONObject.fromObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (System.currentTimeMillis() - json.optLong("created") > maxAgeMillis.getAsLong()) {
+                remove(key);
+                misses.incrementAndGet();
+                return null;
+            }
+            // Refresh recency in memory and on disk, so the LRU order survives restarts
+            index.put(key, index.remove(key));
+            file.setLastModified(System.currentTimeMillis());
+            hits.incrementAndGet();
+            return new CodexCliExecutor.CodexAnalysisResult(json.optString("output"), json.optString("error"), true);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Dropping unreadable Codex cache entry " + file, e);
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store a successful result and evict least recently used entries beyond the size limit
+     */
+    public synchronized void put(String key, CodexCliExecutor.CodexAnalysisResult result) {
+        if (result == null || !result.isSuccess() || result.isTimedOut()) {
+            return;
+        }
+        loadIndex();
+        JSONObject json = new JSONObject();
+        json.put("created", System.currentTimeMillis());
+        json.put("output", result.getOutput());
+        json.put("error", result.getError());
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        File file = entryFile(key);
+        try {
+            File dir = file.getParentFile();
+            Files.createDirectories(dir.toPath());
+            File temp = File.createTempFile("entry", ".tmp", dir);
+            Files.write(temp.toPath(), bytes);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write Codex cache entry " + file, e);
+            return;
+        }
+        Long previous = index.remove(key);
+        if (previous != null) {
+            totalBytes -= previous;
+        }
+        index.put(key, (long) bytes.length);
+        totalBytes += bytes.length;
+        evict();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int getEntryCount() {
+        loadIndex();
+        return index.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        loadIndex();
+        return totalBytes;
+    }
+
+    /**
+     * Delete every entry and reset the counters
+     */
+    public synchronized void clear() {
+        loadIndex();
+        for (String key : new ArrayList<>(index.keySet())) {
+            remove(key);
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private void evict() {
+        long limit = maxBytes.getAsLong();
+        for (Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator(); it.hasNext() && totalBytes > limit; ) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            deleteEntryFile(eldest.getKey());
+        }
+    }
+
+    private void remove(String key) {
+        Long size = index.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteEntryFile(key);
+    }
+
+    private void deleteEntryFile(String key) {
+        try {
+            Files.deleteIfExists(entryFile(key).toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to delete Codex cache entry " + key, e);
+        }
+    }
+
+    private void loadIndex() {
+        if (index != null) {
+            return;
+        }
+        index = new LinkedHashMap<>(16, 0.75f, false);
+        totalBytes = 0;
+        File[] files = directory.get().listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<>(Arrays.asList(files));
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : entries) {
+            String name = file.getName();
+            index.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), file.length());
+            totalBytes += file.length();
+        }
+    }
+
+    private File entryFile(String key) {
+        return new File(directory.get(), key + ENTRY_SUFFIX);
+    }
+
+    private static long getConfiguredMaxBytes() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        int megabytes = globalConfig != null ? globalConfig.getResultCacheMaxSizeMb() : 100;
+        return Math.max(0, megabytes) * 1024L * 1024L;
+    }
+
+    private static long getConfiguredMaxAgeMillis() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        int hours = globalConfig != null ? globalConfig.getResultCacheMaxAgeHours() : 24;
+        return TimeUnit.HOURS.toMillis(Math.max(0, hours));
+    }
+}
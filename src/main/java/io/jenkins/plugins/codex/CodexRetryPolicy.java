@@ -0,0 +1,109 @@
+package io.jenkins.plugins.codex;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a failed Codex CLI call is worth retrying, and how long to wait before the next attempt.
+ * Provider hiccups (rate limits, 5xx responses, network errors) are transient; usage, authentication and
+ * configuration errors are permanent and fail immediately.
+ */
+public final class CodexRetryPolicy {
+
+    // Upper bound for a single backoff delay
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // sysexits.h EX_UNAVAILABLE and EX_TEMPFAIL, and processes killed by SIGKILL or SIGTERM
+    private static final Set<Integer> TRANSIENT_EXIT_CODES = Set.of(69, 75, 137, 143);
+
+    // Usage, data, permission and configuration errors, and a CLI that cannot be executed or found
+    private static final Set<Integer> PERMANENT_EXIT_CODES = Set.of(2, 64, 65, 77, 78, 126, 127);
+
+    private static final Pattern PERMANENT_PATTERN = Pattern.compile(
+        "\\b(401|403|404)\\b|unauthori[sz]ed|forbidden|invalid[ _-]?api[ _-]?key|authentication|permission denied"
+            + "|model[^\\n]{0,40}not (found|supported)|unknown (option|argument|command)|invalid (argument|option|request)"
+            + "|context length|maximum context|too many tokens",
+        Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern TRANSIENT_PATTERN = Pattern.compile(
+        "\\b(429|500|502|503|504|529)\\b|rate[ _-]?limit|too many requests|overloaded|service unavailable|bad gateway"
+            + "|gateway timeout|timed? ?out|temporar(y|ily)|try again|connection (reset|refused|closed|aborted)"
+            + "|econnreset|econnrefused|etimedout|eai_again|socket hang up|network error",
+        Pattern.CASE_INSENSITIVE);
+
+    private CodexRetryPolicy() {
+    }
+
+    /**
+     * Whether a failed call should be retried, based on its exit code and error output.
+     * Only the error the CLI reported last is classified, not the progress output before it.
+     * Failures that match neither list are treated as permanent.
+     */
+    public static boolean isTransient(int exitCode, String errorOutput) {
+        String error = errorLine(errorOutput);
+        if (PERMANENT_EXIT_CODES.contains(exitCode) || PERMANENT_PATTERN.matcher(error).find()) {
+            return false;
+        }
+        return TRANSIENT_EXIT_CODES.contains(exitCode) || TRANSIENT_PATTERN.matcher(error).find();
+    }
+
+    /**
+     * The error a CLI reported: the last non-blank line of its error output, or the message of the error
+     * field when that line is a JSON event
+     */
+    static String errorLine(String errorOutput) {
+        if (errorOutput == null) {
+            return "";
+        }
+        int end = errorOutput.length();
+        String line = "";
+        while (end > 0 && line.isEmpty()) {
+            int start = errorOutput.lastIndexOf('\n', end - 1) + 1;
+            line = errorOutput.substring(start, end).trim();
+            end = start - 1;
+        }
+        if (line.startsWith("{")) {
+            try {
+                JSONObject event = JSONObject.fromObject(line);
+                JSONObject nested = event.optJSONObject("error");
+                String message = nested != null ? nested.optString("message", null) : event.optString("error", null);
+                if (message == null) {
+                    message = event.optString("message", null);
+                }
+                if (message != null && !message.isEmpty()) {
+                    return message;
+                }
+            } catch (JSONException e) {
+                // Not JSON after all, classify the line as it is
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Delay before retry number {@code attempt} (starting at 0): exponential backoff with jitter,
+     * i.e. a random delay between half and all of {@code baseMillis * 2^attempt}, capped at one minute
+     */
+    public static long backoffMillis(int attempt, long baseMillis) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, Math.max(1, baseMillis) << Math.min(attempt, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Number of retries after the first attempt
+     */
+    public static int getMaxRetries() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return globalConfig != null ? Math.max(0, globalConfig.getMaxRetries()) : 0;
+    }
+
+    public static long getBaseDelayMillis() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return TimeUnit.SECONDS.toMillis(globalConfig != null ? Math.max(0, globalConfig.getRetryBaseDelaySeconds()) : 2);
+    }
+}
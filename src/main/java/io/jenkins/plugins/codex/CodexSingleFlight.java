@@ -0,0 +1,129 @@
+package io.jenkins.plugins.codex;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical requests that are in flight at the same time.
+ * The first caller for a key starts the work; later callers with the same key share its result instead of
+ * starting a duplicate CLI process. Every caller gets its own future: cancelling it only detaches that caller,
+ * and the shared work is cancelled once the last caller has left.
+ */
+public class CodexSingleFlight {
+
+    private static final CodexSingleFlight INSTANCE = new CodexSingleFlight();
+
+    private final Map<String, Flight<?>> flights = new HashMap<>();
+
+    CodexSingleFlight() {
+    }
+
+    public static CodexSingleFlight get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Join the in-flight work for a key, or start it with the given starter if there is none
+     */
+    public <T> Call<T> join(String key, Supplier<CompletableFuture<T>> starter) {
+        Flight<T> flight;
+        boolean shared;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Flight<T> existing = (Flight<T>) flights.get(key);
+            if (existing != null && existing.addCaller()) {
+                flight = existing;
+                shared = true;
+            } else {
+                flight = new Flight<>(starter.get());
+                flights.put(key, flight);
+                shared = false;
+            }
+        }
+        if (!shared) {
+            Flight<T> started = flight;
+            started.future.whenComplete((value, error) -> remove(key, started));
+        }
+        return new Call<>(flight, shared);
+    }
+
+    public synchronized int getInFlightCount() {
+        return flights.size();
+    }
+
+    private synchronized void remove(String key, Flight<?> flight) {
+        flights.remove(key, flight);
+    }
+
+    /**
+     * Shared work and the number of callers still waiting for it
+     */
+    private static class Flight<T> {
+        private final CompletableFuture<T> future;
+        private int callers = 1;
+
+        Flight(CompletableFuture<T> future) {
+            this.future = future;
+        }
+
+        synchronized boolean addCaller() {
+            // A flight whose callers all left is being cancelled and must not be joined
+            if (callers == 0 || future.isCancelled()) {
+                return false;
+            }
+            callers++;
+            return true;
+        }
+
+        void removeCaller() {
+            boolean last;
+            synchronized (this) {
+                callers--;
+                last = callers == 0;
+            }
+            if (last) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * One caller's view of a flight
+     */
+    public static class Call<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final boolean shared;
+
+        Call(Flight<T> flight, boolean shared) {
+            this.shared = shared;
+            flight.future.whenComplete((value, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(value);
+                }
+            });
+            future.whenComplete((value, error) -> {
+                if (future.isCancelled()) {
+                    flight.removeCaller();
+                }
+            });
+        }
+
+        /**
+         * Result for this caller; cancelling it detaches the caller from the shared work
+         */
+        public CompletableFuture<T> getFuture() {
+            return future;
+        }
+
+        /**
+         * Whether this caller joined work started by an earlier caller
+         */
+        public boolean isShared() {
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package io.jenkins.plugins.codex;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.PeriodicWork;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of long-lived Codex CLI worker processes, one pool per node holding workers for any CLI path.
+ * Workers are started with {@code codex serve --stdio} and speak a line-delimited JSON
+ * protocol: each request is a single line {@code {"id":1,"cwd":"...","env":{...},"argv":[...]}} and each
+ * response is a single line {@code {"id":1,"exitCode":0,"stdout":"...","stderr":"..."}}.
+ * Workers are started with the node environment; the environment of the build is sent with each request and
+ * applies to that invocation only, so per-build variables such as credentials bound with withCredentials or
+ * proxy settings are never lost or shared with other builds, while the workers are reused across builds.
+ */
+public class CodexWorkerPool {
+
+    private static final Logger LOGGER = Logger.getLogger(CodexWorkerPool.class.getName());
+
+    private static final CodexWorkerPool INSTANCE = new CodexWorkerPool();
+
+    // Idle workers are pinged before reuse if they have not been used for this long
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // Longest response line read from a worker; output is captured in memory with the same kind of bound
+    static final int MAX_RESPONSE_CHARS = 16 * 1024 * 1024;
+
+    private final Map<String, NodePool> pools = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    public static CodexWorkerPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease a worker for the given node and CLI path.
+     * Returns null when pooling is disabled, the pool is exhausted or a worker cannot be started,
+     * in which case the caller should fall back to launching the CLI directly.
+     */
+    public Worker lease(String nodeName, String cliPath, FilePath workspace) {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        if (globalConfig == null || !globalConfig.isEnableWorkerPool()) {
+            return null;
+        }
+
+        String key = nodeName != null ? nodeName : "";
+        NodePool pool = pools.computeIfAbsent(key, NodePool::new);
+        int maxSize = Math.max(1, globalConfig.getWorkerPoolMaxSize());
+
+        // Reuse an idle worker if a healthy one is available
+        Worker worker;
+        while ((worker = pool.pollIdle(cliPath)) != null) {
+            if (worker.isHealthy()) {
+                return worker;
+            }
+            pool.discard(worker);
+        }
+
+        if (!pool.reserve(maxSize)) {
+            return null;
+        }
+        try {
+            worker = startWorker(pool, cliPath, workspace);
+            if (worker != null) {
+                return worker;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to start Codex worker on " + describe(nodeName), e);
+        }
+        pool.unreserve();
+        return null;
+    }
+
+    /**
+     * Return a leased worker to its pool, or discard it if it is no longer usable
+     */
+    public void release(Worker worker, boolean reusable) {
+        if (worker == null) {
+            return;
+        }
+        // A pool removed while the worker was leased is not reaped any more, its workers are stopped
+        if (reusable && worker.isAlive() && pools.get(worker.pool.key) == worker.pool) {
+            worker.pool.offerIdle(worker);
+        } else {
+            worker.pool.discard(worker);
+        }
+    }
+
+    /**
+     * Stop idle workers that exceeded the configured idle timeout
+     */
+    public void evictIdle() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        long idleTimeout = globalConfig != null
+            ? TimeUnit.SECONDS.toMillis(globalConfig.getWorkerPoolIdleTimeoutSeconds())
+            : TimeUnit.MINUTES.toMillis(5);
+        boolean enabled = globalConfig != null && globalConfig.isEnableWorkerPool();
+        long now = System.currentTimeMillis();
+        for (NodePool pool : pools.values()) {
+            // When pooling is switched off all idle workers are stopped
+            pool.evictIdleOlderThan(enabled ? now - idleTimeout : Long.MAX_VALUE);
+            // Pools without workers are dropped, e.g. of nodes that were removed
+            pools.computeIfPresent(pool.key, (key, existing) -> existing.isEmpty() ? null : existing);
+        }
+    }
+
+    /**
+     * Stop every idle worker on the given node, e.g. when the node goes offline or the CLI is replaced
+     */
+    public void shutdownNode(String nodeName) {
+        NodePool pool = pools.get(nodeName != null ? nodeName : "");
+        if (pool != null) {
+            pool.evictIdleOlderThan(Long.MAX_VALUE);
+        }
+    }
+
+    private Worker startWorker(NodePool pool, String cliPath, FilePath workspace) throws IOException, InterruptedException {
+        Node node = resolveNode(pool.key);
+        if (node == null) {
+            return null;
+        }
+        Launcher launcher = node.createLauncher(TaskListener.NULL);
+        Launcher.ProcStarter starter = launcher.launch()
+                .cmds(cliPath, "serve", "--stdio")
+                .writeStdin()
+                .readStdout()
+                .stderr(OutputStream.nullOutputStream())
+                .quiet(true);
+        FilePath root = workspace != null ? workspace : node.getRootPath();
+        if (root != null) {
+            starter.pwd(root);
+        }
+        Worker worker = new Worker(pool, cliPath, starter.start());
+        if (!worker.ping()) {
+            worker.stop();
+            return null;
+        }
+        return worker;
+    }
+
+    private static Node resolveNode(String nodeName) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        if (nodeName == null || nodeName.isEmpty()) {
+            return jenkins;
+        }
+        Node node = jenkins.getNode(nodeName);
+        Computer computer = node != null ? node.toComputer() : null;
+        return computer != null && computer.isOnline() ? node : null;
+    }
+
+    private static String describe(String nodeName) {
+        return nodeName == null || nodeName.isEmpty() ? "controller" : nodeName;
+    }
+
+    /**
+     * Workers of a single node, identified by the node name; the pool size is shared by all CLI paths
+     */
+    static class NodePool {
+        private final String key;
+        private final Deque<Worker> idle = new ArrayDeque<>();
+        private int size;
+
+        NodePool(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Most recently used idle worker of the CLI path
+         */
+        synchronized Worker pollIdle(String cliPath) {
+            for (Iterator<Worker> it = idle.iterator(); it.hasNext(); ) {
+                Worker worker = it.next();
+                if (worker.cliPath.equals(cliPath)) {
+                    it.remove();
+                    return worker;
+                }
+            }
+            return null;
+        }
+
+        synchronized void offerIdle(Worker worker) {
+            worker.lastUsed = System.currentTimeMillis();
+            idle.addFirst(worker);
+        }
+
+        /**
+         * Take a slot for a new worker. A full pool makes room by stopping its least recently used idle worker,
+         * which runs another CLI since the caller found no idle worker of its own.
+         */
+        boolean reserve(int maxSize) {
+            Worker evicted;
+            synchronized (this) {
+                if (size < maxSize) {
+                    size++;
+                    return true;
+                }
+                // The new worker takes over the slot of the evicted one
+                evicted = idle.pollLast();
+                if (evicted == null) {
+                    return false;
+                }
+            }
+            evicted.stop();
+            return true;
+        }
+
+        synchronized void unreserve() {
+            size--;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        void discard(Worker worker) {
+            synchronized (this) {
+                idle.remove(worker);
+                size--;
+            }
+            worker.stop();
+        }
+
+        void evictIdleOlderThan(long cutoff) {
+            List<Worker> evicted = new ArrayList<>();
+            synchronized (this) {
+                for (Iterator<Worker> it = idle.iterator(); it.hasNext(); ) {
+                    Worker worker = it.next();
+                    if (cutoff == Long.MAX_VALUE || worker.lastUsed < cutoff) {
+                        it.remove();
+                        size--;
+                        evicted.add(worker);
+                    }
+                }
+            }
+            for (Worker worker : evicted) {
+                worker.stop();
+            }
+        }
+    }
+
+    /**
+     * A single worker process leased by one caller at a time
+     */
+    public class Worker {
+        private final NodePool pool;
+        private final String cliPath;
+        private final Proc proc;
+        private final BufferedReader responses;
+        private final Writer requests;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        Worker(NodePool pool, String cliPath, Proc proc) {
+            this.pool = pool;
+            this.cliPath = cliPath;
+            this.proc = proc;
+            this.responses = new BufferedReader(new InputStreamReader(proc.getStdout(), StandardCharsets.UTF_8));
+            this.requests = new OutputStreamWriter(proc.getStdin(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Execute one CLI invocation (arguments without the executable) in the given directory
+         *
+         * @param environment variables the invocation runs with, may be null for the node environment
+         */
+        public WorkerResponse execute(List<String> argv, String cwd, Map<String, String> environment)
+                throws IOException {
+            long id = requestIds.incrementAndGet();
+            JSONObject request = new JSONObject();
+            request.element("id", id);
+            if (cwd != null) {
+                request.element("cwd", cwd);
+            }
+            if (environment != null) {
+                request.element("env", JSONObject.fromObject(environment));
+            }
+            request.element("argv", JSONArray.fromObject(argv));
+
+            requests.write(request.toString());
+            requests.write("\n");
+            requests.flush();
+
+            String line;
+            while ((line = readLine()) != null) {
+                JSONObject response;
+                try {
+                    response = JSONObject.fromObject(line);
+                } catch (JSONException e) {
+                    // Not a protocol message (e.g. log lines)
+                    continue;
+                }
+                // Skip anything that is not the answer to this request
+                if (response.optLong("id", -1) != id) {
+                    continue;
+                }
+                lastUsed = System.currentTimeMillis();
+                return new WorkerResponse(response.optInt("exitCode", 1),
+                    response.optString("stdout", ""), response.optString("stderr", ""));
+            }
+            throw new IOException("Codex worker closed its output stream");
+        }
+
+        /**
+         * Next line of the worker output, failing instead of buffering a line longer than
+         * {@link #MAX_RESPONSE_CHARS}; the worker is not reusable after that
+         */
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = responses.read()) != -1) {
+                if (c == '\n') {
+                    break;
+                }
+                if (line.length() >= MAX_RESPONSE_CHARS) {
+                    throw new IOException("Codex worker output line exceeds " + MAX_RESPONSE_CHARS + " characters");
+                }
+                line.append((char) c);
+            }
+            if (c == -1 && line.length() == 0) {
+                return null;
+            }
+            int end = line.length();
+            if (end > 0 && line.charAt(end - 1) == '\r') {
+                line.setLength(end - 1);
+            }
+            return line.toString();
+        }
+
+        /**
+         * Kill the worker process, e.g. when a request hangs
+         */
+        public void kill() {
+            stop();
+        }
+
+        boolean ping() {
+            try {
+                return execute(List.of("--version"), null, null).getExitCode() == 0;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        boolean isAlive() {
+            try {
+                return proc.isAlive();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        boolean isHealthy() {
+            if (!isAlive()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lastUsed < HEALTH_CHECK_INTERVAL_MILLIS) {
+                return true;
+            }
+            return ping();
+        }
+
+        void stop() {
+            try {
+                requests.close();
+            } catch (IOException e) {
+                // Ignore, the process is being stopped anyway
+            }
+            try {
+                proc.kill();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to stop Codex worker on " + describe(pool.key), e);
+            }
+        }
+    }
+
+    /**
+     * Response to a single worker request
+     */
+    public static class WorkerResponse {
+        private final int exitCode;
+        private final String stdout;
+        private final String stderr;
+
+        public WorkerResponse(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getStdout() {
+            return stdout;
+        }
+
+        public String getStderr() {
+            return stderr;
+        }
+    }
+
+    /**
+     * Periodically stops idle workers
+     */
+    @Extension
+    public static class IdleWorkerReaper extends PeriodicWork {
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void doRun() {
+            CodexWorkerPool.get().evictIdle();
+        }
+    }
+}
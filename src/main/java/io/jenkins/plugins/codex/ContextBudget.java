@@ -0,0 +1,85 @@
+package io.jenkins.plugins.codex;
+
+/**
+ * Token budget of the analysis context sent to a model. Sections of the context are filled in priority order,
+ * content first, so lower-priority sections are the ones cut when the budget runs out.
+ */
+public final class ContextBudget {
+
+    public static final int DEFAULT_CONTEXT_TOKEN_BUDGET = 100000;
+
+    private ContextBudget() {}
+
+    /**
+     * Budget of an analysis, for its own model or else the job default model. Routed models are not known
+     * before the call, analyses left to routing get the default budget.
+     *
+     * @param jobConfig may be null
+     */
+    public static long forAnalysis(String model, CodexAnalysisJobProperty jobConfig) {
+        if (model == null || model.trim().isEmpty()) {
+            model = jobConfig != null ? jobConfig.getEffectiveDefaultModel() : "";
+        }
+        return forModel(model);
+    }
+
+    /**
+     * Budget for a model from the global configuration
+     *
+     * @param model may be empty when the model is not known before the call
+     * @return tokens, 0 for no budget
+     */
+    public static long forModel(String model) {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        if (globalConfig == null) {
+            return DEFAULT_CONTEXT_TOKEN_BUDGET;
+        }
+        return parseBudget(globalConfig.getModelContextTokenBudgets(), model, globalConfig.getContextTokenBudget());
+    }
+
+    /**
+     * Resolve the budget of a model from per-model overrides, one "model=tokens" entry per line,
+     * falling back to the default
+     */
+    static long parseBudget(String overrides, String model, long defaultTokens) {
+        if (overrides != null && model != null) {
+            for (String line : overrides.split("[\\r\\n;]+")) {
+                line = line.trim();
+                int equalsIndex = line.indexOf('=');
+                if (equalsIndex <= 0 || !line.substring(0, equalsIndex).trim().equals(model)) {
+                    continue;
+                }
+                try {
+                    return Math.max(0, Long.parseLong(line.substring(equalsIndex + 1).trim()));
+                } catch (NumberFormatException e) {
+                    // Malformed override, use the default
+                }
+            }
+        }
+        return Math.max(0, defaultTokens);
+    }
+
+    /**
+     * Share a budget between sections in priority order: each section gets what it needs while the budget lasts
+     *
+     * @param budget  characters available
+     * @param needed  characters each section would use, highest priority first
+     * @return characters allowed for each section
+     */
+    static long[] allocate(long budget, long... needed) {
+        long[] allowed = new long[needed.length];
+        long remaining = Math.max(0, budget);
+        for (int i = 0; i < needed.length; i++) {
+            allowed[i] = Math.min(Math.max(0, needed[i]), remaining);
+            remaining -= allowed[i];
+        }
+        return allowed;
+    }
+
+    /**
+     * Characters fitting in a number of tokens, the inverse of {@link CodexRateLimiter#estimateTokens(long)}
+     */
+    static long toChars(long tokens) {
+        return tokens > Long.MAX_VALUE / 4 ? Long.MAX_VALUE : tokens * 4;
+    }
+}
@@ -0,0 +1,217 @@
+package io.jenkins.plugins.codex;
+
+import hudson.model.TaskListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Keeps only the regions of a log around error lines: lines matching one of the error signatures of common
+ * build tools, or one of the configured extra signatures, together with a window of lines before and after.
+ * Overlapping windows are merged. Lines are matched without colours, console notes and timestamps, so anchored
+ * signatures match decorated output too. All signatures are compiled into one pattern, so each line is matched once
+ * and the log is read in a single pass, holding only the lines of the current window.
+ */
+public class ErrorExcerptExtractor {
+
+    public static final int DEFAULT_CONTEXT_LINES = 10;
+
+    // Excerpts stop growing past this many lines, the first errors are usually the cause of the others
+    static final int MAX_EXCERPT_LINES = 2000;
+
+    static final List<String> DEFAULT_SIGNATURES = List.of(
+        // Maven
+        "^\\[ERROR\\]", "^\\[FATAL\\]", "BUILD FAILURE",
+        // Gradle
+        "^FAILURE: Build failed", "^\\* What went wrong:", "^> Task \\S+ FAILED", "BUILD FAILED",
+        // npm and yarn
+        "^npm ERR!", "^npm error", "^error Command failed",
+        // pytest and Python
+        "^E\\s{3}", "^FAILED \\S+::", "^=+ (?:FAILURES|ERRORS) =+", "^Traceback \\(most recent call last\\)",
+        // javac, kotlinc, gcc, tsc and go
+        "\\.java:\\d+: error:", "^e: ", ":\\d+:\\d+: (?:fatal )?error:", "error TS\\d+:", "^--- FAIL:", "^panic:",
+        // JUnit and generic failures
+        "Tests run: \\d+, Failures: [1-9]", "Tests run: \\d+, Failures: \\d+, Errors: [1-9]",
+        "^\\s*(?:Caused by: )?[\\w.$]+(?:Exception|Error)(?::|$)", "^ERROR\\b", "^FATAL\\b", "exit code [1-9]",
+        "returned non-zero exit status");
+
+    private final Pattern signatures;
+    private final int contextLines;
+
+    /**
+     * @param extraSignatures additional regular expressions, one per line; invalid ones are skipped
+     */
+    public ErrorExcerptExtractor(String extraSignatures, int contextLines) {
+        List<String> all = new ArrayList<>(DEFAULT_SIGNATURES);
+        all.addAll(parseSignatures(extraSignatures, new ArrayList<>()));
+        StringBuilder combined = new StringBuilder();
+        for (String signature : all) {
+            if (combined.length() > 0) {
+                combined.append('|');
+            }
+            combined.append("(?:").append(signature).append(')');
+        }
+        this.signatures = Pattern.compile(combined.toString());
+        this.contextLines = Math.max(0, contextLines);
+    }
+
+    /**
+     * Whether a line matches one of the error signatures
+     */
+    public boolean isErrorLine(String line) {
+        return signatures.matcher(LogCompactor.plainLine(line)).find();
+    }
+
+    /**
+     * The combined signature expression, differs whenever the configured signatures do
+     */
+    String getSignaturePattern() {
+        return signatures.pattern();
+    }
+
+    /**
+     * Excerpt in-memory content, reporting what was kept to the listener
+     *
+     * @param listener may be null
+     * @return the excerpt, or the content unchanged if no line matches
+     */
+    public String extract(String content, TaskListener listener) {
+        if (content == null || content.isEmpty()) {
+            return content;
+        }
+        StringBuilder excerpt = new StringBuilder();
+        Result result;
+        try {
+            result = extract(new StringReader(content), excerpt);
+        } catch (IOException e) {
+            // Cannot happen with in-memory reader and writer
+            return content;
+        }
+        if (result.getRegions() == 0) {
+            if (listener != null) {
+                listener.getLogger().println("No error lines found, analyzing the whole content");
+            }
+            return content;
+        }
+        if (listener != null) {
+            listener.getLogger().println(result.toString());
+        }
+        return excerpt.toString();
+    }
+
+    /**
+     * Write the error regions of a log, each preceded by a header with its first line number
+     */
+    public Result extract(Reader log, Appendable excerpt) throws IOException {
+        BufferedReader reader = log instanceof BufferedReader ? (BufferedReader) log : new BufferedReader(log);
+        Result result = new Result();
+        // Lines since the last written one, at most the window before the next match
+        Deque<String> before = new ArrayDeque<>();
+        int after = 0;
+        long lineNumber = 0;
+        long lastWritten = 0;
+        int skippedMatches = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            boolean match = isErrorLine(line);
+            if (match) {
+                result.matches++;
+            }
+            if (result.excerptLines >= MAX_EXCERPT_LINES) {
+                skippedMatches += match ? 1 : 0;
+                continue;
+            }
+            if (match) {
+                long first = lineNumber - before.size();
+                // Windows that overlap or touch the previous region extend it
+                if (result.regions == 0 || first > lastWritten + 1) {
+                    excerpt.append("--- line ").append(String.valueOf(first)).append(" ---\n");
+                    result.regions++;
+                }
+                for (String previous : before) {
+                    write(excerpt, previous, result);
+                }
+                before.clear();
+                write(excerpt, line, result);
+                lastWritten = lineNumber;
+                after = contextLines;
+            } else if (after > 0) {
+                write(excerpt, line, result);
+                lastWritten = lineNumber;
+                after--;
+            } else {
+                before.addLast(line);
+                if (before.size() > contextLines) {
+                    before.removeFirst();
+                }
+            }
+        }
+        if (skippedMatches > 0) {
+            excerpt.append("[excerpt cut at ").append(String.valueOf(MAX_EXCERPT_LINES)).append(" lines, ")
+                .append(String.valueOf(skippedMatches)).append(" later error lines omitted]\n");
+        }
+        result.inputLines = lineNumber;
+        return result;
+    }
+
+    private static void write(Appendable excerpt, String line, Result result) throws IOException {
+        excerpt.append(line).append('\n');
+        result.excerptLines++;
+    }
+
+    /**
+     * Parse extra signatures, one regular expression per line, skipping blank lines and comments starting with '#'
+     *
+     * @param errors receives a message for each invalid expression
+     */
+    public static List<String> parseSignatures(String text, List<String> errors) {
+        List<String> signatures = new ArrayList<>();
+        if (text == null) {
+            return signatures;
+        }
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                Pattern.compile(line);
+                signatures.add(line);
+            } catch (PatternSyntaxException e) {
+                errors.add("Line " + (i + 1) + ": " + e.getDescription());
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * What the excerpt kept
+     */
+    public static class Result {
+        private long inputLines;
+        private long excerptLines;
+        private int regions;
+        private int matches;
+
+        public long getInputLines() { return inputLines; }
+        public long getExcerptLines() { return excerptLines; }
+        public int getRegions() { return regions; }
+        public int getMatches() { return matches; }
+
+        @Override
+        public String toString() {
+            return "Extracted " + regions + " error " + (regions == 1 ? "region" : "regions") + " with " + matches
+                + " matching lines: " + excerptLines + " of " + inputLines + " lines kept";
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package io.jenkins.plugins.codex;
+
+import hudson.Extension;
+import hudson.model.InvisibleAction;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Fingerprints of the error lines of a build: each line matching an error signature is reduced to a template,
+ * with numbers, paths, hashes and the like masked, and hashed. Stored on a build as an invisible action, so the
+ * log of a baseline build is scanned once and later comparisons only look at the lines of the current build.
+ * Once a job compared error signatures, its successful builds record their fingerprints as they finish.
+ */
+public class FailureFingerprints extends InvisibleAction {
+
+    private static final Logger LOGGER = Logger.getLogger(FailureFingerprints.class.getName());
+
+    // Part of the stored signature hash, changes whenever lines are reduced to templates differently
+    private static final int FORMAT_VERSION = 2;
+
+    // Fingerprints kept per build, enough for noisy successful builds while keeping build.xml small
+    static final int MAX_FINGERPRINTS = 5000;
+    // New signatures listed, each once with its first line
+    static final int MAX_NEW_SIGNATURES = 200;
+    private static final int MAX_TEMPLATE_CHARS = 300;
+    private static final int MAX_LINE_CHARS = 1000;
+
+    private static final Pattern URL = Pattern.compile("\\b[A-Za-z][A-Za-z0-9+.-]*://\\S+");
+    private static final Pattern UUID = Pattern.compile(
+        "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern PATH = Pattern.compile("(?:[A-Za-z]:)?[\\w.@~+-]*(?:[\\\\/][\\w.@~+-]+)+[\\\\/]?");
+    private static final Pattern HEX = Pattern.compile("\\b0x[0-9a-fA-F]+\\b|\\b(?=[0-9a-f]*\\d)(?=[0-9a-f]*[a-f])[0-9a-f]{7,}\\b");
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:[.:,]\\d+)*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Sorted, for binary search
+    private final long[] fingerprints;
+    private final boolean truncated;
+    // Signatures the fingerprints were taken with, changed signatures need a new scan
+    private final int signatureHash;
+
+    FailureFingerprints(long[] fingerprints, boolean truncated, int signatureHash) {
+        this.fingerprints = fingerprints;
+        this.truncated = truncated;
+        this.signatureHash = signatureHash;
+    }
+
+    /**
+     * Fingerprints of a finished build, taken from its log on first use and saved with the build
+     */
+    public static FailureFingerprints of(Run<?, ?> run, ErrorExcerptExtractor signatures) throws IOException {
+        int signatureHash = signatureHash(signatures);
+        FailureFingerprints stored = run.getAction(FailureFingerprints.class);
+        if (stored != null && stored.signatureHash == signatureHash) {
+            return stored;
+        }
+        // The log is scanned without holding the run, concurrent first uses only scan twice
+        FailureFingerprints scanned;
+        try (Reader log = run.getLogReader()) {
+            scanned = scan(log, signatures);
+        }
+        // Run.save() locks the run too
+        synchronized (run) {
+            stored = run.getAction(FailureFingerprints.class);
+            if (stored != null && stored.signatureHash == signatureHash) {
+                return stored;
+            }
+            run.addOrReplaceAction(scanned);
+            run.save();
+        }
+        return scanned;
+    }
+
+    private static int signatureHash(ErrorExcerptExtractor signatures) {
+        return 31 * signatures.getSignaturePattern().hashCode() + FORMAT_VERSION;
+    }
+
+    /**
+     * The signatures configured for all comparisons
+     */
+    static ErrorExcerptExtractor configuredSignatures() {
+        CodexAnalysisPlugin globalConfig = CodexAnalysisPlugin.get();
+        return new ErrorExcerptExtractor(globalConfig != null ? globalConfig.getErrorSignatures() : null, 0);
+    }
+
+    /**
+     * Fingerprint the error lines of a log in one pass
+     */
+    static FailureFingerprints scan(Reader log, ErrorExcerptExtractor signatures) throws IOException {
+        BufferedReader reader = log instanceof BufferedReader ? (BufferedReader) log : new BufferedReader(log);
+        TreeSet<Long> unique = new TreeSet<>();
+        boolean truncated = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = LogCompactor.plainLine(line);
+            if (!signatures.isErrorLine(line)) {
+                continue;
+            }
+            if (unique.size() < MAX_FINGERPRINTS) {
+                unique.add(fingerprint(line));
+            } else {
+                truncated = true;
+            }
+        }
+        long[] sorted = new long[unique.size()];
+        int i = 0;
+        for (long fingerprint : unique) {
+            sorted[i++] = fingerprint;
+        }
+        return new FailureFingerprints(sorted, truncated, signatureHash(signatures));
+    }
+
+    /**
+     * A line reduced to its template: what stays the same when the same failure happens again
+     */
+    static String normalize(String line) {
+        String template = LogCompactor.plainLine(line);
+        template = URL.matcher(template).replaceAll("<url>");
+        template = UUID.matcher(template).replaceAll("<uuid>");
+        template = PATH.matcher(template).replaceAll("<path>");
+        template = HEX.matcher(template).replaceAll("<hash>");
+        template = NUMBER.matcher(template).replaceAll("<n>");
+        template = WHITESPACE.matcher(template).replaceAll(" ").trim();
+        return template.length() > MAX_TEMPLATE_CHARS ? template.substring(0, MAX_TEMPLATE_CHARS) : template;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the template of a line
+     */
+    static long fingerprint(String line) {
+        String template = normalize(line);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < template.length(); i++) {
+            hash ^= template.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public boolean contains(long fingerprint) {
+        return Arrays.binarySearch(fingerprints, fingerprint) >= 0;
+    }
+
+    public int size() {
+        return fingerprints.length;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Keep only the error signatures of the content that the baseline build did not have, each once with
+     * the number of its first line and how often it occurs
+     *
+     * @param listener may be null
+     * @return the new signatures, or the content unchanged and not reduced when it has none
+     */
+    public Comparison newSignatures(String content, ErrorExcerptExtractor signatures, String baselineName,
+                                    TaskListener listener) {
+        if (content == null || content.isEmpty()) {
+            return new Comparison(content, false);
+        }
+        Map<Long, NewSignature> found = new LinkedHashMap<>();
+        int known = 0;
+        int lineNumber = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new StringReader(content));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = LogCompactor.plainLine(line);
+                if (!signatures.isErrorLine(line)) {
+                    continue;
+                }
+                long fingerprint = fingerprint(line);
+                if (contains(fingerprint)) {
+                    known++;
+                    continue;
+                }
+                NewSignature signature = found.get(fingerprint);
+                if (signature != null) {
+                    signature.occurrences++;
+                } else if (found.size() < MAX_NEW_SIGNATURES) {
+                    found.put(fingerprint, new NewSignature(lineNumber,
+                        line.length() > MAX_LINE_CHARS ? line.substring(0, MAX_LINE_CHARS) + " [...]" : line));
+                }
+            }
+        } catch (IOException e) {
+            // Cannot happen with an in-memory reader
+            return new Comparison(content, false);
+        }
+        if (found.isEmpty()) {
+            if (listener != null) {
+                listener.getLogger().println("No error signatures new since " + baselineName
+                    + ", analyzing the whole content");
+            }
+            return new Comparison(content, false);
+        }
+        StringBuilder result = new StringBuilder("=== NEW ERROR SIGNATURES (not seen in ")
+            .append(baselineName).append(") ===\n");
+        for (NewSignature signature : found.values()) {
+            result.append("line ").append(signature.lineNumber).append(": ").append(signature.line);
+            if (signature.occurrences > 1) {
+                result.append("  [").append(signature.occurrences).append(" occurrences]");
+            }
+            result.append('\n');
+        }
+        if (known > 0) {
+            result.append("[").append(known).append(" error lines also seen in ").append(baselineName)
+                .append(" omitted]\n");
+        }
+        if (listener != null) {
+            listener.getLogger().println("Found " + found.size() + " error signatures new since " + baselineName
+                + ", " + known + " known error lines omitted");
+        }
+        return new Comparison(result.toString(), true);
+    }
+
+    /**
+     * Content compared with a baseline build
+     */
+    public static final class Comparison {
+        private final String text;
+        private final boolean reduced;
+
+        Comparison(String text, boolean reduced) {
+            this.text = text;
+            this.reduced = reduced;
+        }
+
+        /**
+         * The new signatures, or the unchanged content when it has none
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Whether the content was reduced to its new signatures
+         */
+        public boolean isReduced() {
+            return reduced;
+        }
+    }
+
+    /**
+     * Records the fingerprints of successful builds as they finish, for jobs whose previous successful build
+     * was compared with, so the next failure finds its baseline already scanned
+     */
+    @Extension
+    public static class SuccessfulBuildRecorder extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            Result result = run.getResult();
+            if (result == null || result.isWorseThan(Result.UNSTABLE)) {
+                return;
+            }
+            Run<?, ?> previous = run.getPreviousSuccessfulBuild();
+            if (previous == null || previous.getAction(FailureFingerprints.class) == null) {
+                // The job does not compare error signatures, do not scan its logs
+                return;
+            }
+            try {
+                of(run, configuredSignatures());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not record the error fingerprints of " + run.getFullDisplayName(), e);
+            }
+        }
+    }
+
+    private static final class NewSignature {
+        final int lineNumber;
+        final String line;
+        int occurrences = 1;
+
+        NewSignature(int lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package io.jenkins.plugins.codex;
+
+import hudson.model.TaskListener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks build logs before they are sent to the model, line by line and without holding the log in memory:
+ * strips ANSI escapes, Jenkins console notes and leading timestamps, keeps only the final state of lines
+ * redrawn with carriage returns, drops download and progress spam, collapses repeated lines, and replaces
+ * stack traces seen before by a reference to the exception line of their first occurrence.
+ * An instance remembers stack traces across calls, so several logs of one analysis share them.
+ */
+public class LogCompactor {
+
+    // Longer lines are cut, nothing useful to the model hides past this point of a single line
+    static final int MAX_LINE_CHARS = 4096;
+
+    // Upper bound for buffered frames of one stack trace and for remembered stack traces
+    private static final int MAX_FRAMES = 1000;
+    private static final int MAX_TRACES = 1000;
+    private static final int MAX_REFERENCE_CHARS = 200;
+
+    // Console notes (hidden "ha:..." payloads), CSI sequences, OSC sequences and other two-character escapes
+    private static final Pattern ANSI = Pattern.compile(
+        "\u001B\\[8mha:[^\u001B]*\u001B\\[0m|\u001B\\[[0-?]*[ -/]*[@-~]|\u001B\\][^\u0007\u001B]*(?:\u0007|\u001B\\\\)|\u001B[@-Z\\\\-_]");
+
+    // Only one separator is removed, the indentation of a stack frame after it must stay
+    private static final Pattern TIMESTAMP = Pattern.compile(
+        "^\\[?(?:\\d{4}-\\d{2}-\\d{2}[T ])?\\d{2}:\\d{2}:\\d{2}(?:[.,]\\d+)?(?:Z|[+-]\\d{2}:?\\d{2})?\\]?[ \\t]");
+
+    private static final Pattern PROGRESS = Pattern.compile(
+        // Maven transfer progress and download notices
+        "^(?:\\[INFO\\] )?(?:Progress \\(\\d+\\): |Download(?:ing|ed) from \\S+: )"
+            // Percentages and progress bars
+            + "|^\\s*\\d{1,3}(?:\\.\\d+)?%(?:\\s|$)|[=#>\\-]{5,}\\]?\\s*\\d{1,3}(?:\\.\\d+)?%|[\\u2588\\u2501\\u2593\\u2592\\u2591]{3,}"
+            // Transferred sizes, e.g. "12.3 MB / 45.6 MB" or "1024/2048 kB"
+            + "|\\d+(?:\\.\\d+)?\\s*[kKMG]i?B?\\s*/\\s*\\d+(?:\\.\\d+)?\\s*[kKMG]i?B"
+            // Gradle progress lines and docker layer pulls
+            + "|^<[=\\-]+> \\d+%|^[0-9a-f]{12}: (?:Downloading|Extracting|Waiting|Verifying Checksum|Download complete|Pulling fs layer)");
+
+    // Java, Python and JavaScript stack frames, and Java frames that lost their indentation
+    private static final Pattern FRAME = Pattern.compile(
+        "^\\s+(?:at \\S.*|\\.\\.\\. \\d+ (?:more|common frames omitted)|File \".+\", line \\d+.*)$"
+            + "|^at [\\w$.<>/-]+\\(.*\\)$");
+
+    // Digest of the frames of a stack trace to the line preceding its first occurrence
+    private final Map<String, String> seenTraces = new HashMap<>();
+    private final List<String> frames = new ArrayList<>();
+    private final Stats stats = new Stats();
+    private Appendable out;
+    private String lastLine;
+    private int repeats;
+    private int progressLines;
+    private String traceHeader;
+
+    /**
+     * Compact a log in memory, reporting the savings to the listener if any
+     *
+     * @param listener may be null
+     */
+    public static String compact(String log, TaskListener listener) {
+        if (log == null || log.isEmpty()) {
+            return log;
+        }
+        LogCompactor compactor = new LogCompactor();
+        StringBuilder compacted = new StringBuilder();
+        try {
+            compactor.compact(new StringReader(log), compacted);
+        } catch (IOException e) {
+            // Cannot happen with in-memory reader and writer
+            return log;
+        }
+        compactor.report(listener);
+        return compacted.toString();
+    }
+
+    /**
+     * Compact a log from a reader into an appendable
+     */
+    public Stats compact(Reader log, Appendable compacted) throws IOException {
+        out = compacted;
+        lastLine = null;
+        char[] buffer = new char[8192];
+        StringBuilder line = new StringBuilder();
+        long lineChars = 0;
+        int read;
+        while ((read = log.read(buffer)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (c == '\n') {
+                    processLine(line, lineChars);
+                    line.setLength(0);
+                    lineChars = 0;
+                } else {
+                    lineChars++;
+                    // Keep some extra characters, escapes and carriage returns are removed afterwards
+                    if (line.length() < MAX_LINE_CHARS * 2) {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        if (lineChars > 0) {
+            processLine(line, lineChars);
+        }
+        flushAll();
+        return stats;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Log the savings to the listener if anything was removed
+     */
+    public void report(TaskListener listener) {
+        if (listener != null && stats.getOutputChars() < stats.getInputChars()) {
+            listener.getLogger().println(stats.toString());
+        }
+    }
+
+    private void processLine(StringBuilder rawLine, long rawChars) throws IOException {
+        stats.inputLines++;
+        stats.inputChars += rawChars + 1;
+
+        String line = rawLine.toString();
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        // Lines redrawn with carriage returns: only the final state is visible
+        int carriageReturn = line.lastIndexOf('\r');
+        if (carriageReturn >= 0) {
+            line = line.substring(carriageReturn + 1);
+        }
+        line = plainLine(line).stripTrailing();
+        if (line.length() > MAX_LINE_CHARS || rawChars > MAX_LINE_CHARS * 2) {
+            line = line.substring(0, Math.min(line.length(), MAX_LINE_CHARS)) + " [... line of " + rawChars + " characters cut]";
+        }
+
+        if (PROGRESS.matcher(line).find()) {
+            flushRepeats();
+            flushFrames();
+            progressLines++;
+            return;
+        }
+        if (FRAME.matcher(line).matches()) {
+            flushRepeats();
+            flushProgress();
+            if (frames.isEmpty()) {
+                traceHeader = lastLine;
+            }
+            frames.add(line);
+            if (frames.size() >= MAX_FRAMES) {
+                flushFrames();
+            }
+            return;
+        }
+        flushFrames();
+        flushProgress();
+        if (line.equals(lastLine)) {
+            repeats++;
+            return;
+        }
+        flushRepeats();
+        emit(line);
+        lastLine = line;
+    }
+
+    /**
+     * A line as it reads on the console: without escapes, console notes and a leading timestamp
+     */
+    static String plainLine(String line) {
+        if (line.indexOf('\u001B') >= 0) {
+            line = ANSI.matcher(line).replaceAll("");
+        }
+        return TIMESTAMP.matcher(line).replaceFirst("");
+    }
+
+    private void flushAll() throws IOException {
+        flushFrames();
+        flushProgress();
+        flushRepeats();
+    }
+
+    private void flushRepeats() throws IOException {
+        if (repeats > 0) {
+            emit("[previous line repeated " + times(repeats) + "]");
+            stats.collapsedLines += repeats;
+            repeats = 0;
+        }
+    }
+
+    private void flushProgress() throws IOException {
+        if (progressLines > 0) {
+            emit("[" + progressLines + " progress " + (progressLines == 1 ? "line" : "lines") + " removed]");
+            stats.progressLines += progressLines;
+            progressLines = 0;
+            lastLine = null;
+        }
+    }
+
+    private void flushFrames() throws IOException {
+        if (frames.isEmpty()) {
+            return;
+        }
+        String key = digest(frames);
+        String header = traceHeader != null ? traceHeader.trim() : "";
+        if (header.length() > MAX_REFERENCE_CHARS) {
+            header = header.substring(0, MAX_REFERENCE_CHARS) + "...";
+        }
+        String firstHeader = seenTraces.get(key);
+        if (firstHeader != null) {
+            // Refer to the exception line of the first occurrence, line numbers change with compaction
+            String reference = firstHeader.isEmpty() || firstHeader.equals(header)
+                ? "as in its first occurrence" : "as in the stack trace of \"" + firstHeader + "\"";
+            emit("\t[" + frames.size() + " stack frames " + reference + " omitted]");
+            stats.collapsedTraces++;
+        } else {
+            if (seenTraces.size() < MAX_TRACES) {
+                seenTraces.put(key, header);
+            }
+            String previous = null;
+            int frameRepeats = 0;
+            for (String frame : frames) {
+                if (frame.equals(previous)) {
+                    frameRepeats++;
+                    continue;
+                }
+                if (frameRepeats > 0) {
+                    emit("\t[previous frame repeated " + times(frameRepeats) + "]");
+                    stats.collapsedLines += frameRepeats;
+                    frameRepeats = 0;
+                }
+                emit(frame);
+                previous = frame;
+            }
+            if (frameRepeats > 0) {
+                emit("\t[previous frame repeated " + times(frameRepeats) + "]");
+                stats.collapsedLines += frameRepeats;
+            }
+        }
+        frames.clear();
+        traceHeader = null;
+        lastLine = null;
+    }
+
+    private void emit(String line) throws IOException {
+        out.append(line).append('\n');
+        stats.outputLines++;
+        stats.outputChars += line.length() + 1;
+    }
+
+    private static String times(int count) {
+        return count + " more " + (count == 1 ? "time" : "times");
+    }
+
+    private static String digest(List<String> lines) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String line : lines) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            return String.join("\n", lines);
+        }
+    }
+
+    /**
+     * What compaction removed
+     */
+    public static class Stats {
+        private long inputLines;
+        private long inputChars;
+        private long outputLines;
+        private long outputChars;
+        private long progressLines;
+        private long collapsedLines;
+        private long collapsedTraces;
+
+        public long getInputLines() { return inputLines; }
+        public long getInputChars() { return inputChars; }
+        public long getOutputLines() { return outputLines; }
+        public long getOutputChars() { return outputChars; }
+        public long getProgressLines() { return progressLines; }
+        public long getCollapsedLines() { return collapsedLines; }
+        public long getCollapsedTraces() { return collapsedTraces; }
+
+        /**
+         * @return the compacted size relative to the original size, between 0 and 1
+         */
+        public double getRatio() {
+            return inputChars > 0 ? (double) outputChars / inputChars : 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Compacted log from %d to %d characters (%.0f%% smaller): %d progress lines removed, "
+                    + "%d repeated lines and %d duplicate stack traces collapsed",
+                inputChars, outputChars, (1 - getRatio()) * 100, progressLines, collapsedLines, collapsedTraces);
+        }
+    }
+}
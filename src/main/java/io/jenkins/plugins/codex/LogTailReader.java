@@ -0,0 +1,42 @@
+package io.jenkins.plugins.codex;
+
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Run;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the last lines of a build log starting near its end, so the cost depends on the size of the tail and
+ * not of the log. Console notes are removed from the returned lines.
+ */
+public final class LogTailReader {
+
+    public static final int DEFAULT_MAX_LINES = 200;
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private LogTailReader() {}
+
+    /**
+     * Last lines of the log of a run
+     *
+     * @return at most maxLines lines from at most maxBytes bytes; a line cut by the byte limit is dropped
+     */
+    public static List<String> tail(Run<?, ?> run, int maxLines, int maxBytes) throws IOException {
+        if (maxLines <= 0 || maxBytes <= 0) {
+            return new ArrayList<>();
+        }
+        // Through the log storage of the run, which need not be a local file
+        AnnotatedLargeText<?> text = run.getLogText();
+        long start = Math.max(0, text.length() - maxBytes);
+        // One byte early, so that a line starting right at the limit is known to be complete
+        long readFrom = Math.max(0, start - 1);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // Console notes are stripped while writing
+        text.writeLogTo(readFrom, output);
+        return StageLogExtractor.toLines(output.toString(StandardCharsets.UTF_8), readFrom > 0, maxLines);
+    }
+}
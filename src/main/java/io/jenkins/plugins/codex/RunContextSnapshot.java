@@ -0,0 +1,61 @@
+package io.jenkins.plugins.codex;
+
+import hudson.model.Run;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * What the analysis contexts of one build share, computed once per build: run metadata and the filtered
+ * environment. Kept in memory only, next to the run rather than on it, so nothing is written to the
+ * build record; the snapshot is dropped with the run and rebuilt after a restart.
+ */
+public class RunContextSnapshot {
+
+    private static final Map<Run<?, ?>, RunContextSnapshot> SNAPSHOTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private String jobFullName;
+    private final Map<String, Boolean> sensitiveKeys = new HashMap<>();
+    // Last environment filtered and its visible variables; steps of a build mostly see the same environment
+    private Map<String, String> lastEnvironment;
+    private List<Map.Entry<String, String>> lastVisible;
+
+    /**
+     * The snapshot of a run, created on first use
+     */
+    public static RunContextSnapshot of(Run<?, ?> run) {
+        return SNAPSHOTS.computeIfAbsent(run, r -> new RunContextSnapshot());
+    }
+
+    public synchronized String getJobFullName(Run<?, ?> run) {
+        if (jobFullName == null) {
+            jobFullName = run.getParent().getFullName();
+        }
+        return jobFullName;
+    }
+
+    /**
+     * Non-sensitive variables of an environment, in its iteration order. The result is reused while the
+     * environment stays equal, e.g. for every step outside withEnv; sensitivity is decided once per variable
+     * name and build.
+     */
+    public synchronized List<Map.Entry<String, String>> getVisibleEnvironment(Map<String, String> environment) {
+        if (lastVisible != null && lastEnvironment.equals(environment)) {
+            return lastVisible;
+        }
+        List<Map.Entry<String, String>> visible = new ArrayList<>();
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            if (!sensitiveKeys.computeIfAbsent(entry.getKey(), AnalysisContext::isSensitiveVariable)) {
+                visible.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), String.valueOf(entry.getValue())));
+            }
+        }
+        lastEnvironment = new HashMap<>(environment);
+        lastVisible = Collections.unmodifiableList(visible);
+        return lastVisible;
+    }
+}
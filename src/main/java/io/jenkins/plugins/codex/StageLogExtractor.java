@@ -0,0 +1,197 @@
+package io.jenkins.plugins.codex;
+
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.LogAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Extracts the output of a single stage of a Pipeline run, from the logs of the step nodes inside the stage
+ * in the flow graph. The stage to nodes index of a run is cached, so looking up several stages walks the graph once.
+ */
+public final class StageLogExtractor {
+
+    // Runs whose index is kept
+    private static final int MAX_CACHED_RUNS = 32;
+
+    private static final Map<String, Index> INDEXES = Collections.synchronizedMap(
+        new LinkedHashMap<String, Index>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Index> eldest) {
+                return size() > MAX_CACHED_RUNS;
+            }
+        });
+
+    private StageLogExtractor() {}
+
+    /**
+     * Last lines of the output of a stage, nested stages included
+     *
+     * @return at most maxLines lines from at most maxBytes bytes of output,
+     *         or null if the run is not a Pipeline run or has no stage with that name
+     */
+    public static List<String> getStageLog(Run<?, ?> run, String stageName, int maxLines, int maxBytes)
+            throws IOException {
+        if (!(run instanceof WorkflowRun) || stageName == null) {
+            return null;
+        }
+        FlowExecution execution = ((WorkflowRun) run).getExecution();
+        if (execution == null) {
+            return null;
+        }
+        return getStageLog(run.getExternalizableId(), execution, stageName, maxLines, maxBytes);
+    }
+
+    static List<String> getStageLog(String runId, FlowExecution execution, String stageName, int maxLines,
+                                    int maxBytes) throws IOException {
+        List<String> nodeIds = getIndex(runId, execution).stages.get(stageName);
+        if (nodeIds == null) {
+            return null;
+        }
+
+        List<AnnotatedLargeText<?>> logs = new ArrayList<>();
+        long[] lengths = new long[nodeIds.size()];
+        for (String id : nodeIds) {
+            FlowNode node = execution.getNode(id);
+            LogAction logAction = node != null ? node.getAction(LogAction.class) : null;
+            AnnotatedLargeText<?> text = logAction != null ? logAction.getLogText() : null;
+            lengths[logs.size()] = text != null ? text.length() : 0;
+            logs.add(text);
+        }
+
+        // Only the bytes of the tail are read, from the last nodes of the stage
+        long[] offsets = tailOffsets(lengths, maxBytes);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean partialFirstLine = false;
+        for (int i = 0; i < logs.size(); i++) {
+            if (offsets[i] < 0) {
+                continue;
+            }
+            if (output.size() == 0 && offsets[i] > 0) {
+                partialFirstLine = true;
+            }
+            // Console notes are stripped while writing
+            logs.get(i).writeLogTo(offsets[i], output);
+        }
+        return toLines(output.toString(StandardCharsets.UTF_8), partialFirstLine, maxLines);
+    }
+
+    /**
+     * Start offsets reading the last maxBytes bytes of consecutive logs, -1 for logs not to read at all
+     */
+    static long[] tailOffsets(long[] lengths, long maxBytes) {
+        long[] offsets = new long[lengths.length];
+        long remaining = maxBytes;
+        for (int i = lengths.length - 1; i >= 0; i--) {
+            if (remaining <= 0 || lengths[i] <= 0) {
+                offsets[i] = -1;
+                continue;
+            }
+            offsets[i] = Math.max(0, lengths[i] - remaining);
+            remaining -= lengths[i] - offsets[i];
+        }
+        return offsets;
+    }
+
+    /**
+     * Split output into its last lines, dropping a first line that was cut by the byte limit
+     */
+    static List<String> toLines(String output, boolean partialFirstLine, int maxLines) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        if (partialFirstLine) {
+            int newline = output.indexOf('\n');
+            start = newline >= 0 ? newline + 1 : output.length();
+        }
+        while (start < output.length()) {
+            int newline = output.indexOf('\n', start);
+            int end = newline >= 0 ? newline : output.length();
+            lines.add(output.substring(start, end > start && output.charAt(end - 1) == '\r' ? end - 1 : end));
+            start = end + 1;
+        }
+        return lines.size() > maxLines ? new ArrayList<>(lines.subList(lines.size() - maxLines, lines.size())) : lines;
+    }
+
+    private static Index getIndex(String runId, FlowExecution execution) {
+        String heads = headIds(execution);
+        Index index = INDEXES.get(runId);
+        // A running build grows new nodes, its index is only valid for the heads it was built from
+        if (index == null || !index.heads.equals(heads)) {
+            index = buildIndex(execution, heads);
+            INDEXES.put(runId, index);
+        }
+        return index;
+    }
+
+    private static Index buildIndex(FlowExecution execution, String heads) {
+        Map<String, TreeSet<String>> stages = new HashMap<>();
+        Comparator<String> byId = Comparator.comparingLong(StageLogExtractor::numericId).thenComparing(id -> id);
+        for (FlowNode node : new DepthFirstScanner().allNodes(execution)) {
+            if (node.getAction(LogAction.class) == null) {
+                continue;
+            }
+            for (BlockStartNode block : node.iterateEnclosingBlocks()) {
+                if (isStageStart(block)) {
+                    stages.computeIfAbsent(block.getDisplayName(), name -> new TreeSet<>(byId)).add(node.getId());
+                }
+            }
+        }
+        Map<String, List<String>> index = new HashMap<>();
+        for (Map.Entry<String, TreeSet<String>> stage : stages.entrySet()) {
+            index.put(stage.getKey(), new ArrayList<>(stage.getValue()));
+        }
+        return new Index(heads, index);
+    }
+
+    /**
+     * The body of a stage is labelled with the stage name, parallel branches are labelled too but also named threads
+     */
+    private static boolean isStageStart(BlockStartNode block) {
+        return block.getAction(LabelAction.class) != null && block.getAction(ThreadNameAction.class) == null;
+    }
+
+    private static String headIds(FlowExecution execution) {
+        StringBuilder ids = new StringBuilder();
+        for (FlowNode head : execution.getCurrentHeads()) {
+            ids.append(head.getId()).append(',');
+        }
+        return ids.toString();
+    }
+
+    // Node ids are sequence numbers, so they sort in execution order
+    private static long numericId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Index {
+        private final String heads;
+        private final Map<String, List<String>> stages;
+
+        Index(String heads, Map<String, List<String>> stages) {
+            this.heads = heads;
+            this.stages = stages;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package io.jenkins.plugins.codex;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summarizes JUnit and TestNG XML reports on the agent, so only failures and errors travel to the controller.
+ * Reports are read with a streaming StAX parser, never as a DOM, and only the failing test cases are kept,
+ * with shortened messages and stack traces.
+ */
+public class TestReportSummarizer implements FilePath.FileCallable<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    // Failing tests described in full, further ones are only counted
+    static final int MAX_FAILURES = 50;
+    static final int MAX_STACK_LINES = 12;
+    static final int MAX_MESSAGE_CHARS = 500;
+    // Text kept while reading one message or stack trace
+    private static final int MAX_TEXT_CHARS = 16 * 1024;
+
+    private final String includes;
+
+    /**
+     * @param includes Ant-style pattern of report files relative to the workspace, e.g. **&#47;surefire-reports/*.xml
+     */
+    public TestReportSummarizer(String includes) {
+        this.includes = includes;
+    }
+
+    @Override
+    public String invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        String[] files = Util.createFileSet(workspace, includes).getDirectoryScanner().getIncludedFiles();
+        Summary summary = new Summary();
+        for (String file : files) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(new File(workspace, file).toPath()))) {
+                summary.parse(in);
+            }
+        }
+        return summary.render();
+    }
+
+    @Override
+    public void checkRoles(org.jenkinsci.remoting.RoleChecker checker) throws SecurityException {
+        // Accept default; no special roles required
+    }
+
+    /**
+     * Counts and failing tests of a set of reports
+     */
+    static class Summary {
+        private int reports;
+        private int unreadable;
+        private long tests;
+        private long failures;
+        private long errors;
+        private long skipped;
+        private final List<String> details = new ArrayList<>();
+
+        /**
+         * Add a JUnit (testsuite/testcase) or TestNG (test-method) report
+         */
+        void parse(InputStream in) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            // Reports come from the build, do not resolve anything they reference
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            try {
+                XMLStreamReader reader = factory.createXMLStreamReader(in);
+                try {
+                    parse(reader);
+                    reports++;
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                // Reports still being written or not test reports at all
+                unreadable++;
+            }
+        }
+
+        private void parse(XMLStreamReader reader) throws XMLStreamException {
+            String className = null;
+            String testName = null;
+            String kind = null;
+            String message = null;
+            String trace = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = reader.getLocalName();
+                    switch (element) {
+                        case "testcase":
+                            testName = qualifiedName(reader.getAttributeValue(null, "classname"),
+                                reader.getAttributeValue(null, "name"));
+                            tests++;
+                            break;
+                        case "failure":
+                        case "error":
+                            // Only the first problem of a test case counts, reruns may add more
+                            if (testName != null && kind == null) {
+                                kind = element;
+                                message = reader.getAttributeValue(null, "message");
+                                trace = readText(reader);
+                            }
+                            break;
+                        case "skipped":
+                            if (testName != null && kind == null) {
+                                kind = element;
+                            }
+                            break;
+                        case "class":
+                            // TestNG lists methods under their class
+                            className = reader.getAttributeValue(null, "name");
+                            break;
+                        case "test-method":
+                            if (!"true".equals(reader.getAttributeValue(null, "is-config"))) {
+                                testName = qualifiedName(className, reader.getAttributeValue(null, "name"));
+                                String status = reader.getAttributeValue(null, "status");
+                                kind = "FAIL".equals(status) ? "failure" : "SKIP".equals(status) ? "skipped" : null;
+                                tests++;
+                            }
+                            break;
+                        case "message":
+                            if (testName != null && kind != null) {
+                                message = readText(reader);
+                            }
+                            break;
+                        case "full-stacktrace":
+                            if (testName != null && kind != null) {
+                                trace = readText(reader);
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && testName != null) {
+                    String element = reader.getLocalName();
+                    if ("testcase".equals(element) || "test-method".equals(element)) {
+                        record(testName, kind, message, trace);
+                        testName = null;
+                        kind = null;
+                        message = null;
+                        trace = null;
+                    }
+                }
+            }
+        }
+
+        private static String qualifiedName(String className, String methodName) {
+            return className != null && !className.isEmpty() ? className + "." + methodName : methodName;
+        }
+
+        /**
+         * Text of the current element, read up to its end and cut at {@link #MAX_TEXT_CHARS}
+         */
+        private static String readText(XMLStreamReader reader) throws XMLStreamException {
+            StringBuilder text = new StringBuilder();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (text.length() < MAX_TEXT_CHARS) {
+                        text.append(reader.getText(), 0, Math.min(reader.getTextLength(), MAX_TEXT_CHARS - text.length()));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                }
+            }
+            return text.toString();
+        }
+
+        private void record(String testName, String kind, String message, String trace) {
+            if (kind == null) {
+                return;
+            }
+            if ("skipped".equals(kind)) {
+                skipped++;
+                return;
+            }
+            if ("error".equals(kind)) {
+                errors++;
+            } else {
+                failures++;
+            }
+            if (details.size() >= MAX_FAILURES) {
+                return;
+            }
+            StringBuilder detail = new StringBuilder();
+            detail.append(kind.toUpperCase()).append(": ").append(testName).append('\n');
+            if (message != null && !message.trim().isEmpty()) {
+                detail.append("  Message: ").append(truncate(message.trim(), MAX_MESSAGE_CHARS)).append('\n');
+            }
+            if (trace != null) {
+                String[] lines = trace.trim().split("\\r?\\n");
+                int shown = 0;
+                for (String line : lines) {
+                    if (line.trim().isEmpty() || shown >= MAX_STACK_LINES) {
+                        continue;
+                    }
+                    detail.append("  ").append(truncate(line.trim(), MAX_MESSAGE_CHARS)).append('\n');
+                    shown++;
+                }
+                if (lines.length > shown && shown == MAX_STACK_LINES) {
+                    detail.append("  ... ").append(lines.length - shown).append(" more lines\n");
+                }
+            }
+            details.add(detail.toString());
+        }
+
+        private static String truncate(String text, int maxChars) {
+            return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+        }
+
+        String render() {
+            StringBuilder summary = new StringBuilder("=== TEST REPORT SUMMARY ===\n");
+            summary.append("Reports: ").append(reports);
+            if (unreadable > 0) {
+                summary.append(" (").append(unreadable).append(" unreadable)");
+            }
+            summary.append(", Tests: ").append(tests)
+                .append(", Failures: ").append(failures)
+                .append(", Errors: ").append(errors)
+                .append(", Skipped: ").append(skipped).append('\n');
+            for (String detail : details) {
+                summary.append('\n').append(detail);
+            }
+            long notShown = failures + errors - details.size();
+            if (notShown > 0) {
+                summary.append("\n... ").append(notShown).append(" more failing tests not shown\n");
+            }
+            return summary.toString();
+        }
+    }
+}
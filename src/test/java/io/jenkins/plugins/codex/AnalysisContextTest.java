@@ -0,0 +1,141 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AnalysisContextTest {
+
+    private static AnalysisContext newContext(String content) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("BRANCH_NAME", "main");
+        environment.put("API_TOKEN", "hidden");
+        return new AnalysisContext(null, null, "Build", "codexAnalysis", content, environment,
+            Arrays.asList("first log line", "second log line"), "/ws");
+    }
+
+    @Test
+    public void testWritesSectionsInOrder() {
+        String context = newContext("compiler output").buildFocusedContext("build_analysis");
+
+        assertTrue(context.startsWith("=== BUILD ANALYSIS ===\n"));
+        assertTrue(context.contains("Stage: Build\nStep: codexAnalysis\nWorkspace: /ws\n"));
+        assertTrue(context.contains("BRANCH_NAME=main\n"));
+        assertFalse(context.contains("API_TOKEN"));
+        assertTrue(context.indexOf("=== RECENT LOGS ===\nfirst log line\nsecond log line\n")
+            < context.indexOf("=== CONTENT TO ANALYZE ===\ncompiler output\n"));
+    }
+
+    @Test
+    public void testWriterAndStringRenderingMatch() throws IOException {
+        AnalysisContext context = newContext("compiler output");
+        StringWriter writer = new StringWriter();
+
+        context.writeFocusedContext("general", writer);
+
+        assertEquals(context.buildFocusedContext("general"), writer.toString());
+    }
+
+    @Test
+    public void testBlankContentIsOmitted() {
+        assertFalse(newContext(" \n ").buildContextString().contains("CONTENT TO ANALYZE"));
+    }
+
+    @Test
+    public void testContentIsUnchangedWithoutCompaction() {
+        StringBuilder content = new StringBuilder("2024-05-01 12:00:00 key: value\n");
+        for (int i = 0; i < 3; i++) {
+            content.append("    return x;\n");
+        }
+        for (int i = 0; i < LogCompactor.MAX_LINE_CHARS + 10; i++) {
+            content.append('a');
+        }
+        content.append('\n');
+
+        assertTrue(newContext(content.toString()).buildContextString().endsWith(
+            "=== CONTENT TO ANALYZE ===\n" + content + "\n"));
+    }
+
+    @Test
+    public void testCompactsLogsAndContent() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            content.append("\u001B[33mWARNING\u001B[0m: retrying\n");
+        }
+        AnalysisContext context = newContext(content.toString());
+        context.setCompactLogs(true);
+
+        assertTrue(context.buildContextString().endsWith(
+            "=== CONTENT TO ANALYZE ===\nWARNING: retrying\n[previous line repeated 9 more times]\n"));
+    }
+
+    @Test
+    public void testBudgetThatFitsRendersLikeNoBudget() {
+        AnalysisContext unlimited = newContext("compiler output\nsecond line");
+        AnalysisContext budgeted = newContext("compiler output\nsecond line");
+        budgeted.setTokenBudget(ContextBudget.DEFAULT_CONTEXT_TOKEN_BUDGET);
+
+        assertEquals(unlimited.buildContextString(), budgeted.buildContextString());
+    }
+
+    @Test
+    public void testBudgetDropsEnvironmentBeforeLogsBeforeContent() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("BRANCH_NAME", "main");
+        environment.put("PATH", "/usr/local/bin:/usr/bin:/bin:/opt/tools/bin:/opt/other/bin:/home/jenkins/bin");
+        StringBuilder logs = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            logs.append("log line ").append(i).append('\n');
+        }
+        AnalysisContext context = new AnalysisContext(null, null, null, null, "short content", environment,
+            Arrays.asList(logs.toString().split("\n")), null);
+        // 1024 reserved characters plus about 500 for content and logs
+        context.setTokenBudget((1024 + 500) / 4);
+
+        String rendered = context.buildContextString();
+
+        assertTrue(rendered.endsWith("=== CONTENT TO ANALYZE ===\nshort content\n"));
+        assertTrue(rendered.contains("log line 100\n"));
+        assertFalse(rendered.contains("log line 1\n"));
+        assertFalse(rendered.contains("PATH="));
+        assertFalse(rendered.contains("ENVIRONMENT VARIABLES"));
+    }
+
+    @Test
+    public void testBudgetKeepsShortVariablesAndContentEnds() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("PATH", "/usr/local/bin:/usr/bin:/bin:/opt/tools/bin:/opt/other/bin:/home/jenkins/bin");
+        environment.put("BRANCH_NAME", "main");
+        StringBuilder content = new StringBuilder("FIRST LINE\n");
+        for (int i = 0; i < 1000; i++) {
+            content.append("middle\n");
+        }
+        content.append("LAST LINE");
+        AnalysisContext context = new AnalysisContext(null, null, null, null, content.toString(), environment,
+            null, null);
+        context.setTokenBudget((1024 + 1000) / 4);
+
+        String rendered = context.buildContextString();
+
+        assertTrue(rendered.contains("FIRST LINE"));
+        assertTrue(rendered.contains("LAST LINE"));
+        assertTrue(rendered.contains("characters omitted to fit the context budget"));
+        assertFalse(rendered.contains("BRANCH_NAME"));
+
+        // With room to spare, short variables are kept and long ones dropped
+        context = new AnalysisContext(null, null, null, null, "content", environment, null, null);
+        context.setTokenBudget((1024 + 100) / 4);
+        rendered = context.buildContextString();
+        assertTrue(rendered.contains("BRANCH_NAME=main"));
+        assertFalse(rendered.contains("PATH="));
+    }
+}
@@ -0,0 +1,134 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BoundedOutputCaptureTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testCapturesOutputBelowLimit() throws Exception {
+        BoundedOutputCapture capture = new BoundedOutputCapture(1024, null, null, null);
+        capture.write("line one\nline two\n".getBytes(StandardCharsets.UTF_8));
+        capture.write("no newline".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals("line one\nline two\nno newline", capture.getText());
+        assertFalse(capture.isTruncated());
+    }
+
+    @Test
+    public void testOverflowIsSticky() throws Exception {
+        File spillFile = new File(tempFolder.getRoot(), "codex/output-2.stdout.log");
+        BoundedOutputCapture capture = new BoundedOutputCapture(20, spillFile, null, null);
+        capture.write("first\n".getBytes(StandardCharsets.UTF_8));
+        capture.write("a line much longer than the limit\n".getBytes(StandardCharsets.UTF_8));
+        capture.write("short\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals(6, capture.getCapturedBytes());
+        assertEquals(40, capture.getOverflowBytes());
+        assertTrue(capture.getText().startsWith("first\n[... 40 more bytes of output not captured"));
+        assertFalse(capture.getText().contains("short"));
+        assertEquals("a line much longer than the limit\nshort\n",
+            new String(Files.readAllBytes(spillFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLastLineIsKeptAfterOverflow() throws Exception {
+        BoundedOutputCapture capture = new BoundedOutputCapture(10, null, null, null);
+        capture.write("progress 1\nprogress 2\nError: 401 Unauthorized\n\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertTrue(capture.isTruncated());
+        assertEquals("Error: 401 Unauthorized", capture.getLastLine());
+    }
+
+    @Test
+    public void testSpillsOverflowToFile() throws Exception {
+        File spillFile = new File(tempFolder.getRoot(), "codex/output-1.stdout.log");
+        BoundedOutputCapture capture = new BoundedOutputCapture(10, spillFile, null, null);
+        capture.write("12345\n".getBytes(StandardCharsets.UTF_8));
+        capture.write("abcdefgh\n".getBytes(StandardCharsets.UTF_8));
+        capture.write("tail\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertTrue(capture.isTruncated());
+        assertEquals(6, capture.getCapturedBytes());
+        assertEquals(14, capture.getOverflowBytes());
+        assertTrue(capture.getText().startsWith("12345\n[... 14 more bytes"));
+        assertTrue(capture.getText().contains(spillFile.getAbsolutePath()));
+        assertEquals("abcdefgh\ntail\n", new String(Files.readAllBytes(spillFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOverflowWithoutSpillFileIsDropped() throws Exception {
+        BoundedOutputCapture capture = new BoundedOutputCapture(4, null, null, null);
+        capture.write("abc\ndef\n".getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals("abc\n[... 4 more bytes of output not captured]", capture.getText());
+    }
+
+    @Test
+    public void testDecodesMultiByteCharactersSplitAcrossWrites() throws Exception {
+        byte[] bytes = "h\u00e9llo w\u00f6rld \u2713\n".getBytes(StandardCharsets.UTF_8);
+        BoundedOutputCapture capture = new BoundedOutputCapture(1024, null, null, null);
+        for (byte b : bytes) {
+            capture.write(b);
+        }
+        capture.close();
+
+        assertEquals("h\u00e9llo w\u00f6rld \u2713\n", capture.getText());
+    }
+
+    @Test
+    public void testLongLinesKeepCharactersIntact() throws Exception {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longLine.append('\u00e9');
+        }
+        BoundedOutputCapture capture = new BoundedOutputCapture(1024 * 1024, null, null, null);
+        capture.write(longLine.toString().getBytes(StandardCharsets.UTF_8));
+        capture.close();
+
+        assertEquals(longLine.toString(), capture.getText());
+    }
+
+    @Test
+    public void testForwardsLinesAsTheyArrive() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream logStream = new PrintStream(log, true, "UTF-8");
+        BoundedOutputCapture capture = new BoundedOutputCapture(1024, null, logStream, "[codex] ");
+
+        capture.write("step 1\nstep ".getBytes(StandardCharsets.UTF_8));
+        assertEquals("[codex] step 1\n", log.toString("UTF-8"));
+
+        capture.write("2\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals("[codex] step 1\n[codex] step 2\n", log.toString("UTF-8"));
+    }
+
+    @Test
+    public void testUtf8Boundary() {
+        byte[] euro = "\u20ac".getBytes(StandardCharsets.UTF_8);
+        byte[] partial = {'a', euro[0], euro[1]};
+        assertEquals(1, BoundedOutputCapture.utf8Boundary(partial));
+        byte[] complete = {'a', euro[0], euro[1], euro[2]};
+        assertEquals(4, BoundedOutputCapture.utf8Boundary(complete));
+        assertEquals(2, BoundedOutputCapture.utf8Boundary(new byte[] {'a', 'b'}));
+    }
+}
@@ -0,0 +1,157 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChangeSetSummaryTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static ChangeSetSummary.Commit commit(String id, String message, String... paths) {
+        Map<String, String> edits = new LinkedHashMap<>();
+        for (String path : paths) {
+            edits.put(path, "M");
+        }
+        return new ChangeSetSummary.Commit(id, "Jane Doe", message, edits);
+    }
+
+    @Test
+    public void testDescribeListsCommitsAndPaths() {
+        ChangeSetSummary summary = ChangeSetSummary.of(Arrays.asList(
+            commit("0123456789abcdef0123", "Fix parser", "src/main/java/Parser.java"),
+            commit(null, "Update docs", "README.md", "docs/usage.md")));
+
+        assertEquals("0123456789ab Jane Doe: Fix parser\n"
+            + "    M src/main/java/Parser.java\n"
+            + "- Jane Doe: Update docs\n"
+            + "    M README.md\n"
+            + "    M docs/usage.md\n", summary.describe());
+    }
+
+    @Test
+    public void testDescribeIsCapped() {
+        List<ChangeSetSummary.Commit> commits = new ArrayList<>();
+        String[] paths = new String[ChangeSetSummary.MAX_PATHS_PER_COMMIT + 3];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "src/File" + i + ".java";
+        }
+        for (int i = 0; i < ChangeSetSummary.MAX_COMMITS + 5; i++) {
+            commits.add(commit("abcdef" + i, "Change " + i, paths));
+        }
+
+        String description = ChangeSetSummary.of(commits).describe();
+
+        assertTrue(description.startsWith("[5 older commits omitted]\n"));
+        assertFalse(description.contains("Change 4\n"));
+        assertTrue(description.contains("Change " + (ChangeSetSummary.MAX_COMMITS + 4) + "\n"));
+        assertTrue(description.contains("    [3 more paths]\n"));
+        assertTrue(description.length() <= ChangeSetSummary.MAX_SUMMARY_CHARS + 100);
+    }
+
+    @Test
+    public void testImplicatedPaths() {
+        ChangeSetSummary summary = ChangeSetSummary.of(Arrays.asList(
+            commit("abcdef1", "Change", "src/main/java/com/example/Parser.java", "pom.xml", "a.c", "docs/usage.md")));
+
+        Set<String> implicated = summary.implicatedPaths(
+            "[ERROR] /ws/src/main/java/com/example/Parser.java:[12,5] cannot find symbol\n"
+            + "\tat com.example.Parser.parse(Parser.java:12)\n"
+            + "in a.c and pom");
+
+        assertEquals(Collections.singleton("src/main/java/com/example/Parser.java"), implicated);
+        assertTrue(summary.implicatedPaths(null).isEmpty());
+    }
+
+    @Test
+    public void testDiffCallableNeedsImplicatedCommitWithValidId() {
+        ChangeSetSummary summary = ChangeSetSummary.of(Arrays.asList(
+            commit("--output=/tmp/x", "Sneaky", "Parser.java"),
+            commit(null, "No id", "Parser.java")));
+
+        assertNull(summary.diffCallable(Collections.singleton("Parser.java"), 1000));
+        assertNull(ChangeSetSummary.of(Arrays.asList(commit("abcdef1", "Change", "Parser.java")))
+            .diffCallable(Collections.singleton("Other.java"), 1000));
+    }
+
+    private static String git(File directory, String... args) throws Exception {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-c", "user.name=Test", "-c", "user.email=test@example.com"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(directory).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(output, 0, process.exitValue());
+        return output.trim();
+    }
+
+    private static boolean gitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDiffIsComputedAndCapped() throws Exception {
+        assumeTrue(gitAvailable());
+        File repository = tempFolder.newFolder("repo");
+        File source = new File(repository, "src/Parser.java");
+        assertTrue(source.getParentFile().mkdirs());
+        Files.write(source.toPath(), "class Parser {}\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(repository, "README.md").toPath(), "readme\n".getBytes(StandardCharsets.UTF_8));
+        git(repository, "init", "-q");
+        git(repository, "add", ".");
+        git(repository, "commit", "-q", "-m", "Initial");
+        StringBuilder body = new StringBuilder("class Parser {\n");
+        for (int i = 0; i < 200; i++) {
+            body.append("    int field").append(i).append(";\n");
+        }
+        Files.write(source.toPath(), body.append("}\n").toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(repository, "README.md").toPath(), "changed readme\n".getBytes(StandardCharsets.UTF_8));
+        git(repository, "commit", "-q", "-a", "-m", "Add fields");
+        String id = git(repository, "rev-parse", "HEAD");
+
+        ChangeSetSummary summary = ChangeSetSummary.of(Arrays.asList(commit(id, "Add fields", "src/Parser.java", "README.md")));
+        // Run from a subdirectory: change set paths are relative to the repository root
+        File subdirectory = new File(repository, "src");
+        String diff = summary.diffCallable(Collections.singleton("src/Parser.java"), 100000).invoke(subdirectory, null);
+
+        assertTrue(diff.startsWith("commit " + id + "\n"));
+        assertTrue(diff.contains("+    int field199;\n"));
+        assertFalse(diff.contains("README"));
+
+        String capped = summary.diffCallable(Collections.singleton("src/Parser.java"), 1000).invoke(subdirectory, null);
+
+        assertTrue(capped.endsWith("\n[diff cut at 1000 bytes]\n"));
+        assertTrue(capped.length() <= 1000 + 30);
+        assertFalse(capped.contains("field199"));
+    }
+
+    @Test
+    public void testDiffOutsideGitCheckoutIsEmpty() throws Exception {
+        assumeTrue(gitAvailable());
+        ChangeSetSummary summary = ChangeSetSummary.of(Arrays.asList(commit("abcdef1", "Change", "Parser.java")));
+
+        assertEquals("", summary.diffCallable(Collections.singleton("Parser.java"), 1000).invoke(tempFolder.newFolder("plain"), null));
+    }
+}
@@ -0,0 +1,78 @@
+package io.jenkins.plugins.codex;
+
+import hudson.AbortException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexAnalysisBatchStepTest {
+
+    private CodexAnalysisBatchStep step;
+
+    @Before
+    public void setUp() {
+        step = new CodexAnalysisBatchStep();
+    }
+
+    @Test
+    public void testStepDescriptor() {
+        // Avoid calling getDescriptor() which requires a Jenkins instance
+        CodexAnalysisBatchStep.DescriptorImpl descriptor = new CodexAnalysisBatchStep.DescriptorImpl();
+        assertEquals("codexAnalysisBatch", descriptor.getFunctionName());
+        assertEquals("Codex Batch Analysis", descriptor.getDisplayName());
+        assertFalse(descriptor.takesImplicitBlockArgument());
+    }
+
+    @Test
+    public void testDefaults() {
+        assertTrue(step.getItems().isEmpty());
+        assertTrue(step.getNamedItems().isEmpty());
+        assertEquals(CodexBatchRequest.DEFAULT_MAX_TOKENS_PER_BATCH, step.getMaxTokensPerBatch());
+        assertEquals(CodexBatchRequest.DEFAULT_MAX_ITEMS_PER_BATCH, step.getMaxItemsPerBatch());
+        assertTrue(step.isCache());
+    }
+
+    @Test
+    public void testListAndNamedItemsAreCombinedInOrder() throws Exception {
+        step.setItems(List.of("first", "second"));
+        Map<String, String> named = new LinkedHashMap<>();
+        named.put("moduleB", "b output");
+        named.put("moduleA", "a output");
+        step.setNamedItems(named);
+
+        Map<String, String> all = step.getAllItems();
+        assertEquals(List.of("0", "1", "moduleB", "moduleA"), List.copyOf(all.keySet()));
+        assertEquals("second", all.get("1"));
+        assertEquals("a output", all.get("moduleA"));
+    }
+
+    @Test
+    public void testNamedItemWithListIdIsRejected() {
+        step.setItems(List.of("first", "second"));
+        step.setNamedItems(Map.of("1", "named output"));
+
+        try {
+            step.getAllItems();
+            fail("Expected the colliding id to be rejected");
+        } catch (AbortException e) {
+            assertTrue(e.getMessage().contains("'1'"));
+        }
+    }
+
+    @Test
+    public void testNullItemsAreIgnored() throws Exception {
+        step.setItems(null);
+        step.setNamedItems(null);
+        step.setAdditionalParams(null);
+        assertTrue(step.getAllItems().isEmpty());
+        assertNotNull(step.getAdditionalParams());
+    }
+}
@@ -71,6 +71,84 @@ public class CodexAnalysisStepTest {
         assertTrue(step.isIncludeContext());
     }
 
+    @Test
+    public void testChunkedOptions() {
+        assertFalse(step.isChunked());
+        assertEquals(CodexMapReduce.DEFAULT_MAX_CHUNK_TOKENS, step.getMaxChunkTokens());
+
+        step.setChunked(true);
+        step.setMaxChunkTokens(8000);
+        step.setMaxParallelChunks(8);
+
+        assertTrue(step.isChunked());
+        assertEquals(8000, step.getMaxChunkTokens());
+        assertEquals(8, step.getMaxParallelChunks());
+    }
+
+    @Test
+    public void testExcerptOptions() {
+        assertFalse(step.isExcerptErrors());
+        assertEquals(ErrorExcerptExtractor.DEFAULT_CONTEXT_LINES, step.getExcerptContextLines());
+
+        step.setExcerptErrors(true);
+        step.setExcerptContextLines(25);
+
+        assertTrue(step.isExcerptErrors());
+        assertEquals(25, step.getExcerptContextLines());
+    }
+
+    @Test
+    public void testCompactLogIsOffByDefault() {
+        assertFalse(step.isCompactLog());
+        assertFalse(new CodexAnalysisBatchStep().isCompactLog());
+
+        step.setCompactLog(true);
+
+        assertTrue(step.isCompactLog());
+    }
+
+    @Test
+    public void testMaxContextTokens() {
+        assertEquals(0, step.getMaxContextTokens());
+
+        step.setMaxContextTokens(32000);
+
+        assertEquals(32000, step.getMaxContextTokens());
+    }
+
+    @Test
+    public void testTestReports() {
+        assertNull(step.getTestReports());
+
+        step.setTestReports("**/surefire-reports/TEST-*.xml");
+
+        assertEquals("**/surefire-reports/TEST-*.xml", step.getTestReports());
+    }
+
+    @Test
+    public void testChangeOptions() {
+        assertTrue(step.isIncludeChanges());
+        assertFalse(step.isChangeDiff());
+        assertEquals(ChangeSetSummary.DEFAULT_MAX_DIFF_BYTES, step.getMaxDiffBytes());
+
+        step.setIncludeChanges(false);
+        step.setChangeDiff(true);
+        step.setMaxDiffBytes(4096);
+
+        assertFalse(step.isIncludeChanges());
+        assertTrue(step.isChangeDiff());
+        assertEquals(4096, step.getMaxDiffBytes());
+    }
+
+    @Test
+    public void testNewErrorsOnly() {
+        assertFalse(step.isNewErrorsOnly());
+
+        step.setNewErrorsOnly(true);
+
+        assertTrue(step.isNewErrorsOnly());
+    }
+
     @Test
     public void testAdditionalParams() {
         step.setAdditionalParams(null);
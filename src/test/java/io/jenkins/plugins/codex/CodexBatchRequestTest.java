@@ -0,0 +1,87 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexBatchRequestTest {
+
+    private static String text(int chars) {
+        return "x".repeat(chars);
+    }
+
+    @Test
+    public void testPackKeepsOrderWithinTokenBudget() {
+        Map<String, String> items = new LinkedHashMap<>();
+        items.put("a", text(400));
+        items.put("b", text(400));
+        items.put("c", text(400));
+        items.put("d", text(40));
+
+        // About 116 tokens per item including delimiters
+        List<List<String>> batches = CodexBatchRequest.pack(items, 250, 10);
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), batches);
+    }
+
+    @Test
+    public void testPackRespectsItemLimit() {
+        Map<String, String> items = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            items.put("item" + i, "short");
+        }
+        List<List<String>> batches = CodexBatchRequest.pack(items, 100000, 2);
+        assertEquals(3, batches.size());
+        assertEquals(List.of("item4"), batches.get(2));
+    }
+
+    @Test
+    public void testOversizedItemGetsItsOwnBatch() {
+        Map<String, String> items = new LinkedHashMap<>();
+        items.put("small", "short");
+        items.put("huge", text(100000));
+        items.put("tail", "short");
+        List<List<String>> batches = CodexBatchRequest.pack(items, 1000, 10);
+        assertEquals(List.of(List.of("small"), List.of("huge"), List.of("tail")), batches);
+    }
+
+    @Test
+    public void testRenderContentNumbersItems() {
+        Map<String, String> items = new LinkedHashMap<>();
+        items.put("first", "content one");
+        items.put("second", "content two\n");
+        String content = CodexBatchRequest.renderContent(List.of("first", "second"), items);
+        assertEquals("=== ITEM 1 ===\ncontent one\n=== END ITEM 1 ===\n\n"
+            + "=== ITEM 2 ===\ncontent two\n=== END ITEM 2 ===\n\n", content);
+
+        String prompt = CodexBatchRequest.renderPrompt("Find the root cause", 2);
+        assertTrue(prompt.startsWith("Find the root cause\n\n"));
+        assertTrue(prompt.contains("=== RESULT n ==="));
+    }
+
+    @Test
+    public void testParseOutputSplitsSections() {
+        String output = "Here are the analyses.\n"
+            + "=== RESULT 2 ===\nSecond is fine.\n\n"
+            + "=== result 1 ===\nFirst failed because of X.\n"
+            + "=== RESULT 2 ===\nRepeated section.\n";
+        Map<String, String> results = CodexBatchRequest.parseOutput(output, List.of("first", "second", "third"));
+
+        assertEquals("First failed because of X.", results.get("first"));
+        assertEquals("Second is fine.", results.get("second"));
+        assertFalse(results.containsKey("third"));
+    }
+
+    @Test
+    public void testParseOutputWithoutMarkers() {
+        assertTrue(CodexBatchRequest.parseOutput("No markers at all", List.of("a", "b")).isEmpty());
+        assertTrue(CodexBatchRequest.parseOutput(null, List.of("a")).isEmpty());
+        assertTrue(CodexBatchRequest.parseOutput("=== RESULT 7 ===\nout of range", List.of("a")).isEmpty());
+    }
+}
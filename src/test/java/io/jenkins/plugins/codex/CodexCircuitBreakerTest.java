@@ -0,0 +1,106 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private CodexCircuitBreaker newBreaker(int threshold) {
+        return new CodexCircuitBreaker(() -> threshold, () -> 60000, now::get);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(3);
+        breaker.recordFailure("gpt-4", "agent-1");
+        breaker.recordFailure("gpt-4", "agent-1");
+        breaker.checkAllowed("gpt-4", "agent-1");
+
+        breaker.recordFailure("gpt-4", "agent-1");
+        assertTrue(breaker.isOpen("gpt-4", "agent-1"));
+        try {
+            breaker.checkAllowed("gpt-4", "agent-2");
+            fail("The model circuit should be open on every node");
+        } catch (CodexCircuitBreaker.CircuitOpenException e) {
+            assertTrue(e.getMessage().contains("gpt-4"));
+        }
+        try {
+            breaker.checkAllowed("gpt-4o", "agent-1");
+            fail("The node circuit should be open for every model");
+        } catch (CodexCircuitBreaker.CircuitOpenException e) {
+            assertTrue(e.getMessage().contains("agent-1"));
+        }
+        breaker.checkAllowed("gpt-4o", "agent-2");
+    }
+
+    @Test
+    public void testSuccessResetsFailureCount() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(2);
+        breaker.recordFailure("gpt-4", "agent-1");
+        breaker.recordSuccess("gpt-4", "agent-1");
+        breaker.recordFailure("gpt-4", "agent-1");
+
+        assertFalse(breaker.isOpen("gpt-4", "agent-1"));
+        breaker.checkAllowed("gpt-4", "agent-1");
+    }
+
+    @Test
+    public void testSingleTrialAfterOpenPeriod() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(1);
+        breaker.recordFailure("gpt-4", "agent-1");
+        now.addAndGet(60001);
+
+        breaker.checkAllowed("gpt-4", "agent-1");
+        try {
+            breaker.checkAllowed("gpt-4", "agent-1");
+            fail("Only one trial call should pass");
+        } catch (CodexCircuitBreaker.CircuitOpenException expected) {
+            // expected
+        }
+
+        breaker.recordSuccess("gpt-4", "agent-1");
+        breaker.checkAllowed("gpt-4", "agent-1");
+        breaker.checkAllowed("gpt-4", "agent-1");
+    }
+
+    @Test
+    public void testFailedTrialReopens() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(3);
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure("gpt-4", "agent-1");
+        }
+        now.addAndGet(60001);
+        breaker.checkAllowed("gpt-4", "agent-1");
+
+        breaker.recordFailure("gpt-4", "agent-1");
+        assertTrue(breaker.isOpen("gpt-4", "agent-1"));
+    }
+
+    @Test
+    public void testAbandonedTrialAllowsAnotherTrial() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(1);
+        breaker.recordFailure("gpt-4", "agent-1");
+        now.addAndGet(60001);
+        breaker.checkAllowed("gpt-4", "agent-1");
+
+        breaker.recordAbandoned("gpt-4", "agent-1");
+        breaker.checkAllowed("gpt-4", "agent-1");
+    }
+
+    @Test
+    public void testDisabledBreakerNeverOpens() throws Exception {
+        CodexCircuitBreaker breaker = newBreaker(0);
+        for (int i = 0; i < 100; i++) {
+            breaker.recordFailure("gpt-4", "agent-1");
+        }
+        breaker.checkAllowed("gpt-4", "agent-1");
+    }
+}
@@ -4,11 +4,28 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CodexCliExecutorTest {
 
+    @Test
+    public void testJobDefaultModelIsNotRouted() {
+        CodexAnalysisJobProperty pinned = new CodexAnalysisJobProperty(
+            "", "", "", "", "", "job-model", 0, false, "", new ArrayList<>(), true);
+        CodexAnalysisJobProperty inherited = new CodexAnalysisJobProperty(
+            "", "", "", "", "", "job-model", 0, false, "", new ArrayList<>(), false);
+
+        assertTrue(CodexCliExecutor.hasExplicitModel(Map.of(), pinned));
+        assertTrue(CodexCliExecutor.hasExplicitModel(Map.of("model", "step-model"), null));
+        assertFalse(CodexCliExecutor.hasExplicitModel(Map.of(), inherited));
+        assertFalse(CodexCliExecutor.hasExplicitModel(Map.of("model", " "), null));
+        assertFalse(CodexCliExecutor.hasExplicitModel(null, null));
+    }
+
     @Test
     public void testCodexAnalysisResultSuccess() {
         CodexCliExecutor.CodexAnalysisResult result = new CodexCliExecutor.CodexAnalysisResult(
@@ -74,6 +91,36 @@ public class CodexCliExecutorTest {
         assertEquals("", result.getError());
     }
 
+    @Test
+    public void testCodexAnalysisResultDefaultsToNotTimedOut() {
+        CodexCliExecutor.CodexAnalysisResult result = new CodexCliExecutor.CodexAnalysisResult(
+            "Test output",
+            "",
+            true
+        );
+
+        assertFalse(result.isTimedOut());
+    }
+
+    @Test
+    public void testCodexAnalysisResultTimedOut() {
+        CodexCliExecutor.CodexAnalysisResult result = CodexCliExecutor.CodexAnalysisResult.timedOut(
+            "Partial output",
+            "Codex CLI timed out after 150 seconds and was killed"
+        );
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.isTimedOut());
+        assertEquals("Partial output", result.getOutput());
+        assertTrue(result.getError().contains("150 seconds"));
+    }
+
+    @Test
+    public void testTimeoutExceptionMessage() {
+        CodexCliExecutor.CodexTimeoutException e = new CodexCliExecutor.CodexTimeoutException(42);
+        assertTrue(e.getMessage().contains("42 seconds"));
+    }
+
     @Test
     public void testCodexAnalysisResultMultilineOutput() {
         String multilineOutput = "Line 1\nLine 2\nLine 3";
@@ -0,0 +1,79 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexCliProbeCacheTest {
+
+    @Test
+    public void testMissReturnsNull() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, 60000);
+        assertNull(cache.getIfFresh("agent-1", "~/.local/bin/codex"));
+    }
+
+    @Test
+    public void testHitReturnsStoredProbe() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, 60000);
+        cache.put("agent-1", "~/.local/bin/codex", true, "codex 1.2.3");
+
+        CodexCliProbeCache.Probe probe = cache.getIfFresh("agent-1", "~/.local/bin/codex");
+        assertNotNull(probe);
+        assertTrue(probe.isAvailable());
+        assertEquals("codex 1.2.3", probe.getVersion());
+    }
+
+    @Test
+    public void testEntriesAreKeyedByNodeAndPath() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, 60000);
+        cache.put("agent-1", "/usr/bin/codex", true, "codex 1.0.0");
+
+        assertNull(cache.getIfFresh("agent-2", "/usr/bin/codex"));
+        assertNull(cache.getIfFresh("agent-1", "/opt/codex"));
+        assertNull(cache.getIfFresh("", "/usr/bin/codex"));
+    }
+
+    @Test
+    public void testExpiredEntriesAreDropped() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(-1, -1);
+        cache.put("agent-1", "/usr/bin/codex", true, "codex 1.0.0");
+        assertNull(cache.getIfFresh("agent-1", "/usr/bin/codex"));
+    }
+
+    @Test
+    public void testUnavailableProbesUseShorterTtl() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, -1);
+        cache.put("agent-1", "/usr/bin/codex", false, null);
+        cache.put("agent-2", "/usr/bin/codex", true, "codex 1.0.0");
+
+        assertNull(cache.getIfFresh("agent-1", "/usr/bin/codex"));
+        assertNotNull(cache.getIfFresh("agent-2", "/usr/bin/codex"));
+    }
+
+    @Test
+    public void testInvalidateNode() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, 60000);
+        cache.put("agent-1", "/usr/bin/codex", true, "codex 1.0.0");
+        cache.put("agent-1", "/opt/codex", true, "codex 1.0.0");
+        cache.put("agent-10", "/usr/bin/codex", true, "codex 1.0.0");
+
+        cache.invalidateNode("agent-1");
+
+        assertNull(cache.getIfFresh("agent-1", "/usr/bin/codex"));
+        assertNull(cache.getIfFresh("agent-1", "/opt/codex"));
+        assertNotNull(cache.getIfFresh("agent-10", "/usr/bin/codex"));
+    }
+
+    @Test
+    public void testControllerUsesEmptyNodeName() {
+        CodexCliProbeCache cache = new CodexCliProbeCache(60000, 60000);
+        cache.put(null, "/usr/bin/codex", true, "codex 1.0.0");
+
+        assertNotNull(cache.getIfFresh("", "/usr/bin/codex"));
+        cache.invalidateNode("");
+        assertNull(cache.getIfFresh(null, "/usr/bin/codex"));
+    }
+}
@@ -0,0 +1,152 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexHedgedRequestTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFastPrimaryIsNotHedged() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        AtomicInteger fallbackStarts = new AtomicInteger();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> {
+            fallbackStarts.incrementAndGet();
+            return new CompletableFuture<>();
+        }, 200, value -> true, scheduler);
+
+        primary.complete("primary");
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        Thread.sleep(400);
+        assertEquals(0, fallbackStarts.get());
+    }
+
+    @Test
+    public void testFallbackWinsAndPrimaryIsCancelled() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> {
+            fallback.complete("fallback");
+            return fallback;
+        }, 50, value -> true, scheduler);
+
+        assertEquals("fallback", result.get(5, TimeUnit.SECONDS));
+        assertTrue(primary.isCancelled());
+    }
+
+    @Test
+    public void testCancelledPrimaryIsRecordedAsSlow() throws Exception {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        tracker.track("gpt-4", primary, value -> true);
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> fallback, 50, value -> true, scheduler);
+
+        waitForHedge(fallback);
+        fallback.complete("fallback");
+        assertEquals("fallback", result.get(5, TimeUnit.SECONDS));
+
+        assertTrue(primary.isCancelled());
+        assertEquals(1, tracker.getSampleCount("gpt-4"));
+        for (int i = 1; i < CodexLatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record("gpt-4", 0);
+        }
+        // The primary ran at least until the hedge
+        assertTrue(tracker.getPercentile("gpt-4", 100) >= 50);
+    }
+
+    @Test
+    public void testPrimaryWinsAfterHedgingAndFallbackIsCancelled() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> fallback, 50, value -> true, scheduler);
+
+        waitForHedge(fallback);
+        primary.complete("primary");
+        assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+        assertTrue(fallback.isCancelled());
+    }
+
+    @Test
+    public void testUnusableResultWaitsForTheOtherCall() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> fallback, 50,
+            value -> !value.equals("timed out"), scheduler);
+
+        waitForHedge(fallback);
+        primary.complete("timed out");
+        assertFalse(result.isDone());
+        fallback.complete("fallback");
+        assertEquals("fallback", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPrimaryFailureIsReportedWhenBothFail() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> fallback, 50, value -> true, scheduler);
+
+        waitForHedge(fallback);
+        fallback.completeExceptionally(new IOException("fallback failed"));
+        assertFalse(result.isDone());
+        primary.completeExceptionally(new IOException("primary failed"));
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Expected the primary failure");
+        } catch (ExecutionException e) {
+            assertEquals("primary failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCancellingResultCancelsBothCalls() throws Exception {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> fallback = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<String>> started = new AtomicReference<>();
+        CompletableFuture<String> result = CodexHedgedRequest.start(primary, () -> {
+            started.set(fallback);
+            return fallback;
+        }, 50, value -> true, scheduler);
+
+        waitForHedge(fallback);
+        result.cancel(true);
+        assertTrue(primary.isCancelled());
+        assertTrue(fallback.isCancelled());
+        assertSame(fallback, started.get());
+    }
+
+    @Test
+    public void testNoDelayReturnsPrimary() {
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        assertSame(primary, CodexHedgedRequest.start(primary, CompletableFuture::new, 0, value -> true, scheduler));
+    }
+
+    private static void waitForHedge(CompletableFuture<String> fallback) throws InterruptedException {
+        // The fallback future has dependents once the hedge has been started
+        for (int i = 0; i < 500 && fallback.getNumberOfDependents() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue("The hedge was not started", fallback.getNumberOfDependents() > 0);
+    }
+}
@@ -0,0 +1,181 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexInvocationSchedulerTest {
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRunsTaskAndReturnsResult() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 0, () -> 0);
+
+        CompletableFuture<String> future = scheduler.submit("agent-1", () -> "done");
+
+        assertEquals("done", future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPerNodeLimitQueuesExcess() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 0, () -> 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = scheduler.submit("agent-1", () -> {
+            release.await();
+            return "first";
+        });
+        CompletableFuture<String> second = scheduler.submit("agent-1", () -> "second");
+        CompletableFuture<String> otherNode = scheduler.submit("agent-2", () -> "other");
+
+        assertEquals("other", otherNode.get(5, TimeUnit.SECONDS));
+        assertTrue(scheduler.isQueued(second));
+        assertEquals(1, scheduler.getQueueLength());
+
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueueLength());
+    }
+
+    @Test
+    public void testControllerLimitBoundsConcurrency() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 2, () -> 0);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = scheduler.submit("agent-" + i, () -> {
+                int now = concurrent.incrementAndGet();
+                maxConcurrent.accumulateAndGet(now, Math::max);
+                Thread.sleep(20);
+                concurrent.decrementAndGet();
+                return null;
+            });
+        }
+        CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+
+        assertTrue("At most 2 tasks should run at once", maxConcurrent.get() <= 2);
+        assertEquals(0, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void testCancellingQueuedTaskRemovesIt() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 1, () -> 0);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        CompletableFuture<String> first = scheduler.submit("agent-1", () -> {
+            release.await();
+            return "first";
+        });
+        CompletableFuture<String> second = scheduler.submit("agent-1", () -> {
+            ran.incrementAndGet();
+            return "second";
+        });
+
+        second.cancel(true);
+        assertEquals(0, scheduler.getQueueLength());
+
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    public void testCancellingRunningTaskInterruptsIt() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 0, () -> 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> future = scheduler.submit("agent-1", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "never";
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnscheduledTaskDoesNotTakeASlot() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 1, () -> 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> waiting = scheduler.submitUnscheduled(() -> {
+            release.await();
+            return "waited";
+        });
+        CompletableFuture<String> scheduled = scheduler.submit("agent-1", () -> "scheduled");
+
+        assertEquals("scheduled", scheduled.get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertEquals("waited", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void testCancellingUnscheduledTaskInterruptsIt() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 0, () -> 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> future = scheduler.submitUnscheduled(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "never";
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFailuresArePropagated() throws Exception {
+        CodexInvocationScheduler scheduler = new CodexInvocationScheduler(executorService, () -> 0, () -> 0);
+
+        CompletableFuture<String> future = scheduler.submit("agent-1", () -> {
+            throw new java.io.IOException("boom");
+        });
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected the task failure to be propagated");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.io.IOException);
+            assertEquals("boom", e.getCause().getMessage());
+        }
+    }
+}
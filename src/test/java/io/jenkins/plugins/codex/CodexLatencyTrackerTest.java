@@ -0,0 +1,114 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexLatencyTrackerTest {
+
+    @Test
+    public void testNoPercentileWithoutEnoughSamples() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        assertEquals(-1, tracker.getPercentile("gpt-4", 95));
+        for (int i = 0; i < CodexLatencyTracker.MIN_SAMPLES - 1; i++) {
+            tracker.record("gpt-4", 1000);
+        }
+        assertEquals(-1, tracker.getPercentile("gpt-4", 95));
+
+        tracker.record("gpt-4", 1000);
+        assertEquals(1000, tracker.getPercentile("gpt-4", 95));
+    }
+
+    @Test
+    public void testNearestRankPercentile() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        for (int i = 100; i >= 1; i--) {
+            tracker.record("gpt-4", i * 10L);
+        }
+        assertEquals(950, tracker.getPercentile("gpt-4", 95));
+        assertEquals(500, tracker.getPercentile("gpt-4", 50));
+        assertEquals(1000, tracker.getPercentile("gpt-4", 100));
+    }
+
+    @Test
+    public void testModelsAreTrackedSeparately() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        for (int i = 0; i < 50; i++) {
+            tracker.record("gpt-4", 5000);
+            tracker.record("gpt-4o", 500);
+        }
+        assertEquals(5000, tracker.getPercentile("gpt-4", 95));
+        assertEquals(500, tracker.getPercentile("gpt-4o", 95));
+        assertEquals(-1, tracker.getPercentile("other", 95));
+    }
+
+    @Test
+    public void testOnlyRecentSamplesAreKept() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        for (int i = 0; i < CodexLatencyTracker.WINDOW_SIZE; i++) {
+            tracker.record("gpt-4", 60000);
+        }
+        for (int i = 0; i < CodexLatencyTracker.WINDOW_SIZE; i++) {
+            tracker.record("gpt-4", 2000);
+        }
+        assertEquals(CodexLatencyTracker.WINDOW_SIZE, tracker.getSampleCount("gpt-4"));
+        assertEquals(2000, tracker.getPercentile("gpt-4", 99));
+    }
+
+    @Test
+    public void testErrorRate() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        assertEquals(-1, tracker.getErrorRate("gpt-4"), 0);
+        for (int i = 0; i < 30; i++) {
+            tracker.record("gpt-4", 1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            tracker.recordFailure("gpt-4");
+        }
+        assertEquals(0.25, tracker.getErrorRate("gpt-4"), 0.001);
+        // Failures do not count as latency samples
+        assertEquals(30, tracker.getSampleCount("gpt-4"));
+    }
+
+    @Test
+    public void testCancelledCallsKeepTheTail() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        for (int i = 0; i < 18; i++) {
+            tracker.record("gpt-4", 1000);
+        }
+        // Slow calls that lost to their hedge
+        tracker.recordCancelled("gpt-4", 9000);
+        tracker.recordCancelled("gpt-4", 9000);
+
+        assertEquals(20, tracker.getSampleCount("gpt-4"));
+        assertEquals(9000, tracker.getPercentile("gpt-4", 95));
+        assertEquals(-1, tracker.getErrorRate("gpt-4"), 0);
+    }
+
+    @Test
+    public void testTrackRecordsEachOutcome() {
+        CodexLatencyTracker tracker = new CodexLatencyTracker();
+        CompletableFuture<String> succeeded = new CompletableFuture<>();
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        CompletableFuture<String> cancelled = new CompletableFuture<>();
+        tracker.track("gpt-4", succeeded, "ok"::equals);
+        tracker.track("gpt-4", failed, "ok"::equals);
+        tracker.track("gpt-4", cancelled, "ok"::equals);
+
+        succeeded.complete("ok");
+        failed.complete("timed out");
+        cancelled.cancel(true);
+
+        assertEquals(2, tracker.getSampleCount("gpt-4"));
+        for (int i = 0; i < 18; i++) {
+            tracker.record("gpt-4", 1000);
+        }
+        // One failure among the success and the 18 recorded calls, the cancelled call is neither
+        assertEquals(1.0 / 20, tracker.getErrorRate("gpt-4"), 0.001);
+    }
+}
@@ -0,0 +1,158 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexMapReduceTest {
+
+    private static List<CodexMapReduce.Chunk> readAll(String content, int chunkChars) throws IOException {
+        CodexMapReduce.ChunkReader reader = new CodexMapReduce.ChunkReader(new StringReader(content), chunkChars);
+        List<CodexMapReduce.Chunk> chunks = new ArrayList<>();
+        for (CodexMapReduce.Chunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    @Test
+    public void testChunksAreCutAtLineBoundaries() throws Exception {
+        List<CodexMapReduce.Chunk> chunks = readAll("line1\nline2\nline3\nline4\n", 13);
+
+        assertEquals(2, chunks.size());
+        assertEquals("line1\nline2\n", chunks.get(0).getText());
+        assertEquals(1, chunks.get(0).getFirstLine());
+        assertEquals(2, chunks.get(0).getLastLine());
+        assertEquals("line3\nline4\n", chunks.get(1).getText());
+        assertEquals(3, chunks.get(1).getFirstLine());
+        assertEquals(4, chunks.get(1).getLastLine());
+        assertEquals(2, chunks.get(1).getIndex());
+    }
+
+    @Test
+    public void testContentIsPreservedExactly() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("[INFO] line number ").append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        content.append("no trailing newline");
+
+        StringBuilder joined = new StringBuilder();
+        long expectedFirstLine = 1;
+        for (CodexMapReduce.Chunk chunk : readAll(content.toString(), 1000)) {
+            assertTrue(chunk.getText().length() <= 1000);
+            assertEquals(expectedFirstLine, chunk.getFirstLine());
+            expectedFirstLine = chunk.getLastLine() + 1;
+            joined.append(chunk.getText());
+        }
+        assertEquals(content.toString(), joined.toString());
+        assertEquals(5001, expectedFirstLine - 1);
+    }
+
+    @Test
+    public void testLongLinesAreSplit() throws Exception {
+        List<CodexMapReduce.Chunk> chunks = readAll("x".repeat(25) + "\nshort\n", 10);
+
+        assertEquals("xxxxxxxxxx", chunks.get(0).getText());
+        assertEquals("xxxxxxxxxx", chunks.get(1).getText());
+        assertEquals("xxxxx\n", chunks.get(2).getText());
+        assertEquals("short\n", chunks.get(3).getText());
+        assertEquals(1, chunks.get(2).getFirstLine());
+        assertEquals(2, chunks.get(3).getFirstLine());
+    }
+
+    @Test
+    public void testSurrogatePairsAreNotSplit() throws Exception {
+        String content = "abcd\uD83D\uDE00efgh";
+        List<CodexMapReduce.Chunk> chunks = readAll(content, 5);
+        assertEquals("abcd", chunks.get(0).getText());
+        assertEquals("\uD83D\uDE00efg", chunks.get(1).getText());
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        assertTrue(readAll("", 100).isEmpty());
+    }
+
+    @Test
+    public void testContentIsReadLazily() throws Exception {
+        int[] charsRead = new int[1];
+        Reader endless = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                for (int i = 0; i < len; i++) {
+                    cbuf[off + i] = i % 80 == 79 ? '\n' : 'a';
+                }
+                charsRead[0] += len;
+                return len;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CodexMapReduce.ChunkReader reader = new CodexMapReduce.ChunkReader(endless, 10000);
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(reader.next());
+        }
+        assertTrue(charsRead[0] < 50000);
+    }
+
+    @Test
+    public void testFindingsThatFitAreJoinedUnchanged() {
+        List<String> findings = List.of("a\n", "b\n");
+        assertEquals("a\nb\n", CodexMapReduce.fitFindings(findings, 100));
+    }
+
+    @Test
+    public void testOversizedFindingsAreCutToTheBudget() {
+        List<String> findings = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            findings.add(CodexMapReduce.renderFindings("PART " + i, "x".repeat(10000)));
+        }
+
+        String content = CodexMapReduce.fitFindings(findings, 2000);
+
+        assertTrue(content.length() <= 2000 * 4 + 5 * 100);
+        assertTrue(content.contains("=== FINDINGS FROM PART 0 ==="));
+        assertTrue(content.contains("=== FINDINGS FROM PART 4 ==="));
+        assertTrue(content.contains("cut to fit the merge"));
+    }
+
+    @Test
+    public void testFindingsBeyondTheBudgetAreLeftOut() {
+        List<String> findings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            findings.add(CodexMapReduce.renderFindings("PART " + i, "x".repeat(5000)));
+        }
+
+        String content = CodexMapReduce.fitFindings(findings, 1000);
+
+        assertTrue(content.length() <= 1000 * 4 + 4 * 100);
+        assertTrue(content.contains("[46 more parts left out to fit the merge]"));
+    }
+
+    @Test
+    public void testChunkCharsLeavesRoomForHeader() {
+        assertEquals(24000 * 4, CodexMapReduce.chunkChars(0, null));
+        assertEquals((10000 - 250) * 4, CodexMapReduce.chunkChars(10000, "h".repeat(1000)));
+        assertEquals(4000, CodexMapReduce.chunkChars(100, "h".repeat(100000)));
+    }
+
+    @Test
+    public void testRenderChunk() throws Exception {
+        CodexMapReduce.Chunk chunk = readAll("error here\n", 100).get(0);
+        String rendered = CodexMapReduce.renderChunk("=== BUILD ANALYSIS ===", chunk);
+        assertEquals("=== BUILD ANALYSIS ===\n\n=== CONTENT TO ANALYZE (PART 1, LINES 1-1) ===\nerror here\n", rendered);
+        assertTrue(CodexMapReduce.mapPrompt("Why did it fail?", chunk).startsWith("Why did it fail?\n\n"));
+    }
+}
@@ -0,0 +1,117 @@
+package io.jenkins.plugins.codex;
+
+import hudson.FilePath;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    @Test
+    public void testLoadsOncePerNodeAndPath() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CodexModelRegistry registry = new CodexModelRegistry(60000, 60000, (root, cliPath) -> {
+            loads.incrementAndGet();
+            return Arrays.asList("gpt-4", "gpt-3.5-turbo");
+        }, refreshes::add);
+        FilePath root = new FilePath(tempFolder.getRoot());
+
+        assertEquals("gpt-4", registry.getDefaultModel("agent-1", root, "/usr/bin/codex"));
+        assertEquals(Arrays.asList("gpt-4", "gpt-3.5-turbo"), registry.getModels("agent-1", root, "/usr/bin/codex"));
+        assertEquals(1, loads.get());
+
+        registry.getModels("agent-2", root, "/usr/bin/codex");
+        registry.getModels("agent-1", root, "/opt/codex");
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testExpiredEntriesAreServedWhileRefreshing() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CodexModelRegistry registry = new CodexModelRegistry(-1, -1, (root, cliPath) ->
+            Arrays.asList("model-" + loads.incrementAndGet()), refreshes::add);
+        FilePath root = new FilePath(tempFolder.getRoot());
+
+        assertEquals("model-1", registry.getDefaultModel("agent-1", root, "codex"));
+        assertEquals("model-1", registry.getDefaultModel("agent-1", root, "codex"));
+        assertEquals("model-1", registry.getDefaultModel("agent-1", root, "codex"));
+        assertEquals("Only one refresh should be scheduled at a time", 1, refreshes.size());
+
+        refreshes.get(0).run();
+        assertEquals("model-2", registry.getDefaultModel("agent-1", root, "codex"));
+    }
+
+    @Test
+    public void testFailuresAreCachedAsEmpty() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CodexModelRegistry registry = new CodexModelRegistry(60000, 60000, (root, cliPath) -> {
+            loads.incrementAndGet();
+            throw new IOException("codex: not found");
+        }, refreshes::add);
+        FilePath root = new FilePath(tempFolder.getRoot());
+
+        assertEquals(CodexModelRegistry.FALLBACK_MODEL, registry.getDefaultModel("agent-1", root, "codex"));
+        assertTrue(registry.getModels("agent-1", root, "codex").isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testExpiredEmptyListIsReloadedBeforeUse() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CodexModelRegistry registry = new CodexModelRegistry(60000, -1, (root, cliPath) -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IOException("codex: timed out");
+            }
+            return Arrays.asList("gpt-4");
+        }, refreshes::add);
+        FilePath root = new FilePath(tempFolder.getRoot());
+
+        // The first listing failed, analyses still get a model
+        assertEquals(CodexModelRegistry.FALLBACK_MODEL, registry.getDefaultModel("agent-1", root, "codex"));
+        // The next lookup waits for a new listing instead of serving the empty one
+        assertEquals("gpt-4", registry.getDefaultModel("agent-1", root, "codex"));
+        assertTrue(refreshes.isEmpty());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateNode() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CodexModelRegistry registry = new CodexModelRegistry(60000, 60000, (root, cliPath) -> {
+            loads.incrementAndGet();
+            return Arrays.asList("gpt-4");
+        }, refreshes::add);
+        FilePath root = new FilePath(tempFolder.getRoot());
+
+        registry.getModels("agent-1", root, "codex");
+        registry.getModels("agent-10", root, "codex");
+        registry.invalidateNode("agent-1");
+        registry.getModels("agent-1", root, "codex");
+        registry.getModels("agent-10", root, "codex");
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testParseModelList() {
+        List<String> models = CodexAnalysisJobProperty.DescriptorImpl.parseModelList(
+            "Available models:\n- \ngpt-4\nopenai/gpt-4o\nsome description text\n");
+        assertEquals(Arrays.asList("gpt-4", "openai/gpt-4o"), models);
+    }
+}
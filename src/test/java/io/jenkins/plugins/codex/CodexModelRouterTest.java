@@ -0,0 +1,109 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexModelRouterTest {
+
+    private static final String RULES = "# cheap summaries\n"
+        + "type=build_analysis maxTokens=4000 -> gpt-4o-mini\n"
+        + "type=security_analysis|deployment_analysis -> gpt-4.1\n"
+        + "job=team-a/* minTokens=100000 -> gpt-4.1-long\n"
+        + "* -> gpt-4o, o3\n";
+
+    private final CodexLatencyTracker stats = new CodexLatencyTracker();
+    private final CodexCircuitBreaker circuitBreaker = new CodexCircuitBreaker(() -> 1, () -> 60000, System::currentTimeMillis);
+
+    private CodexModelRouter newRouter(String rules) {
+        return new CodexModelRouter(() -> rules, stats, circuitBreaker);
+    }
+
+    private static String model(CodexModelRouter.Decision decision) {
+        return decision != null ? decision.getModel() : null;
+    }
+
+    @Test
+    public void testFirstMatchingRuleWins() {
+        CodexModelRouter router = newRouter(RULES);
+
+        assertEquals("gpt-4o-mini", model(router.route("build_analysis", 1000, "app", "")));
+        assertEquals("gpt-4.1", model(router.route("SECURITY_ANALYSIS", 50000, "app", "")));
+        assertEquals("gpt-4.1", model(router.route("deployment_analysis", 10, "app", "")));
+        assertEquals("gpt-4.1-long", model(router.route("general", 200000, "team-a/service/main", "")));
+        assertEquals("gpt-4o", model(router.route("general", 200000, "team-b/service", "")));
+        assertEquals("gpt-4o", model(router.route("build_analysis", 5000, "app", "")));
+    }
+
+    @Test
+    public void testNoRulesMeansNoRouting() {
+        assertNull(newRouter("").route("general", 10, "app", ""));
+        assertNull(newRouter(null).route("general", 10, "app", ""));
+        assertNull(newRouter("type=test_analysis -> gpt-4o").route("general", 10, "app", ""));
+    }
+
+    @Test
+    public void testCandidatesWithoutStatisticsAreTriedFirst() {
+        CodexModelRouter router = newRouter("* -> gpt-4o, o3");
+        for (int i = 0; i < CodexLatencyTracker.MIN_SAMPLES; i++) {
+            stats.record("gpt-4o", 5000);
+        }
+        assertEquals("o3", model(router.route("general", 10, "app", "")));
+    }
+
+    @Test
+    public void testFasterAndHealthierCandidateIsPreferred() {
+        CodexModelRouter router = newRouter("* -> gpt-4o, o3");
+        for (int i = 0; i < 40; i++) {
+            stats.record("gpt-4o", 8000);
+            stats.record("o3", 2000);
+        }
+        assertEquals("o3", model(router.route("general", 10, "app", "")));
+
+        // Mostly failing models are avoided however fast they are
+        for (int i = 0; i < 100; i++) {
+            stats.recordFailure("o3");
+        }
+        assertEquals("gpt-4o", model(router.route("general", 10, "app", "")));
+    }
+
+    @Test
+    public void testOpenCircuitsAreAvoided() {
+        CodexModelRouter router = newRouter("* -> gpt-4o, o3");
+        circuitBreaker.recordFailure("gpt-4o", "other-node");
+        assertEquals("o3", model(router.route("general", 10, "app", "agent-1")));
+
+        // All candidates open: the first one is still used and fails fast
+        circuitBreaker.recordFailure("o3", "other-node");
+        assertEquals("gpt-4o", model(router.route("general", 10, "app", "agent-1")));
+    }
+
+    @Test
+    public void testRulesAreReparsedWhenChanged() {
+        AtomicReference<String> rules = new AtomicReference<>("* -> gpt-4o");
+        CodexModelRouter router = new CodexModelRouter(rules::get, stats, circuitBreaker);
+        assertEquals("gpt-4o", model(router.route("general", 10, "app", "")));
+
+        rules.set("* -> o3");
+        assertEquals("o3", model(router.route("general", 10, "app", "")));
+    }
+
+    @Test
+    public void testParseErrors() {
+        List<String> errors = new ArrayList<>();
+        List<CodexModelRouter.Rule> rules = CodexModelRouter.parseRules(
+            "type=general -> gpt-4o\nno arrow here\nsize=10 -> gpt-4o\nmaxTokens=abc -> gpt-4o\ntype=general ->\n", errors);
+
+        assertEquals(1, rules.size());
+        assertEquals(4, errors.size());
+        assertTrue(errors.get(0).startsWith("Line 2"));
+        assertTrue(errors.get(1).contains("unknown condition 'size'"));
+    }
+}
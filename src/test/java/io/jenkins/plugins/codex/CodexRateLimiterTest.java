@@ -0,0 +1,108 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexRateLimiterTest {
+
+    @Test
+    public void testUnlimitedModelsDoNotWait() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(0, 0));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.acquire("gpt-4", "job", 100000, null));
+        }
+    }
+
+    @Test
+    public void testRequestBucketThrottlesBursts() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(1200, 0));
+        for (int i = 0; i < 1200; i++) {
+            assertEquals(0, limiter.acquire("gpt-4", "job", 1, null));
+        }
+
+        long waited = limiter.acquire("gpt-4", "job", 1, null);
+        assertTrue("Expected to wait about 50ms for a refill, waited " + waited, waited >= 20);
+    }
+
+    @Test
+    public void testModelsHaveSeparateBuckets() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(1, 0));
+        assertEquals(0, limiter.acquire("gpt-4", "job", 1, null));
+        assertEquals(0, limiter.acquire("gpt-4o", "job", 1, null));
+    }
+
+    @Test
+    public void testTokenBucketThrottlesLargeRequests() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(0, 60000));
+        assertEquals(0, limiter.acquire("gpt-4", "job", 60000, null));
+
+        long waited = limiter.acquire("gpt-4", "job", 100, null);
+        assertTrue("Expected to wait about 100ms for tokens, waited " + waited, waited >= 50);
+    }
+
+    @Test
+    public void testRequestsLargerThanTheBucketAreAdmitted() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(0, 60000));
+        assertEquals(0, limiter.acquire("gpt-4", "job", 10_000_000, null));
+    }
+
+    @Test
+    public void testJobsTakeTurns() throws Exception {
+        CodexRateLimiter limiter = new CodexRateLimiter(model -> new CodexRateLimiter.Limits(0, 6000));
+        limiter.acquire("gpt-4", "warmup", 6000, null);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (String caller : new String[] {"A1", "A2", "A3", "B1"}) {
+            Thread thread = new Thread(() -> {
+                try {
+                    limiter.acquire("gpt-4", caller.substring(0, 1), 10, null);
+                    order.add(caller);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            Thread.sleep(20);
+        }
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(List.of("A1", "B1", "A2", "A3"), order);
+        assertEquals(0, limiter.getQueueLength("gpt-4"));
+    }
+
+    @Test
+    public void testParseLimits() {
+        String overrides = "gpt-4=60/90000\ngpt-4o = 120\nbroken=abc";
+
+        CodexRateLimiter.Limits gpt4 = CodexRateLimiter.parseLimits(overrides, "gpt-4", 10, 1000);
+        assertEquals(60, gpt4.getRequestsPerMinute());
+        assertEquals(90000, gpt4.getTokensPerMinute());
+
+        CodexRateLimiter.Limits gpt4o = CodexRateLimiter.parseLimits(overrides, "gpt-4o", 10, 1000);
+        assertEquals(120, gpt4o.getRequestsPerMinute());
+        assertEquals(1000, gpt4o.getTokensPerMinute());
+
+        CodexRateLimiter.Limits other = CodexRateLimiter.parseLimits(overrides, "broken", 10, 1000);
+        assertEquals(10, other.getRequestsPerMinute());
+        assertTrue(CodexRateLimiter.parseLimits("", "x", 0, 0).isUnlimited());
+    }
+
+    @Test
+    public void testEstimateTokens() {
+        assertEquals(0, CodexRateLimiter.estimateTokens(0));
+        assertEquals(1, CodexRateLimiter.estimateTokens(3));
+        assertEquals(250, CodexRateLimiter.estimateTokens(1000));
+    }
+}
@@ -0,0 +1,146 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexResultCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private CodexResultCache newCache(long maxBytes, long maxAgeMillis) {
+        File dir = new File(tempFolder.getRoot(), "codex-cache");
+        return new CodexResultCache(() -> dir, () -> maxBytes, () -> maxAgeMillis);
+    }
+
+    private static CodexCliExecutor.CodexAnalysisResult success(String output) {
+        return new CodexCliExecutor.CodexAnalysisResult(output, "", true);
+    }
+
+    @Test
+    public void testKeyDependsOnEveryPart() {
+        String base = CodexResultCache.key("content", "build_analysis", "prompt", "gpt-4", "", "");
+        assertEquals(base, CodexResultCache.key("content", "build_analysis", "prompt", "gpt-4", "", ""));
+        assertNotEquals(base, CodexResultCache.key("content!", "build_analysis", "prompt", "gpt-4", "", ""));
+        assertNotEquals(base, CodexResultCache.key("content", "test_analysis", "prompt", "gpt-4", "", ""));
+        assertNotEquals(base, CodexResultCache.key("content", "build_analysis", null, "gpt-4", "", ""));
+        assertNotEquals(base, CodexResultCache.key("content", "build_analysis", "prompt", "gpt-4o", "", ""));
+        assertNotEquals(base, CodexResultCache.key("content", "build_analysis", "prompt", "gpt-4", "mcp.toml", ""));
+        assertNotEquals(base, CodexResultCache.key("content", "build_analysis", "prompt", "gpt-4", "", "temperature=0\n"));
+        // Moving text between parts must not produce the same key
+        assertNotEquals(CodexResultCache.key("ab", "c", null, null, null, null),
+            CodexResultCache.key("a", "bc", null, null, null, null));
+    }
+
+    private static String render(String buildNumber, String workspace, String content) {
+        Map<String, String> environment = new HashMap<>();
+        environment.put("BUILD_NUMBER", buildNumber);
+        environment.put("BUILD_URL", "https://ci.example.com/job/app/" + buildNumber + "/");
+        List<String> logs = Collections.singletonList("[ERROR] Tests failed");
+        return new AnalysisContext(null, null, "Build #" + buildNumber, "codexAnalysis", content, environment, logs,
+            workspace).buildFocusedContext("build_analysis");
+    }
+
+    @Test
+    public void testRunsWithIdenticalContentHitTheCache() {
+        CodexResultCache cache = newCache(1024 * 1024, 60000);
+        String first = CodexCliExecutor.requestKey(render("41", "/ws/app", "NullPointerException at Foo.java:12"),
+            "build_analysis", null, "gpt-4", "", null);
+        cache.put(first, success("Foo.bar is null"));
+
+        String second = CodexCliExecutor.requestKey(render("42", "/ws/app@2", "NullPointerException at Foo.java:12"),
+            "build_analysis", null, "gpt-4", "", null);
+        assertEquals(first, second);
+        assertEquals("Foo.bar is null", cache.get(second).getOutput());
+
+        String other = CodexCliExecutor.requestKey(render("42", "/ws/app@2", "NullPointerException at Bar.java:7"),
+            "build_analysis", null, "gpt-4", "", null);
+        assertNull(cache.get(other));
+    }
+
+    @Test
+    public void testRequestIdentityKeepsLogsAndContent() {
+        String identity = AnalysisContext.requestIdentity(render("41", "/ws/app", "the content"));
+
+        assertTrue(identity.startsWith("=== BUILD ANALYSIS ===\n"));
+        assertTrue(identity.contains("[ERROR] Tests failed"));
+        assertTrue(identity.endsWith("the content\n"));
+        assertFalse(identity.contains("BUILD_URL"));
+        assertFalse(identity.contains("/ws/app"));
+        assertEquals("plain text", AnalysisContext.requestIdentity("plain text"));
+    }
+
+    @Test
+    public void testMissThenHit() {
+        CodexResultCache cache = newCache(1024 * 1024, 60000);
+        String key = CodexResultCache.key("log", "general", null, "gpt-4", "", "");
+
+        assertNull(cache.get(key));
+        cache.put(key, success("All good\n\"quoted\""));
+        CodexCliExecutor.CodexAnalysisResult cached = cache.get(key);
+
+        assertNotNull(cached);
+        assertTrue(cached.isSuccess());
+        assertEquals("All good\n\"quoted\"", cached.getOutput());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testFailedResultsAreNotCached() {
+        CodexResultCache cache = newCache(1024 * 1024, 60000);
+        cache.put("failed", new CodexCliExecutor.CodexAnalysisResult("", "boom", false));
+        cache.put("timedOut", CodexCliExecutor.CodexAnalysisResult.timedOut("partial", "timed out"));
+
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotServed() {
+        CodexResultCache cache = newCache(1024 * 1024, -1);
+        cache.put("key", success("old"));
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        CodexResultCache probe = newCache(Long.MAX_VALUE, 60000);
+        probe.put("probe", success("x"));
+        long entrySize = probe.getTotalBytes();
+        probe.clear();
+
+        CodexResultCache cache = newCache(entrySize * 2, 60000);
+        cache.put("a", success("x"));
+        cache.put("b", success("x"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", success("x"));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(2, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() {
+        newCache(1024 * 1024, 60000).put("key", success("persisted"));
+
+        CodexResultCache reloaded = newCache(1024 * 1024, 60000);
+        assertEquals(1, reloaded.getEntryCount());
+        assertEquals("persisted", reloaded.get("key").getOutput());
+    }
+}
@@ -0,0 +1,64 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexRetryPolicyTest {
+
+    @Test
+    public void testTransientErrors() {
+        assertTrue(CodexRetryPolicy.isTransient(1, "Error: 429 Too Many Requests"));
+        assertTrue(CodexRetryPolicy.isTransient(1, "upstream returned 503 Service Unavailable"));
+        assertTrue(CodexRetryPolicy.isTransient(1, "request failed: ECONNRESET"));
+        assertTrue(CodexRetryPolicy.isTransient(1, "Rate limit exceeded, please try again later"));
+        assertTrue(CodexRetryPolicy.isTransient(1, "The model is currently overloaded"));
+        assertTrue(CodexRetryPolicy.isTransient(75, ""));
+        assertTrue(CodexRetryPolicy.isTransient(137, null));
+    }
+
+    @Test
+    public void testPermanentErrors() {
+        assertFalse(CodexRetryPolicy.isTransient(1, "Error: 401 Unauthorized"));
+        assertFalse(CodexRetryPolicy.isTransient(1, "Invalid API key provided"));
+        assertFalse(CodexRetryPolicy.isTransient(1, "model 'gpt-9' not found"));
+        assertFalse(CodexRetryPolicy.isTransient(2, "error: unknown option '--foo'"));
+        assertFalse(CodexRetryPolicy.isTransient(127, "codex: command not found"));
+        // Permanent causes win even if the message also mentions retrying
+        assertFalse(CodexRetryPolicy.isTransient(1, "403 Forbidden, try again later"));
+    }
+
+    @Test
+    public void testUnknownErrorsAreNotRetried() {
+        assertFalse(CodexRetryPolicy.isTransient(1, "something went wrong"));
+        assertFalse(CodexRetryPolicy.isTransient(1, ""));
+    }
+
+    @Test
+    public void testOnlyTheLastErrorLineIsClassified() {
+        String progress = "Reading 500 files\nwaiting for response, timeout in 60s\n";
+        assertFalse(CodexRetryPolicy.isTransient(1, progress + "Error: 401 Unauthorized\n\n"));
+        assertTrue(CodexRetryPolicy.isTransient(1, "authentication ok\n" + progress + "Error: 503 Service Unavailable"));
+        assertEquals("stream disconnected", CodexRetryPolicy.errorLine("progress\n{\"error\":\"stream disconnected\"}\n"));
+        assertEquals("", CodexRetryPolicy.errorLine("\n \n"));
+    }
+
+    @Test
+    public void testBackoffGrowsWithinJitterBounds() {
+        for (int i = 0; i < 100; i++) {
+            long first = CodexRetryPolicy.backoffMillis(0, 1000);
+            assertTrue(first >= 500 && first <= 1000);
+            long third = CodexRetryPolicy.backoffMillis(2, 1000);
+            assertTrue(third >= 2000 && third <= 4000);
+        }
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        assertTrue(CodexRetryPolicy.backoffMillis(30, 1000) <= 60000);
+        assertTrue(CodexRetryPolicy.backoffMillis(0, 0) <= 1);
+    }
+}
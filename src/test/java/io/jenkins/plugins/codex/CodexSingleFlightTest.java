@@ -0,0 +1,121 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexSingleFlightTest {
+
+    @Test
+    public void testIdenticalCallsShareOneStart() throws Exception {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+        AtomicInteger starts = new AtomicInteger();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CodexSingleFlight.Call<String> first = singleFlight.join("key", () -> {
+            starts.incrementAndGet();
+            return work;
+        });
+        CodexSingleFlight.Call<String> second = singleFlight.join("key", () -> {
+            starts.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        assertEquals(1, starts.get());
+        assertFalse(first.isShared());
+        assertTrue(second.isShared());
+
+        work.complete("result");
+        assertEquals("result", first.getFuture().get(5, TimeUnit.SECONDS));
+        assertEquals("result", second.getFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    private static String requestKey(String stage, String workspace) {
+        String content = new AnalysisContext(null, null, stage, "codexAnalysis", "BUILD FAILURE",
+            Collections.singletonMap("BUILD_NUMBER", "7"), null, workspace).buildFocusedContext("build_analysis");
+        return CodexCliExecutor.requestKey(content, "build_analysis", null, "gpt-4", "", null);
+    }
+
+    @Test
+    public void testParallelBranchesWithIdenticalContentShareOneFlight() {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+
+        CodexSingleFlight.Call<String> linux = singleFlight.join(requestKey("linux", "/ws/app"),
+            CompletableFuture::new);
+        CodexSingleFlight.Call<String> windows = singleFlight.join(requestKey("windows", "C:\\ws\\app"),
+            CompletableFuture::new);
+
+        assertFalse(linux.isShared());
+        assertTrue(windows.isShared());
+        assertEquals(1, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testDifferentKeysStartSeparately() {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+        AtomicInteger starts = new AtomicInteger();
+
+        singleFlight.join("a", () -> {
+            starts.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+        singleFlight.join("b", () -> {
+            starts.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+
+        assertEquals(2, starts.get());
+        assertEquals(2, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testCompletedFlightIsNotJoined() throws Exception {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+        singleFlight.join("key", () -> CompletableFuture.completedFuture("old")).getFuture().get();
+
+        CodexSingleFlight.Call<String> next = singleFlight.join("key", () -> CompletableFuture.completedFuture("new"));
+
+        assertFalse(next.isShared());
+        assertEquals("new", next.getFuture().get());
+    }
+
+    @Test
+    public void testWorkIsCancelledOnlyAfterLastCallerLeaves() {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CodexSingleFlight.Call<String> first = singleFlight.join("key", () -> work);
+        CodexSingleFlight.Call<String> second = singleFlight.join("key", () -> work);
+
+        first.getFuture().cancel(true);
+        assertFalse(work.isCancelled());
+
+        second.getFuture().cancel(true);
+        assertTrue(work.isCancelled());
+
+        CodexSingleFlight.Call<String> third = singleFlight.join("key", CompletableFuture::new);
+        assertFalse("A cancelled flight must not be joined", third.isShared());
+    }
+
+    @Test
+    public void testFailuresReachEveryCaller() {
+        CodexSingleFlight singleFlight = new CodexSingleFlight();
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CodexSingleFlight.Call<String> first = singleFlight.join("key", () -> work);
+        CodexSingleFlight.Call<String> second = singleFlight.join("key", () -> work);
+        work.completeExceptionally(new java.io.IOException("boom"));
+
+        assertTrue(first.getFuture().isCompletedExceptionally());
+        assertTrue(second.getFuture().isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,207 @@
+package io.jenkins.plugins.codex;
+
+import hudson.Proc;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CodexWorkerPoolTest {
+
+    /**
+     * Worker process replaying canned output and recording what it was sent
+     */
+    private static class FakeProc extends Proc {
+        private final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+        private final InputStream stdout;
+        private boolean alive = true;
+
+        FakeProc(String output) {
+            this.stdout = new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+
+        @Override
+        public void kill() {
+            alive = false;
+        }
+
+        @Override
+        public int join() {
+            return 0;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return stdout;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return stdin;
+        }
+
+        String sent() {
+            return stdin.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static CodexWorkerPool.Worker newWorker(CodexWorkerPool pool, FakeProc proc) {
+        return newWorker(pool, new CodexWorkerPool.NodePool(""), "codex", proc);
+    }
+
+    private static CodexWorkerPool.Worker newWorker(CodexWorkerPool pool, CodexWorkerPool.NodePool nodePool,
+                                                    String cliPath, FakeProc proc) {
+        return pool.new Worker(nodePool, cliPath, proc);
+    }
+
+    @Test
+    public void testResponseIsMatchedById() throws IOException {
+        FakeProc proc = new FakeProc("{\"id\":7,\"exitCode\":3,\"stdout\":\"other request\"}\n"
+            + "{\"id\":1,\"exitCode\":0,\"stdout\":\"analysis\",\"stderr\":\"warning\"}\n");
+        CodexWorkerPool.Worker worker = newWorker(new CodexWorkerPool(), proc);
+
+        CodexWorkerPool.WorkerResponse response = worker.execute(List.of("exec", "--model", "gpt"), "/ws", null);
+
+        assertEquals(0, response.getExitCode());
+        assertEquals("analysis", response.getStdout());
+        assertEquals("warning", response.getStderr());
+        assertTrue(proc.sent().startsWith("{\"id\":1,"));
+        assertTrue(proc.sent().contains("\"cwd\":\"/ws\""));
+        assertTrue(proc.sent().endsWith("\n"));
+    }
+
+    @Test
+    public void testNonProtocolLinesAreSkipped() throws IOException {
+        FakeProc proc = new FakeProc("Starting codex worker...\n"
+            + "\n"
+            + "[1,2,3]\n"
+            + "{\"id\":1,\"exitCode\":2,\"stdout\":\"\",\"stderr\":\"failed\"}\n");
+        CodexWorkerPool.Worker worker = newWorker(new CodexWorkerPool(), proc);
+
+        CodexWorkerPool.WorkerResponse response = worker.execute(List.of("exec"), null, null);
+
+        assertEquals(2, response.getExitCode());
+        assertEquals("failed", response.getStderr());
+    }
+
+    @Test
+    public void testEndOfStreamFails() {
+        CodexWorkerPool.Worker worker = newWorker(new CodexWorkerPool(), new FakeProc("log line only\n"));
+
+        try {
+            worker.execute(List.of("exec"), null, null);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("closed its output stream"));
+        }
+    }
+
+    @Test
+    public void testUnhealthyWorkers() {
+        CodexWorkerPool pool = new CodexWorkerPool();
+
+        // Recently used and alive: no ping needed
+        CodexWorkerPool.Worker fresh = newWorker(pool, new FakeProc(""));
+        assertTrue(fresh.isHealthy());
+
+        // Dead process
+        FakeProc deadProc = new FakeProc("");
+        CodexWorkerPool.Worker dead = newWorker(pool, deadProc);
+        deadProc.kill();
+        assertFalse(dead.isHealthy());
+
+        // Idle for a while and not answering the ping
+        CodexWorkerPool.Worker silent = newWorker(pool, new FakeProc(""));
+        silent.lastUsed = 0;
+        assertFalse(silent.isHealthy());
+
+        // Idle for a while and answering the ping
+        FakeProc answering = new FakeProc("{\"id\":1,\"exitCode\":0,\"stdout\":\"codex 1.0\"}\n");
+        CodexWorkerPool.Worker idle = newWorker(new CodexWorkerPool(), answering);
+        idle.lastUsed = 0;
+        assertTrue(idle.isHealthy());
+        assertTrue(answering.sent().contains("--version"));
+    }
+
+    @Test
+    public void testEnvironmentIsSentWithEachRequest() throws IOException {
+        FakeProc proc = new FakeProc("{\"id\":1,\"exitCode\":0}\n{\"id\":2,\"exitCode\":0}\n");
+        CodexWorkerPool.Worker worker = newWorker(new CodexWorkerPool(), proc);
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("HTTPS_PROXY", "http://proxy:3128");
+
+        worker.execute(List.of("exec"), null, environment);
+        worker.execute(List.of("exec"), null, null);
+
+        String[] requests = proc.sent().split("\n");
+        assertTrue(requests[0].contains("\"env\":{\"HTTPS_PROXY\":\"http://proxy:3128\"}"));
+        assertFalse(requests[1].contains("\"env\""));
+    }
+
+    @Test
+    public void testOverlongOutputLineFails() {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i <= CodexWorkerPool.MAX_RESPONSE_CHARS; i++) {
+            output.append('x');
+        }
+        CodexWorkerPool.Worker worker = newWorker(new CodexWorkerPool(), new FakeProc(output.append('\n').toString()));
+
+        try {
+            worker.execute(List.of("exec"), null, null);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds"));
+        }
+    }
+
+    @Test
+    public void testIdleWorkersAreMatchedByCliPath() {
+        CodexWorkerPool pool = new CodexWorkerPool();
+        CodexWorkerPool.NodePool nodePool = new CodexWorkerPool.NodePool("agent-1");
+        CodexWorkerPool.Worker codex = newWorker(pool, nodePool, "codex", new FakeProc(""));
+        nodePool.offerIdle(codex);
+
+        assertNull(nodePool.pollIdle("/opt/codex/bin/codex"));
+        assertSame(codex, nodePool.pollIdle("codex"));
+        assertNull(nodePool.pollIdle("codex"));
+    }
+
+    @Test
+    public void testPoolSizeIsSharedByCliPaths() {
+        CodexWorkerPool pool = new CodexWorkerPool();
+        CodexWorkerPool.NodePool nodePool = new CodexWorkerPool.NodePool("agent-1");
+        assertTrue(nodePool.reserve(2));
+        assertTrue(nodePool.reserve(2));
+        // Both slots are leased
+        assertFalse(nodePool.reserve(2));
+
+        // An idle worker of another CLI makes room for the new one
+        FakeProc otherProc = new FakeProc("");
+        nodePool.offerIdle(newWorker(pool, nodePool, "/opt/codex/bin/codex", otherProc));
+        assertTrue(nodePool.reserve(2));
+        assertFalse(otherProc.isAlive());
+        assertFalse(nodePool.reserve(2));
+    }
+}
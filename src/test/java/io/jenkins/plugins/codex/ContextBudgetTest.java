@@ -0,0 +1,30 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ContextBudgetTest {
+
+    @Test
+    public void testPerModelOverrides() {
+        String overrides = "gpt-4o-mini=60000\no3 = 150000\nbroken=abc";
+
+        assertEquals(60000, ContextBudget.parseBudget(overrides, "gpt-4o-mini", 100000));
+        assertEquals(150000, ContextBudget.parseBudget(overrides, "o3", 100000));
+        assertEquals(100000, ContextBudget.parseBudget(overrides, "broken", 100000));
+        assertEquals(100000, ContextBudget.parseBudget(overrides, "", 100000));
+        assertEquals(0, ContextBudget.parseBudget(null, "gpt-4o", 0));
+    }
+
+    @Test
+    public void testAllocateInPriorityOrder() {
+        assertArrayEquals(new long[] {100, 50, 10}, ContextBudget.allocate(1000, 100, 50, 10));
+        assertArrayEquals(new long[] {100, 50, 0}, ContextBudget.allocate(150, 100, 50, 10));
+        assertArrayEquals(new long[] {80, 0, 0}, ContextBudget.allocate(80, 100, 50, 10));
+        assertArrayEquals(new long[] {0, 0}, ContextBudget.allocate(-5, 100, 50));
+    }
+}
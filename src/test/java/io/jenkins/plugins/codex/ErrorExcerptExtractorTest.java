@@ -0,0 +1,126 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ErrorExcerptExtractorTest {
+
+    private static String numberedLog(int lines, int... errorLines) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            boolean error = false;
+            for (int errorLine : errorLines) {
+                error |= errorLine == i;
+            }
+            log.append(error ? "[ERROR] failure at " + i : "line " + i).append('\n');
+        }
+        return log.toString();
+    }
+
+    @Test
+    public void testWindowAroundMatch() {
+        String excerpt = new ErrorExcerptExtractor(null, 2).extract(numberedLog(100, 50), null);
+
+        assertEquals("--- line 48 ---\nline 48\nline 49\n[ERROR] failure at 50\nline 51\nline 52\n", excerpt);
+    }
+
+    @Test
+    public void testOverlappingWindowsAreMerged() {
+        String excerpt = new ErrorExcerptExtractor(null, 2).extract(numberedLog(100, 10, 14, 60), null);
+
+        assertEquals("--- line 8 ---\nline 8\nline 9\n[ERROR] failure at 10\nline 11\nline 12\nline 13\n"
+            + "[ERROR] failure at 14\nline 15\nline 16\n"
+            + "--- line 58 ---\nline 58\nline 59\n[ERROR] failure at 60\nline 61\nline 62\n", excerpt);
+    }
+
+    @Test
+    public void testWindowsAtLogBoundaries() {
+        String excerpt = new ErrorExcerptExtractor(null, 3).extract(numberedLog(5, 1, 5), null);
+
+        assertEquals("--- line 1 ---\n[ERROR] failure at 1\nline 2\nline 3\nline 4\n[ERROR] failure at 5\n", excerpt);
+    }
+
+    @Test
+    public void testColouredAndTimestampedLinesMatchAnchoredSignatures() {
+        ErrorExcerptExtractor extractor = new ErrorExcerptExtractor(null, 0);
+
+        assertTrue(extractor.isErrorLine("\u001B[1;31m[ERROR]\u001B[0m Failed to execute goal"));
+        assertTrue(extractor.isErrorLine("\u001B[8mha:AAAAWB+LCAAAAAAAAP9b\u001B[0mnpm ERR! code ELIFECYCLE"));
+        assertTrue(extractor.isErrorLine("[2024-05-01T10:15:30.123Z] FAILURE: Build failed with an exception."));
+        assertFalse(extractor.isErrorLine("\u001B[32m[INFO]\u001B[0m BUILD SUCCESS"));
+
+        String log = "line 1\n\u001B[1;31m[ERROR]\u001B[0m compilation failed\nline 3\n";
+        assertEquals("--- line 2 ---\n\u001B[1;31m[ERROR]\u001B[0m compilation failed\n", extractor.extract(log, null));
+    }
+
+    @Test
+    public void testNoMatchKeepsContent() {
+        String log = numberedLog(20);
+
+        assertSame(log, new ErrorExcerptExtractor(null, 2).extract(log, null));
+    }
+
+    @Test
+    public void testBuiltInSignatures() throws IOException {
+        String log = "ok\n"
+            + "* What went wrong:\n"
+            + "npm ERR! code ELIFECYCLE\n"
+            + "FAILED tests/test_api.py::test_login - AssertionError\n"
+            + "src/Main.java:12: error: cannot find symbol\n"
+            + "--- FAIL: TestParse (0.00s)\n"
+            + "java.lang.NullPointerException: value\n"
+            + "Tests run: 12, Failures: 0, Errors: 0, Skipped: 0\n"
+            + "all good\n";
+
+        ErrorExcerptExtractor.Result result = new ErrorExcerptExtractor(null, 0)
+            .extract(new StringReader(log), new StringBuilder());
+
+        assertEquals(6, result.getMatches());
+        assertEquals(1, result.getRegions());
+        assertEquals(9, result.getInputLines());
+    }
+
+    @Test
+    public void testExtraSignatures() {
+        String log = "step 1\nstep 2\nDEPLOY ABORTED: quota exceeded\nstep 4\n";
+
+        assertEquals("--- line 3 ---\nDEPLOY ABORTED: quota exceeded\n",
+            new ErrorExcerptExtractor("# deployment\nDEPLOY ABORTED\n", 0).extract(log, null));
+    }
+
+    @Test
+    public void testInvalidSignaturesAreReported() {
+        List<String> errors = new ArrayList<>();
+        List<String> signatures = ErrorExcerptExtractor.parseSignatures("valid\n(unclosed\n\n# comment\n", errors);
+
+        assertEquals(1, signatures.size());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).startsWith("Line 2"));
+    }
+
+    @Test
+    public void testExcerptIsCapped() throws IOException {
+        int lines = ErrorExcerptExtractor.MAX_EXCERPT_LINES + 500;
+        int[] errors = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            errors[i] = i + 1;
+        }
+        StringBuilder excerpt = new StringBuilder();
+
+        ErrorExcerptExtractor.Result result = new ErrorExcerptExtractor(null, 0)
+            .extract(new StringReader(numberedLog(lines, errors)), excerpt);
+
+        assertEquals(ErrorExcerptExtractor.MAX_EXCERPT_LINES, result.getExcerptLines());
+        assertEquals(lines, result.getMatches());
+        assertTrue(excerpt.toString().endsWith("500 later error lines omitted]\n"));
+    }
+}
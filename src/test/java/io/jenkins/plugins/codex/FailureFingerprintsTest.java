@@ -0,0 +1,112 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FailureFingerprintsTest {
+
+    private final ErrorExcerptExtractor signatures = new ErrorExcerptExtractor(null, 0);
+
+    @Test
+    public void testNormalizeMasksVariableParts() {
+        assertEquals("[ERROR] <path>:[<n>] cannot find symbol",
+            FailureFingerprints.normalize("[ERROR] /home/jenkins/ws/src/Main.java:[12,5] cannot find symbol"));
+        assertEquals("ERROR: fetch of <url> failed after <n> ms (request <uuid>)",
+            FailureFingerprints.normalize(
+                "ERROR:  fetch of https://repo.example.com/a/b.jar failed after 1500 ms (request 123e4567-e89b-12d3-a456-426614174000)"));
+        assertEquals("fatal: bad object <hash> at <hash>",
+            FailureFingerprints.normalize("fatal: bad object 3f2a9c1d7e at 0x7ffee4b2"));
+        assertEquals("Build step failed with exit code <n>",
+            FailureFingerprints.normalize("\u001B[31mBuild step failed with exit code 2\u001B[0m"));
+    }
+
+    @Test
+    public void testSameFailureHasSameFingerprint() {
+        assertEquals(FailureFingerprints.fingerprint("[ERROR] Tests run: 12, Failures: 2 in /ws/build-41/target"),
+            FailureFingerprints.fingerprint("[ERROR] Tests run: 13, Failures: 1 in /ws/build-42/target"));
+        assertNotEquals(FailureFingerprints.fingerprint("[ERROR] cannot find symbol"),
+            FailureFingerprints.fingerprint("[ERROR] incompatible types"));
+    }
+
+    @Test
+    public void testScanKeepsErrorLinesOnly() throws IOException {
+        FailureFingerprints fingerprints = FailureFingerprints.scan(new StringReader(
+            "[INFO] Building 1.0\n"
+            + "[ERROR] Flaky mirror https://mirror.example.com timed out\n"
+            + "[ERROR] Flaky mirror https://mirror2.example.com timed out\n"
+            + "[INFO] BUILD SUCCESS\n"), signatures);
+
+        assertEquals(1, fingerprints.size());
+        assertFalse(fingerprints.isTruncated());
+        assertTrue(fingerprints.contains(FailureFingerprints.fingerprint("[ERROR] Flaky mirror https://other timed out")));
+        assertFalse(fingerprints.contains(FailureFingerprints.fingerprint("[INFO] Building 1.0")));
+    }
+
+    @Test
+    public void testScanIsCapped() throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < FailureFingerprints.MAX_FINGERPRINTS + 10; i++) {
+            // Letters are not masked, so every line is a distinct signature
+            StringBuilder name = new StringBuilder();
+            for (int n = i; n > 0 || name.length() == 0; n /= 26) {
+                name.append((char) ('a' + n % 26));
+            }
+            log.append("[ERROR] failure in ").append(name).append('\n');
+        }
+
+        FailureFingerprints fingerprints = FailureFingerprints.scan(new StringReader(log.toString()), signatures);
+
+        assertTrue(fingerprints.size() <= FailureFingerprints.MAX_FINGERPRINTS);
+        assertTrue(fingerprints.isTruncated());
+    }
+
+    @Test
+    public void testNewSignaturesOnly() throws IOException {
+        FailureFingerprints baseline = FailureFingerprints.scan(new StringReader(
+            "[ERROR] Flaky mirror https://mirror.example.com timed out\n"), signatures);
+        String content = "[INFO] Compiling 12 files\n"
+            + "[ERROR] Flaky mirror https://mirror3.example.com timed out\n"
+            + "[ERROR] /ws/src/Main.java:[12,5] cannot find symbol\n"
+            + "[ERROR] /ws/src/Other.java:[40,9] cannot find symbol\n"
+            + "[INFO] done\n";
+
+        FailureFingerprints.Comparison result = baseline.newSignatures(content, signatures, "demo #41", null);
+
+        assertTrue(result.isReduced());
+        assertEquals("=== NEW ERROR SIGNATURES (not seen in demo #41) ===\n"
+            + "line 3: [ERROR] /ws/src/Main.java:[12,5] cannot find symbol  [2 occurrences]\n"
+            + "[1 error lines also seen in demo #41 omitted]\n", result.getText());
+    }
+
+    @Test
+    public void testColouredLinesMatchPlainBaseline() throws IOException {
+        FailureFingerprints baseline = FailureFingerprints.scan(new StringReader(
+            "\u001B[8mha:AAAAWB+LCAAAAAAAAP9b\u001B[0m[ERROR] known problem 1\n"), signatures);
+        String content = "[2024-05-01T10:15:30.123Z] \u001B[1;31m[ERROR]\u001B[0m known problem 7\n"
+            + "\u001B[1;31m[ERROR]\u001B[0m new problem\n";
+
+        assertEquals(1, baseline.size());
+        assertEquals("=== NEW ERROR SIGNATURES (not seen in demo #41) ===\n"
+            + "line 2: [ERROR] new problem\n"
+            + "[1 error lines also seen in demo #41 omitted]\n",
+            baseline.newSignatures(content, signatures, "demo #41", null).getText());
+    }
+
+    @Test
+    public void testNothingNewKeepsContent() throws IOException {
+        FailureFingerprints baseline = FailureFingerprints.scan(new StringReader("[ERROR] known problem 1\n"), signatures);
+        String content = "[ERROR] known problem 2\nother output\n";
+
+        FailureFingerprints.Comparison result = baseline.newSignatures(content, signatures, "demo #41", null);
+
+        assertFalse(result.isReduced());
+        assertSame(content, result.getText());
+    }
+}
@@ -0,0 +1,147 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogCompactorTest {
+
+    private static final String TRACE = "java.lang.IllegalStateException: boom\n"
+        + "\tat com.example.Service.call(Service.java:42)\n"
+        + "\tat com.example.Controller.handle(Controller.java:17)\n"
+        + "\tat java.base/java.lang.Thread.run(Thread.java:833)\n";
+
+    @Test
+    public void testStripsAnsiCodesAndConsoleNotes() {
+        String log = "\u001B[8mha:AAAAWB+LCAAAAAAAAP9b\u001B[0m[Pipeline] sh\n"
+            + "\u001B[1;31mERROR\u001B[0m: compilation failed\n";
+
+        assertEquals("[Pipeline] sh\nERROR: compilation failed\n", LogCompactor.compact(log, null));
+    }
+
+    @Test
+    public void testKeepsFinalStateOfRedrawnLines() {
+        String log = "Resolving deltas:  10%\rResolving deltas:  50%\rResolving deltas: done.\r\n";
+
+        assertEquals("Resolving deltas: done.\n", LogCompactor.compact(log, null));
+    }
+
+    @Test
+    public void testStripsLeadingTimestamps() {
+        String log = "[2024-05-01T10:15:30.123Z] Building module\n12:00:01 Tests run: 5\n";
+
+        assertEquals("Building module\nTests run: 5\n", LogCompactor.compact(log, null));
+    }
+
+    @Test
+    public void testTimestampedStackTracesKeepTheirFrames() {
+        String stamped = TRACE.replaceAll("(?m)^", "[2024-05-01T10:15:30.123Z] ");
+        String log = "first failure\n" + stamped + "retrying\n" + stamped;
+
+        String compacted = LogCompactor.compact(log, null);
+
+        assertTrue(compacted.startsWith("first failure\n" + TRACE));
+        assertTrue(compacted.endsWith("java.lang.IllegalStateException: boom\n"
+            + "\t[3 stack frames as in its first occurrence omitted]\n"));
+    }
+
+    @Test
+    public void testFramesWithoutIndentationAreRecognized() {
+        String flat = TRACE.replace("\tat ", "at ");
+        String log = flat + flat.replace("boom", "bang");
+
+        String compacted = LogCompactor.compact(log, null);
+
+        assertTrue(compacted.contains("java.lang.IllegalStateException: bang\n"
+            + "\t[3 stack frames as in the stack trace of \"java.lang.IllegalStateException: boom\" omitted]\n"));
+    }
+
+    @Test
+    public void testRemovesProgressLines() {
+        String log = "[INFO] Building app\n"
+            + "Progress (1): 12/48 kB\n"
+            + "Progress (1): 48/48 kB\n"
+            + "[INFO] Downloaded from central: https://repo.maven.apache.org/maven2/junit.pom (2 kB)\n"
+            + "[INFO] BUILD FAILURE\n";
+
+        assertEquals("[INFO] Building app\n[3 progress lines removed]\n[INFO] BUILD FAILURE\n",
+            LogCompactor.compact(log, null));
+    }
+
+    @Test
+    public void testCollapsesRepeatedLines() {
+        StringBuilder log = new StringBuilder("start\n");
+        for (int i = 0; i < 50; i++) {
+            log.append("WARNING: deprecated API\n");
+        }
+        log.append("end\n");
+
+        assertEquals("start\nWARNING: deprecated API\n[previous line repeated 49 more times]\nend\n",
+            LogCompactor.compact(log.toString(), null));
+    }
+
+    @Test
+    public void testCollapsesDuplicateStackTraces() {
+        String log = "first failure\n" + TRACE + "retrying\n" + TRACE + "giving up\n";
+
+        String compacted = LogCompactor.compact(log, null);
+
+        assertEquals("first failure\n" + TRACE + "retrying\n"
+            + "java.lang.IllegalStateException: boom\n"
+            + "\t[3 stack frames as in its first occurrence omitted]\n"
+            + "giving up\n", compacted);
+    }
+
+    @Test
+    public void testCollapsesRepeatedFramesOfRecursion() {
+        StringBuilder log = new StringBuilder("java.lang.StackOverflowError\n");
+        for (int i = 0; i < 100; i++) {
+            log.append("\tat com.example.Tree.walk(Tree.java:10)\n");
+        }
+
+        assertEquals("java.lang.StackOverflowError\n\tat com.example.Tree.walk(Tree.java:10)\n"
+            + "\t[previous frame repeated 99 more times]\n", LogCompactor.compact(log.toString(), null));
+    }
+
+    @Test
+    public void testCutsOverlongLines() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < LogCompactor.MAX_LINE_CHARS * 3; i++) {
+            line.append('x');
+        }
+
+        String compacted = LogCompactor.compact(line.toString(), null);
+
+        assertTrue(compacted.length() < LogCompactor.MAX_LINE_CHARS + 100);
+        assertTrue(compacted.contains("line of " + LogCompactor.MAX_LINE_CHARS * 3 + " characters cut"));
+    }
+
+    @Test
+    public void testStatsAndTracesSharedAcrossCalls() throws IOException {
+        LogCompactor compactor = new LogCompactor();
+        StringBuilder compacted = new StringBuilder();
+
+        compactor.compact(new StringReader("recent logs\n" + TRACE), compacted);
+        LogCompactor.Stats stats = compactor.compact(new StringReader("content\n" + TRACE + TRACE), compacted);
+
+        assertEquals(14, stats.getInputLines());
+        assertEquals(2, stats.getCollapsedTraces());
+        assertEquals(compacted.length(), stats.getOutputChars());
+        assertEquals((double) stats.getOutputChars() / stats.getInputChars(), stats.getRatio(), 0.0001);
+        assertTrue(stats.getRatio() < 0.8);
+        assertTrue(stats.toString().contains("2 duplicate stack traces collapsed"));
+    }
+
+    @Test
+    public void testNothingToCompact() {
+        assertNull(LogCompactor.compact((String) null, null));
+        assertEquals("", LogCompactor.compact("", null));
+        assertEquals("plain line\n", LogCompactor.compact("plain line", null));
+    }
+}
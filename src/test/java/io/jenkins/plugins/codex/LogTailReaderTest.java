@@ -0,0 +1,123 @@
+package io.jenkins.plugins.codex;
+
+import hudson.console.AnnotatedLargeText;
+import hudson.model.Run;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LogTailReaderTest {
+
+    /**
+     * Log text writing the given log from the requested offset on
+     */
+    @SuppressWarnings("unchecked")
+    private static AnnotatedLargeText<Run<?, ?>> logText(String log) throws IOException {
+        byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+        AnnotatedLargeText<Run<?, ?>> text = mock(AnnotatedLargeText.class);
+        when(text.length()).thenReturn((long) bytes.length);
+        when(text.writeLogTo(anyLong(), any(OutputStream.class))).thenAnswer(invocation -> {
+            int start = (int) (long) invocation.getArgument(0);
+            OutputStream out = invocation.getArgument(1);
+            out.write(bytes, start, bytes.length - start);
+            return (long) bytes.length;
+        });
+        return text;
+    }
+
+    private static Run<?, ?> runWith(AnnotatedLargeText<Run<?, ?>> text) {
+        Run<?, ?> run = mock(Run.class);
+        doReturn(text).when(run).getLogText();
+        return run;
+    }
+
+    private static String numberedLog(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testLastLinesAreReadFromNearTheEnd() throws IOException {
+        String log = numberedLog(10000);
+        AnnotatedLargeText<Run<?, ?>> text = logText(log);
+
+        List<String> tail = LogTailReader.tail(runWith(text), 3, 1000);
+
+        assertEquals(Arrays.asList("line 9998", "line 9999", "line 10000"), tail);
+        // One byte before the limit, to tell whether the first line is complete
+        verify(text).writeLogTo(eq((long) log.length() - 1000 - 1), any(OutputStream.class));
+    }
+
+    @Test
+    public void testShortLogIsReadWhole() throws IOException {
+        AnnotatedLargeText<Run<?, ?>> text = logText("first\n\nlast");
+
+        assertEquals(Arrays.asList("first", "", "last"), LogTailReader.tail(runWith(text), 10, 1000));
+        verify(text).writeLogTo(eq(0L), any(OutputStream.class));
+    }
+
+    @Test
+    public void testEmptyLog() throws IOException {
+        assertEquals(Collections.emptyList(), LogTailReader.tail(runWith(logText("")), 10, 1000));
+    }
+
+    @Test
+    public void testByteLimitDropsPartialFirstLine() throws IOException {
+        // 12 bytes reach into the middle of "line 99"
+        List<String> tail = LogTailReader.tail(runWith(logText(numberedLog(100))), 50, 12);
+
+        assertEquals(Arrays.asList("line 100"), tail);
+    }
+
+    @Test
+    public void testByteLimitAtLineBoundaryKeepsLine() throws IOException {
+        List<String> tail = LogTailReader.tail(runWith(logText(numberedLog(100))), 50,
+            "line 99\nline 100\n".length());
+
+        assertEquals(Arrays.asList("line 99", "line 100"), tail);
+    }
+
+    @Test
+    public void testLineLimit() throws IOException {
+        List<String> tail = LogTailReader.tail(runWith(logText(numberedLog(100))), 2, LogTailReader.DEFAULT_MAX_BYTES);
+
+        assertEquals(Arrays.asList("line 99", "line 100"), tail);
+    }
+
+    @Test
+    public void testRemovesCarriageReturns() throws IOException {
+        List<String> tail = LogTailReader.tail(runWith(logText("[Pipeline] sh\r\n+ make\r\n")), 10, 1000);
+
+        assertEquals(Arrays.asList("[Pipeline] sh", "+ make"), tail);
+    }
+
+    @Test
+    public void testNoLimitReadsNothing() throws IOException {
+        Run<?, ?> run = mock(Run.class);
+
+        assertEquals(Collections.emptyList(), LogTailReader.tail(run, 0, 1000));
+        assertEquals(Collections.emptyList(), LogTailReader.tail(run, 10, 0));
+        verifyNoInteractions(run);
+    }
+}
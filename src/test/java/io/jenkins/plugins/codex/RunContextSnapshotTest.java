@@ -0,0 +1,72 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RunContextSnapshotTest {
+
+    private static Map<String, String> environment() {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("BRANCH_NAME", "main");
+        environment.put("GITHUB_TOKEN", "secret-value");
+        environment.put("DB_PASSWORD", "hunter2");
+        environment.put("BUILD_NUMBER", "42");
+        return environment;
+    }
+
+    @Test
+    public void testFiltersSensitiveVariables() {
+        List<Map.Entry<String, String>> visible = new RunContextSnapshot().getVisibleEnvironment(environment());
+
+        assertEquals(2, visible.size());
+        assertEquals("BRANCH_NAME", visible.get(0).getKey());
+        assertEquals("BUILD_NUMBER", visible.get(1).getKey());
+    }
+
+    @Test
+    public void testEqualEnvironmentsGiveEqualResults() {
+        RunContextSnapshot snapshot = new RunContextSnapshot();
+
+        List<Map.Entry<String, String>> first = snapshot.getVisibleEnvironment(environment());
+
+        assertEquals(first, snapshot.getVisibleEnvironment(environment()));
+    }
+
+    @Test
+    public void testEqualEnvironmentIsNotFilteredAgain() {
+        RunContextSnapshot snapshot = new RunContextSnapshot();
+        List<Map.Entry<String, String>> first = snapshot.getVisibleEnvironment(environment());
+
+        // The same list, not a filtered copy
+        assertSame(first, snapshot.getVisibleEnvironment(environment()));
+        try {
+            first.clear();
+            fail("The shared list must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testChangedEnvironmentIsFilteredAgain() {
+        RunContextSnapshot snapshot = new RunContextSnapshot();
+        Map<String, String> environment = environment();
+        List<Map.Entry<String, String>> first = snapshot.getVisibleEnvironment(environment);
+
+        // e.g. a step inside withEnv
+        environment.put("STAGE", "deploy");
+        List<Map.Entry<String, String>> changed = snapshot.getVisibleEnvironment(environment);
+
+        assertEquals(3, changed.size());
+        assertEquals(2, first.size());
+        assertNotSame(first, changed);
+    }
+}
@@ -0,0 +1,170 @@
+package io.jenkins.plugins.codex;
+
+import hudson.console.AnnotatedLargeText;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.LogAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StageLogExtractorTest {
+
+    private FlowExecution execution;
+    private BlockStartNode build;
+    private FlowNode compile;
+    private FlowNode unit;
+    private FlowNode integration;
+    private FlowNode windows;
+
+    /**
+     * Graph of stage('Build') { sh } followed by stage('Test') { parallel linux: { parallel unit, integration },
+     * windows }, with the branch tips as current heads
+     */
+    @Before
+    public void setUp() throws IOException {
+        execution = mock(FlowExecution.class);
+        build = block("3", "Build", false);
+        compile = step("4", "compiling\n", Collections.singletonList(build), build);
+        BlockStartNode test = block("5", "Test", false, compile);
+        BlockStartNode linux = block("6", "linux", true, test);
+        BlockStartNode windowsBranch = block("7", "windows", true, test);
+        BlockStartNode unitBranch = block("8", "unit", true, linux);
+        BlockStartNode integrationBranch = block("9", "integration", true, linux);
+        unit = step("10", "unit tests\n", Arrays.asList(unitBranch, linux, test), unitBranch);
+        integration = step("11", "integration tests\n", Arrays.asList(integrationBranch, linux, test),
+            integrationBranch);
+        windows = step("12", "windows tests\n", Arrays.asList(windowsBranch, test), windowsBranch);
+        when(execution.getCurrentHeads()).thenReturn(Arrays.asList(windows, integration, unit));
+    }
+
+    private BlockStartNode block(String id, String name, boolean branch, FlowNode... parents) {
+        BlockStartNode block = mock(BlockStartNode.class);
+        lenient().when(block.getId()).thenReturn(id);
+        lenient().when(block.getParents()).thenReturn(Arrays.asList(parents));
+        lenient().when(block.getDisplayName()).thenReturn(name);
+        LabelAction label = mock(LabelAction.class);
+        lenient().when(block.getAction(LabelAction.class)).thenReturn(label);
+        if (branch) {
+            ThreadNameAction threadName = mock(ThreadNameAction.class);
+            lenient().when(block.getAction(ThreadNameAction.class)).thenReturn(threadName);
+        }
+        return block;
+    }
+
+    private FlowNode step(String id, String output, List<BlockStartNode> enclosingBlocks, FlowNode... parents)
+            throws IOException {
+        FlowNode node = mock(FlowNode.class);
+        lenient().when(node.getId()).thenReturn(id);
+        lenient().when(node.getParents()).thenReturn(Arrays.asList(parents));
+        lenient().when(node.iterateEnclosingBlocks()).thenAnswer(invocation -> enclosingBlocks);
+        LogAction logAction = mock(LogAction.class);
+        AnnotatedLargeText<?> text = logText(output);
+        lenient().doReturn(text).when(logAction).getLogText();
+        lenient().when(node.getAction(LogAction.class)).thenReturn(logAction);
+        lenient().when(execution.getNode(id)).thenReturn(node);
+        return node;
+    }
+
+    private static AnnotatedLargeText<?> logText(String output) throws IOException {
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        AnnotatedLargeText<?> text = mock(AnnotatedLargeText.class);
+        lenient().when(text.length()).thenReturn((long) bytes.length);
+        lenient().when(text.writeLogTo(anyLong(), any(OutputStream.class))).thenAnswer(invocation -> {
+            int start = (int) (long) invocation.getArgument(0);
+            OutputStream out = invocation.getArgument(1);
+            out.write(bytes, start, bytes.length - start);
+            return (long) bytes.length;
+        });
+        return text;
+    }
+
+    @Test
+    public void testSelectsTheNodesOfTheStage() throws IOException {
+        assertEquals(Collections.singletonList("compiling"),
+            StageLogExtractor.getStageLog("job#1", execution, "Build", 100, 10000));
+        assertNull(StageLogExtractor.getStageLog("job#1", execution, "Deploy", 100, 10000));
+    }
+
+    @Test
+    public void testNestedParallelBranchesBelongToTheStage() throws IOException {
+        // In execution order, although the graph is walked from the heads
+        assertEquals(Arrays.asList("unit tests", "integration tests", "windows tests"),
+            StageLogExtractor.getStageLog("job#2", execution, "Test", 100, 10000));
+        // Branches are not stages
+        assertNull(StageLogExtractor.getStageLog("job#2", execution, "linux", 100, 10000));
+        assertNull(StageLogExtractor.getStageLog("job#2", execution, "unit", 100, 10000));
+    }
+
+    @Test
+    public void testByteLimitReadsOnlyTheLastNodes() throws IOException {
+        // All of the windows output and a partial line of the integration output
+        assertEquals(Collections.singletonList("windows tests"),
+            StageLogExtractor.getStageLog("job#3", execution, "Test", 100, "windows tests\n".length() + 6));
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenTheHeadsChange() throws IOException {
+        StageLogExtractor.getStageLog("job#4", execution, "Build", 100, 10000);
+        StageLogExtractor.getStageLog("job#4", execution, "Test", 100, 10000);
+        // Both lookups used one walk of the graph
+        verify(compile, times(1)).iterateEnclosingBlocks();
+
+        // The build went on: a new step in the Build stage became the head
+        FlowNode link = step("13", "linking\n", Collections.singletonList(build), windows, integration, unit);
+        when(execution.getCurrentHeads()).thenReturn(Collections.singletonList(link));
+
+        assertEquals(Arrays.asList("compiling", "linking"),
+            StageLogExtractor.getStageLog("job#4", execution, "Build", 100, 10000));
+        verify(compile, times(2)).iterateEnclosingBlocks();
+    }
+
+    @Test
+    public void testTailOffsetsReadWholeLogsWithinBudget() {
+        assertArrayEquals(new long[] {0, 0, 0}, StageLogExtractor.tailOffsets(new long[] {10, 20, 30}, 100));
+    }
+
+    @Test
+    public void testTailOffsetsSkipOldLogs() {
+        // 25 bytes: all of the last log, the end of the one before, nothing of the first
+        assertArrayEquals(new long[] {-1, 5, 0}, StageLogExtractor.tailOffsets(new long[] {10, 20, 10}, 25));
+    }
+
+    @Test
+    public void testTailOffsetsSkipEmptyLogs() {
+        assertArrayEquals(new long[] {5, -1, 0}, StageLogExtractor.tailOffsets(new long[] {10, 0, 10}, 15));
+    }
+
+    @Test
+    public void testToLinesDropsPartialFirstLine() {
+        assertEquals(Arrays.asList("second", "third"), StageLogExtractor.toLines("rst\nsecond\r\nthird\n", true, 10));
+        assertEquals(Arrays.asList("rst", "second", "third"), StageLogExtractor.toLines("rst\nsecond\nthird", false, 10));
+        assertEquals(Collections.emptyList(), StageLogExtractor.toLines("no newline", true, 10));
+    }
+
+    @Test
+    public void testToLinesKeepsLastLines() {
+        assertEquals(Arrays.asList("c", "d"), StageLogExtractor.toLines("a\nb\nc\nd\n", false, 2));
+    }
+}
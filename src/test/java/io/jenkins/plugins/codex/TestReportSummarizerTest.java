@@ -0,0 +1,154 @@
+package io.jenkins.plugins.codex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TestReportSummarizerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final String JUNIT_REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<testsuite name=\"com.example.ParserTest\" tests=\"4\" failures=\"1\" errors=\"1\" skipped=\"1\">\n"
+        + "  <testcase classname=\"com.example.ParserTest\" name=\"parsesEmptyInput\" time=\"0.01\"/>\n"
+        + "  <testcase classname=\"com.example.ParserTest\" name=\"parsesNumbers\" time=\"0.02\">\n"
+        + "    <failure message=\"expected:&lt;1&gt; but was:&lt;2&gt;\" type=\"java.lang.AssertionError\">"
+        + "java.lang.AssertionError: expected:&lt;1&gt; but was:&lt;2&gt;\n"
+        + "\tat org.junit.Assert.fail(Assert.java:89)\n"
+        + "\tat com.example.ParserTest.parsesNumbers(ParserTest.java:42)\n"
+        + "</failure>\n"
+        + "    <system-out>lots of output that should not be kept</system-out>\n"
+        + "  </testcase>\n"
+        + "  <testcase classname=\"com.example.ParserTest\" name=\"parsesDates\">\n"
+        + "    <error message=\"boom\" type=\"java.lang.IllegalStateException\"><![CDATA[java.lang.IllegalStateException: boom\n"
+        + "\tat com.example.Parser.parseDate(Parser.java:10)]]></error>\n"
+        + "  </testcase>\n"
+        + "  <testcase classname=\"com.example.ParserTest\" name=\"parsesLater\"><skipped/></testcase>\n"
+        + "</testsuite>\n";
+
+    private static final String TESTNG_REPORT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<testng-results total=\"3\" passed=\"1\" failed=\"1\" skipped=\"1\">\n"
+        + "  <suite name=\"Suite\"><test name=\"Test\">\n"
+        + "    <class name=\"com.example.ApiTest\">\n"
+        + "      <test-method status=\"PASS\" name=\"setUp\" is-config=\"true\"/>\n"
+        + "      <test-method status=\"PASS\" name=\"getsUser\"/>\n"
+        + "      <test-method status=\"FAIL\" name=\"deletesUser\">\n"
+        + "        <exception class=\"java.lang.AssertionError\">\n"
+        + "          <message><![CDATA[expected 204]]></message>\n"
+        + "          <full-stacktrace><![CDATA[java.lang.AssertionError: expected 204\n"
+        + "\tat com.example.ApiTest.deletesUser(ApiTest.java:30)]]></full-stacktrace>\n"
+        + "        </exception>\n"
+        + "      </test-method>\n"
+        + "      <test-method status=\"SKIP\" name=\"updatesUser\"/>\n"
+        + "    </class>\n"
+        + "  </test></suite>\n"
+        + "</testng-results>\n";
+
+    private static TestReportSummarizer.Summary summarize(String... reports) {
+        TestReportSummarizer.Summary summary = new TestReportSummarizer.Summary();
+        for (String report : reports) {
+            summary.parse(new ByteArrayInputStream(report.getBytes(StandardCharsets.UTF_8)));
+        }
+        return summary;
+    }
+
+    @Test
+    public void testJUnitReport() {
+        String summary = summarize(JUNIT_REPORT).render();
+
+        assertTrue(summary.startsWith("=== TEST REPORT SUMMARY ===\n"
+            + "Reports: 1, Tests: 4, Failures: 1, Errors: 1, Skipped: 1\n"));
+        assertTrue(summary.contains("FAILURE: com.example.ParserTest.parsesNumbers\n"
+            + "  Message: expected:<1> but was:<2>\n"
+            + "  java.lang.AssertionError: expected:<1> but was:<2>\n"
+            + "  at org.junit.Assert.fail(Assert.java:89)\n"));
+        assertTrue(summary.contains("ERROR: com.example.ParserTest.parsesDates\n"
+            + "  Message: boom\n"
+            + "  java.lang.IllegalStateException: boom\n"
+            + "  at com.example.Parser.parseDate(Parser.java:10)\n"));
+        assertFalse(summary.contains("parsesEmptyInput"));
+        assertFalse(summary.contains("system-out"));
+        assertFalse(summary.contains("lots of output"));
+    }
+
+    @Test
+    public void testTestNGReport() {
+        String summary = summarize(TESTNG_REPORT).render();
+
+        assertTrue(summary.contains("Reports: 1, Tests: 3, Failures: 1, Errors: 0, Skipped: 1\n"));
+        assertTrue(summary.contains("FAILURE: com.example.ApiTest.deletesUser\n"
+            + "  Message: expected 204\n"
+            + "  java.lang.AssertionError: expected 204\n"
+            + "  at com.example.ApiTest.deletesUser(ApiTest.java:30)\n"));
+        assertFalse(summary.contains("getsUser"));
+    }
+
+    @Test
+    public void testStackTracesAreShortened() {
+        StringBuilder trace = new StringBuilder("java.lang.StackOverflowError\n");
+        for (int i = 0; i < 100; i++) {
+            trace.append("\tat com.example.Recursive.call(Recursive.java:5)\n");
+        }
+        String report = "<testsuite><testcase classname=\"Recursive\" name=\"deep\"><error>" + trace
+            + "</error></testcase></testsuite>";
+
+        String summary = summarize(report).render();
+
+        assertTrue(summary.contains("  ... " + (101 - TestReportSummarizer.MAX_STACK_LINES) + " more lines\n"));
+        assertTrue(summary.length() < 2000);
+    }
+
+    @Test
+    public void testFailuresBeyondLimitAreCounted() {
+        StringBuilder report = new StringBuilder("<testsuite>");
+        for (int i = 0; i < TestReportSummarizer.MAX_FAILURES + 5; i++) {
+            report.append("<testcase name=\"test").append(i).append("\"><failure message=\"no\"/></testcase>");
+        }
+        report.append("</testsuite>");
+
+        String summary = summarize(report.toString()).render();
+
+        assertTrue(summary.contains("Failures: " + (TestReportSummarizer.MAX_FAILURES + 5)));
+        assertTrue(summary.endsWith("... 5 more failing tests not shown\n"));
+    }
+
+    @Test
+    public void testUnreadableReportsAreCounted() {
+        String summary = summarize(JUNIT_REPORT, "<testsuite><testcase name=\"cut").render();
+
+        assertTrue(summary.contains("Reports: 1 (1 unreadable), Tests: 4"));
+    }
+
+    @Test
+    public void testExternalEntitiesAreNotResolved() throws Exception {
+        File secret = tempFolder.newFile();
+        Files.write(secret.toPath(), "top secret".getBytes(StandardCharsets.UTF_8));
+        String report = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE testsuite [<!ENTITY secret SYSTEM \"" + secret.toURI() + "\">]>\n"
+            + "<testsuite><testcase name=\"leak\"><failure>&secret;</failure></testcase></testsuite>";
+
+        assertFalse(summarize(report).render().contains("top secret"));
+    }
+
+    @Test
+    public void testSummarizesMatchingFilesInWorkspace() throws Exception {
+        File reports = tempFolder.newFolder("target", "surefire-reports");
+        Files.write(new File(reports, "TEST-ParserTest.xml").toPath(), JUNIT_REPORT.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(reports, "notes.txt").toPath(), "not a report".getBytes(StandardCharsets.UTF_8));
+
+        String summary = new TestReportSummarizer("**/TEST-*.xml").invoke(tempFolder.getRoot(), null);
+
+        assertTrue(summary.contains("Reports: 1, Tests: 4, Failures: 1, Errors: 1, Skipped: 1\n"));
+    }
+}